@@ -0,0 +1,15 @@
+package com.gege.activitypartner.config;
+
+import java.security.Principal;
+
+/**
+ * Principal of a request authenticated with a user access token. Carries the IDs from the verified
+ * JWT claims so controllers never have to re-read the token or load the user row.
+ */
+public record AuthenticatedUser(Long userId, String email) implements Principal {
+
+  @Override
+  public String getName() {
+    return email;
+  }
+}
@@ -1,5 +1,7 @@
 package com.gege.activitypartner.config;
 
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.auth.oauth2.AccessToken;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
@@ -7,6 +9,8 @@ import jakarta.annotation.PostConstruct;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
@@ -19,9 +23,24 @@ public class FirebaseConfig {
   @Value("${firebase.config-path:#{null}}")
   private String firebaseConfigPath;
 
+  // Base URL of a local FCM stand-in (e.g. http://localhost:9099). When set, no service account
+  // is needed and every FCM call is sent there instead of fcm.googleapis.com.
+  @Value("${firebase.emulator-url:#{null}}")
+  private String emulatorUrl;
+
+  @Value("${firebase.project-id:activitypartner-local}")
+  private String projectId;
+
+  private static final String FCM_BASE_URL = "https://fcm.googleapis.com";
+
   @PostConstruct
   public void initialize() {
     try {
+      if (emulatorUrl != null && !emulatorUrl.isEmpty()) {
+        initializeForEmulator();
+        return;
+      }
+
       if (firebaseConfigPath == null || firebaseConfigPath.isEmpty()) {
         log.warn("Firebase configuration path not set. FCM notifications will be disabled.");
         log.warn("To enable FCM, set 'firebase.config-path' in application.properties");
@@ -55,4 +74,36 @@ public class FirebaseConfig {
       log.warn("FCM notifications will be disabled. Please check your Firebase configuration.");
     }
   }
+
+  /** Initialize Firebase against a local FCM endpoint with static credentials */
+  private void initializeForEmulator() {
+    String target =
+        emulatorUrl.endsWith("/")
+            ? emulatorUrl.substring(0, emulatorUrl.length() - 1)
+            : emulatorUrl;
+
+    NetHttpTransport transport =
+        new NetHttpTransport.Builder()
+            .setConnectionFactory(
+                url -> {
+                  String rewritten = url.toString();
+                  if (rewritten.startsWith(FCM_BASE_URL)) {
+                    rewritten = target + rewritten.substring(FCM_BASE_URL.length());
+                  }
+                  return (HttpURLConnection) new URL(rewritten).openConnection();
+                })
+            .build();
+
+    FirebaseOptions options =
+        FirebaseOptions.builder()
+            .setCredentials(GoogleCredentials.create(new AccessToken("emulator", null)))
+            .setProjectId(projectId)
+            .setHttpTransport(transport)
+            .build();
+
+    if (FirebaseApp.getApps().isEmpty()) {
+      FirebaseApp.initializeApp(options);
+      log.warn("Firebase Admin SDK initialized against FCM emulator at {}", target);
+    }
+  }
 }
@@ -7,11 +7,11 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -20,8 +20,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-  private final JwtUtil jwtUtil;
-  private final UserDetailsService userDetailsService;
+  private final VerifiedTokenCache verifiedTokenCache;
 
   @Override
   protected void doFilterInternal(
@@ -54,20 +53,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     }
 
     try {
-      // Extract user email from token
-      final String userEmail = jwtUtil.extractUsername(jwt);
+      // Skip if an earlier filter already authenticated the request
+      if (SecurityContextHolder.getContext().getAuthentication() == null) {
+        // Verified once per token, then served from the cache without a database lookup
+        AuthenticatedUser principal = verifiedTokenCache.authenticate(jwt);
 
-      // If token contains email and user is not already authenticated
-      if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-        // Load user details
-        UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
-
-        // Validate token
-        if (jwtUtil.validateToken(jwt, userDetails.getUsername())) {
+        if (principal != null) {
           // Create authentication token
           UsernamePasswordAuthenticationToken authToken =
               new UsernamePasswordAuthenticationToken(
-                  userDetails, null, userDetails.getAuthorities());
+                  principal,
+                  null,
+                  Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER")));
 
           // Set authentication details
           authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
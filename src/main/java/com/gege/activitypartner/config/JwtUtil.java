@@ -1,9 +1,11 @@
 package com.gege.activitypartner.config;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
@@ -25,9 +27,18 @@ public class JwtUtil {
   @Value("${jwt.refresh-expiration}")
   private Long refreshExpiration;
 
-  // Generate secret key from the secret string
+  // HMAC key and parser are immutable and thread-safe, so they are built once
+  private SecretKey signingKey;
+  private JwtParser parser;
+
+  @PostConstruct
+  void init() {
+    signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    parser = Jwts.parser().verifyWith(signingKey).build();
+  }
+
   private SecretKey getSigningKey() {
-    return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    return signingKey;
   }
 
   // Extract username from token
@@ -51,21 +62,26 @@ public class JwtUtil {
     return claimsResolver.apply(claims);
   }
 
-  // Extract all claims from token
-  private Claims extractAllClaims(String token) {
-    return Jwts.parser().verifyWith(getSigningKey()).build().parseSignedClaims(token).getPayload();
+  /**
+   * Verify the signature and expiry of a token and return its claims
+   *
+   * @throws io.jsonwebtoken.JwtException if the token is malformed, forged or expired
+   */
+  public Claims extractAllClaims(String token) {
+    return parser.parseSignedClaims(token).getPayload();
   }
 
   // Check if token is expired
-  private Boolean isTokenExpired(String token) {
-    return extractExpiration(token).before(new Date());
+  private Boolean isTokenExpired(Claims claims) {
+    return claims.getExpiration().before(new Date());
   }
 
   // Generate access token for user
-  public String generateToken(String email, Long userId) {
+  public String generateToken(String email, Long userId, Long tokenEpoch) {
     Map<String, Object> claims = new HashMap<>();
     claims.put("userId", userId);
     claims.put("role", "user");
+    claims.put("epoch", tokenEpoch);
     return createToken(claims, email, expiration);
   }
 
@@ -77,6 +93,12 @@ public class JwtUtil {
     return createToken(claims, username, expiration);
   }
 
+  // Extract token epoch from token; tokens issued before epochs existed count as epoch 0
+  public long extractTokenEpoch(Claims claims) {
+    Long epoch = claims.get("epoch", Long.class);
+    return epoch != null ? epoch : 0L;
+  }
+
   // Extract role from token
   public String extractRole(String token) {
     return extractClaim(token, claims -> claims.get("role", String.class));
@@ -108,7 +130,7 @@ public class JwtUtil {
 
   // Validate token
   public Boolean validateToken(String token, String email) {
-    final String username = extractUsername(token);
-    return (username.equals(email) && !isTokenExpired(token));
+    final Claims claims = extractAllClaims(token);
+    return (claims.getSubject().equals(email) && !isTokenExpired(claims));
   }
 }
@@ -0,0 +1,35 @@
+package com.gege.activitypartner.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Open-session-in-view for every request except those that hash a password: logins, registration
+ * and password reset (spring.jpa.open-in-view is off so this registration replaces Boot's). A
+ * request-scoped session keeps the JDBC connection it first used until the response is written,
+ * which for these would mean holding a pooled connection for the whole time the password waits
+ * for and runs through BCrypt.
+ */
+@Configuration
+public class OpenEntityManagerInViewConfig implements WebMvcConfigurer {
+
+  // The "login" and "register" rate limit policy paths, plus password reset
+  private static final String[] PASSWORD_PATHS = {
+    "/api/users/login", "/admin/login", "/api/users/register", "/api/users/reset-password"
+  };
+
+  @Bean
+  public OpenEntityManagerInViewInterceptor openEntityManagerInViewInterceptor() {
+    return new OpenEntityManagerInViewInterceptor();
+  }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    registry
+        .addWebRequestInterceptor(openEntityManagerInViewInterceptor())
+        .excludePathPatterns(PASSWORD_PATHS);
+  }
+}
@@ -0,0 +1,83 @@
+package com.gege.activitypartner.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gege.activitypartner.exception.ErrorResponse;
+import com.gege.activitypartner.service.RequestRateLimiter;
+import com.gege.activitypartner.util.ClientIpResolver;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+/**
+ * Applies the rate-limit policies to the public ingestion and auth endpoints. Runs after
+ * JwtAuthenticationFilter, so signed-in callers get a bucket per user and everyone else a bucket
+ * per client IP. The IP is the socket address as rewritten by Tomcat for trusted proxies only (see
+ * ClientIpResolver), so a caller cannot get a fresh bucket per request by forging
+ * X-Forwarded-For. Registered only in the security filter chain (see SecurityConfig).
+ */
+@RequiredArgsConstructor
+public class RateLimitFilter extends OncePerRequestFilter {
+
+  private final RequestRateLimiter rateLimiter;
+  private final ObjectMapper objectMapper;
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    RequestRateLimiter.Route route = rateLimiter.routeFor(pathOf(request));
+    if (route == null) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+
+    long waitNanos = rateLimiter.tryAcquire(route, clientKey(request));
+    if (waitNanos == 0) {
+      filterChain.doFilter(request, response);
+      return;
+    }
+
+    long retryAfterSeconds = Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+    if (logger.isDebugEnabled()) {
+      logger.debug("Rate limit '" + route.getName() + "' hit, retry in " + retryAfterSeconds + "s");
+    }
+    response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+    response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    objectMapper.writeValue(
+        response.getOutputStream(),
+        new ErrorResponse(
+            HttpStatus.TOO_MANY_REQUESTS.value(),
+            "Too many requests, please try again later",
+            LocalDateTime.now()));
+  }
+
+  // Path as the request is dispatched, matching the configured policy paths: without context path
+  // or trailing slash, percent-decoded, ;params removed and dot segments resolved, so /api/%6cogs
+  // and /api/./logs count against /api/logs
+  private static String pathOf(HttpServletRequest request) {
+    String path =
+        StringUtils.cleanPath(UrlPathHelper.defaultInstance.getPathWithinApplication(request));
+    return path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+  }
+
+  private static String clientKey(HttpServletRequest request) {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+      return "user:" + user.userId();
+    }
+    return "ip:" + ClientIpResolver.resolve(request);
+  }
+}
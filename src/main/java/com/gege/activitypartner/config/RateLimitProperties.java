@@ -0,0 +1,38 @@
+package com.gege.activitypartner.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-route request limits for the public endpoints, bound from {@code rate-limit.*}. Each policy
+ * allows {@code limit} requests per {@code period} per client on average, with bursts of up to
+ * {@code burst} requests.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+  private boolean enabled = true;
+
+  // Upper bound on tracked clients per policy unless the policy sets its own; when reached, idle
+  // buckets are swept early and new clients of that policy are refused while it is still full
+  private int maxKeys = 100000;
+
+  private Map<String, Policy> policies = new LinkedHashMap<>();
+
+  @Data
+  public static class Policy {
+    private List<String> paths = new ArrayList<>(); // Exact request paths, e.g. /api/logs
+    private int limit = 60;
+    private Duration period = Duration.ofMinutes(1);
+    private int burst = 10;
+    private Integer maxKeys; // Defaults to rate-limit.max-keys
+  }
+}
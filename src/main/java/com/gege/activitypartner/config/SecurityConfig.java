@@ -1,5 +1,8 @@
 package com.gege.activitypartner.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gege.activitypartner.service.RequestRateLimiter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -25,6 +28,8 @@ public class SecurityConfig {
 
   private final JwtAuthenticationFilter jwtAuthenticationFilter;
   private final UserDetailsService userDetailsService;
+  private final RequestRateLimiter requestRateLimiter;
+  private final ObjectMapper objectMapper;
 
   @Bean
   public PasswordEncoder passwordEncoder() {
@@ -51,6 +56,9 @@ public class SecurityConfig {
         .authorizeHttpRequests(
             auth ->
                 auth
+                    // Async re-dispatch of an already authorized request (chat long-polling)
+                    .dispatcherTypeMatchers(DispatcherType.ASYNC)
+                    .permitAll()
                     // Public endpoints - no authentication required
                     .requestMatchers(
                         "/api/users/register",
@@ -94,6 +102,8 @@ public class SecurityConfig {
                     .permitAll() // App logs can be sent without auth
                     .requestMatchers("/admin/**")
                     .permitAll() // Admin endpoints handle their own auth via token
+                    .requestMatchers("/ws", "/ws/**")
+                    .permitAll() // WebSocket handshake; STOMP CONNECT carries the JWT
 
                     // All other endpoints require authentication
                     .anyRequest()
@@ -104,7 +114,10 @@ public class SecurityConfig {
                     SessionCreationPolicy.STATELESS) // Stateless sessions for JWT
             )
         .authenticationProvider(authenticationProvider())
-        .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+        .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+        // Limits the public ingestion and auth endpoints; needs the principal set above
+        .addFilterAfter(
+            new RateLimitFilter(requestRateLimiter, objectMapper), JwtAuthenticationFilter.class);
 
     return http.build();
   }
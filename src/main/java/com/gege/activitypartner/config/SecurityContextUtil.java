@@ -1,19 +1,13 @@
 package com.gege.activitypartner.config;
 
-import jakarta.servlet.http.HttpServletRequest;
-import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 @Component
-@RequiredArgsConstructor
 public class SecurityContextUtil {
 
-  private final JwtUtil jwtUtil;
-  private final HttpServletRequest request;
-
   /**
    * Get the email of the currently authenticated user
    *
@@ -29,7 +23,9 @@ public class SecurityContextUtil {
 
     Object principal = authentication.getPrincipal();
 
-    if (principal instanceof UserDetails) {
+    if (principal instanceof AuthenticatedUser) {
+      return ((AuthenticatedUser) principal).email();
+    } else if (principal instanceof UserDetails) {
       return ((UserDetails) principal).getUsername();
     } else {
       return principal.toString();
@@ -37,46 +33,22 @@ public class SecurityContextUtil {
   }
 
   /**
-   * Get the user ID of the currently authenticated user from JWT token This avoids database lookup
-   * by extracting from JWT claims directly
+   * Get the user ID of the currently authenticated user from the principal set by
+   * JwtAuthenticationFilter. The ID comes from the already verified JWT claims, so neither the
+   * token nor the database is read again.
    *
    * @return user ID of authenticated user
-   * @throws RuntimeException if no user is authenticated or userId cannot be extracted
+   * @throws RuntimeException if no user is authenticated
    */
   public Long getCurrentUserId() {
-    try {
-      String jwt = null;
-
-      // Try Authorization header first (mobile apps)
-      final String authHeader = request.getHeader("Authorization");
-      if (authHeader != null && authHeader.startsWith("Bearer ")) {
-        jwt = authHeader.substring(7);
-      }
-
-      // Fallback to cookie (web app)
-      if (jwt == null && request.getCookies() != null) {
-        jwt =
-            java.util.Arrays.stream(request.getCookies())
-                .filter(cookie -> "accessToken".equals(cookie.getName()))
-                .map(jakarta.servlet.http.Cookie::getValue)
-                .findFirst()
-                .orElse(null);
-      }
-
-      if (jwt == null) {
-        throw new RuntimeException("No valid Authorization header or accessToken cookie found");
-      }
-
-      Long userId = jwtUtil.extractUserId(jwt);
-
-      if (userId == null) {
-        throw new RuntimeException("No userId found in JWT token");
-      }
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
-      return userId;
-    } catch (Exception e) {
-      throw new RuntimeException("Failed to extract user ID from JWT: " + e.getMessage());
+    if (authentication == null
+        || !(authentication.getPrincipal() instanceof AuthenticatedUser principal)) {
+      throw new RuntimeException("No authenticated user found");
     }
+
+    return principal.userId();
   }
 
   /**
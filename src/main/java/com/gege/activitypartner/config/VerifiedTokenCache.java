@@ -0,0 +1,90 @@
+package com.gege.activitypartner.config;
+
+import com.gege.activitypartner.service.UserStatusCache;
+import com.gege.activitypartner.util.TokenDigest;
+import io.jsonwebtoken.Claims;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded cache of access tokens that already passed signature verification, keyed by the SHA-256
+ * digest of the token so raw tokens are never kept in memory. An entry lives until the token
+ * expires; the least recently used entries are evicted first. Whether the account is still active
+ * and the token's epoch still current is asked of UserStatusCache on every call, so deactivation,
+ * logout-all and password reset revoke outstanding tokens immediately.
+ */
+@Component
+public class VerifiedTokenCache {
+
+  private record Entry(AuthenticatedUser user, long tokenEpoch, long expiresAtMillis) {}
+
+  private final JwtUtil jwtUtil;
+  private final UserStatusCache userStatusCache;
+  private final Map<String, Entry> entries;
+
+  public VerifiedTokenCache(
+      JwtUtil jwtUtil,
+      UserStatusCache userStatusCache,
+      @Value("${jwt.verified-cache.max-entries:10000}") int maxEntries) {
+    this.jwtUtil = jwtUtil;
+    this.userStatusCache = userStatusCache;
+    this.entries =
+        Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+              }
+            });
+  }
+
+  /**
+   * Resolve a user access token to its principal. The token is parsed only the first time it is
+   * seen; later calls are a digest and two map lookups.
+   *
+   * @return null if the token is valid but not a user access token (admin or refresh token), the
+   *     account no longer exists or is deactivated, or the token was revoked by an epoch bump
+   * @throws io.jsonwebtoken.JwtException if the token is malformed, forged or expired
+   */
+  public AuthenticatedUser authenticate(String token) {
+    Entry verified = verify(token);
+    if (verified == null
+        || !userStatusCache.acceptsToken(verified.user().userId(), verified.tokenEpoch())) {
+      return null;
+    }
+    return verified.user();
+  }
+
+  private Entry verify(String token) {
+    String key = TokenDigest.sha256Hex(token);
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      if (entry.expiresAtMillis() > System.currentTimeMillis()) {
+        return entry;
+      }
+      entries.remove(key);
+    }
+
+    Claims claims = jwtUtil.extractAllClaims(token);
+    String email = claims.getSubject();
+    Long userId = claims.get("userId", Long.class);
+    if (email == null || userId == null || !"user".equals(claims.get("role", String.class))) {
+      return null;
+    }
+
+    Date expiration = claims.getExpiration();
+    Entry verified =
+        new Entry(
+            new AuthenticatedUser(userId, email),
+            jwtUtil.extractTokenEpoch(claims),
+            expiration != null ? expiration.getTime() : 0L);
+    if (expiration != null) {
+      entries.put(key, verified);
+    }
+    return verified;
+  }
+}
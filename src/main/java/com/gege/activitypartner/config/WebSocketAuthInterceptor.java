@@ -0,0 +1,103 @@
+package com.gege.activitypartner.config;
+
+import com.gege.activitypartner.service.ActivityMessageService;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+/**
+ * Authenticates STOMP sessions with the same JWT access token as the REST API and only lets chat
+ * members subscribe to an activity's message topic. Clients may not SEND to the broker directly;
+ * messages are posted through the REST endpoint and fanned out by the server. Subscriptions of
+ * users who later leave the activity are dropped by ChatBroadcastService.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WebSocketAuthInterceptor implements ChannelInterceptor {
+
+  private static final Pattern CHAT_TOPIC = Pattern.compile("^/topic/activities/(\\d+)/messages$");
+
+  private final VerifiedTokenCache verifiedTokenCache;
+  private final ActivityMessageService activityMessageService;
+
+  @Override
+  public Message<?> preSend(Message<?> message, MessageChannel channel) {
+    StompHeaderAccessor accessor =
+        MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+    if (accessor == null || accessor.getCommand() == null) {
+      return message;
+    }
+
+    switch (accessor.getCommand()) {
+      case CONNECT:
+        accessor.setUser(authenticate(accessor));
+        break;
+      case SUBSCRIBE:
+        authorizeSubscription(accessor);
+        break;
+      case SEND:
+        throw new MessageDeliveryException("Sending over the socket is not supported");
+      default:
+        break;
+    }
+    return message;
+  }
+
+  /** Validate the access token from the CONNECT frame; the principal name is the user ID */
+  private Principal authenticate(StompHeaderAccessor accessor) {
+    String authHeader = accessor.getFirstNativeHeader("Authorization");
+    if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+      throw new MessageDeliveryException("Missing Authorization header");
+    }
+    String jwt = authHeader.substring(7);
+
+    try {
+      // Same verification and account check as JwtAuthenticationFilter
+      AuthenticatedUser principal = verifiedTokenCache.authenticate(jwt);
+      if (principal == null) {
+        throw new MessageDeliveryException("Invalid token");
+      }
+      return new UsernamePasswordAuthenticationToken(
+          principal.userId().toString(),
+          null,
+          Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER")));
+    } catch (MessageDeliveryException e) {
+      throw e;
+    } catch (Exception e) {
+      log.debug("Rejected WebSocket CONNECT: {}", e.getMessage());
+      throw new MessageDeliveryException("Invalid token");
+    }
+  }
+
+  private void authorizeSubscription(StompHeaderAccessor accessor) {
+    Principal user = accessor.getUser();
+    if (user == null) {
+      throw new MessageDeliveryException("Not authenticated");
+    }
+
+    String destination = accessor.getDestination();
+    Matcher matcher = destination != null ? CHAT_TOPIC.matcher(destination) : null;
+    if (matcher == null || !matcher.matches()) {
+      throw new MessageDeliveryException("Unknown destination: " + destination);
+    }
+
+    Long activityId = Long.valueOf(matcher.group(1));
+    Long userId = Long.valueOf(user.getName());
+    if (!activityMessageService.isChatMember(activityId, userId)) {
+      throw new MessageDeliveryException("Only accepted participants can view messages");
+    }
+  }
+}
@@ -3,7 +3,10 @@ package com.gege.activitypartner.controller;
 import com.gege.activitypartner.config.SecurityContextUtil;
 import com.gege.activitypartner.dto.ActivityMessageRequest;
 import com.gege.activitypartner.dto.ActivityMessageResponse;
+import com.gege.activitypartner.dto.ChatSearchResponse;
 import com.gege.activitypartner.service.ActivityMessageService;
+import com.gege.activitypartner.service.ChatLongPollService;
+import com.gege.activitypartner.service.ChatReadCursorService;
 import jakarta.validation.Valid;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -14,6 +17,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 @RestController
 @RequestMapping("/api/activities/{activityId}/messages")
@@ -22,6 +26,8 @@ import org.springframework.web.bind.annotation.*;
 public class ActivityMessageController {
 
   private final ActivityMessageService messageService;
+  private final ChatLongPollService longPollService;
+  private final ChatReadCursorService readCursorService;
   private final SecurityContextUtil securityContextUtil;
 
   /** Send a message in activity chat POST /api/activities/{activityId}/messages */
@@ -46,6 +52,25 @@ public class ActivityMessageController {
     return ResponseEntity.ok(messages);
   }
 
+  /**
+   * Get a page of chat history, oldest first GET
+   * /api/activities/{activityId}/messages/history?beforeId=123&limit=50
+   */
+  @GetMapping("/history")
+  @PreAuthorize("isAuthenticated()")
+  public ResponseEntity<List<ActivityMessageResponse>> getMessageHistory(
+      @PathVariable Long activityId,
+      @RequestParam(required = false) Long beforeId,
+      @RequestParam(required = false) Long afterId,
+      @RequestParam(defaultValue = "50") int limit) {
+
+    Long userId = securityContextUtil.getCurrentUserId();
+
+    List<ActivityMessageResponse> messages =
+        messageService.getMessageHistory(activityId, userId, beforeId, afterId, limit);
+    return ResponseEntity.ok(messages);
+  }
+
   /**
    * Get messages since a specific timestamp (for polling) GET
    * /api/activities/{activityId}/messages/since?timestamp=2024-01-01T12:00:00
@@ -63,6 +88,40 @@ public class ActivityMessageController {
     return ResponseEntity.ok(messages);
   }
 
+  /**
+   * Long-poll for messages since a timestamp; answers as soon as a message arrives or with an empty
+   * list after the timeout GET
+   * /api/activities/{activityId}/messages/since/wait?timestamp=2024-01-01T12:00:00&timeout=25
+   */
+  @GetMapping("/since/wait")
+  @PreAuthorize("isAuthenticated()")
+  public DeferredResult<ResponseEntity<List<ActivityMessageResponse>>> waitForMessagesSince(
+      @PathVariable Long activityId,
+      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime timestamp,
+      @RequestParam(defaultValue = "25") long timeout) {
+
+    Long userId = securityContextUtil.getCurrentUserId();
+
+    return longPollService.waitForMessages(activityId, userId, timestamp, timeout);
+  }
+
+  /**
+   * Search messages in an activity chat, best match first GET
+   * /api/activities/{activityId}/messages/search?q=meeting+point&page=0&size=20
+   */
+  @GetMapping("/search")
+  @PreAuthorize("isAuthenticated()")
+  public ResponseEntity<ChatSearchResponse> searchMessages(
+      @PathVariable Long activityId,
+      @RequestParam("q") String query,
+      @RequestParam(defaultValue = "0") int page,
+      @RequestParam(defaultValue = "20") int size) {
+
+    Long userId = securityContextUtil.getCurrentUserId();
+
+    return ResponseEntity.ok(messageService.searchMessages(activityId, userId, query, page, size));
+  }
+
   /** Get message count for an activity GET /api/activities/{activityId}/messages/count */
   @GetMapping("/count")
   @PreAuthorize("isAuthenticated()")
@@ -73,6 +132,20 @@ public class ActivityMessageController {
     return ResponseEntity.ok(Map.of("messageCount", count));
   }
 
+  /**
+   * Mark messages as read up to messageId (latest if omitted) PUT
+   * /api/activities/{activityId}/messages/read?messageId=123
+   */
+  @PutMapping("/read")
+  @PreAuthorize("isAuthenticated()")
+  public ResponseEntity<Map<String, Integer>> markRead(
+      @PathVariable Long activityId, @RequestParam(required = false) Long messageId) {
+    Long userId = securityContextUtil.getCurrentUserId();
+
+    int unreadCount = readCursorService.markRead(activityId, userId, messageId);
+    return ResponseEntity.ok(Map.of("unreadCount", unreadCount));
+  }
+
   /** Delete a message DELETE /api/activities/{activityId}/messages/{messageId} */
   @DeleteMapping("/{messageId}")
   @PreAuthorize("isAuthenticated()")
@@ -4,13 +4,18 @@ import com.gege.activitypartner.config.SecurityContextUtil;
 import com.gege.activitypartner.dto.ActivityGalleryAccessResponse;
 import com.gege.activitypartner.dto.ActivityPhotoResponse;
 import com.gege.activitypartner.service.ActivityPhotoService;
+import com.gege.activitypartner.service.FileStorageService;
 import java.util.List;
+import java.util.Map;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/activities/{activityId}/gallery")
@@ -19,6 +24,7 @@ import org.springframework.web.multipart.MultipartFile;
 public class ActivityPhotoController {
 
   private final ActivityPhotoService activityPhotoService;
+  private final FileStorageService fileStorageService;
   private final SecurityContextUtil securityContextUtil;
 
   /**
@@ -69,6 +75,25 @@ public class ActivityPhotoController {
     return ResponseEntity.ok("Photo deleted successfully");
   }
 
+  /**
+   * Download all gallery photos as one ZIP GET /api/activities/{activityId}/gallery/download
+   * Streams from storage to the client without buffering the archive
+   */
+  @GetMapping("/download")
+  @PreAuthorize("isAuthenticated()")
+  public ResponseEntity<StreamingResponseBody> downloadGallery(@PathVariable Long activityId) {
+    Long userId = securityContextUtil.getCurrentUserId();
+    // Access is checked and the file list read here, before the response is committed
+    Map<String, String> entries = activityPhotoService.getGalleryExportEntries(activityId, userId);
+    StreamingResponseBody body = out -> fileStorageService.writeZip(entries, out);
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType("application/zip"))
+        .header(
+            HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=\"activity-" + activityId + "-gallery.zip\"")
+        .body(body);
+  }
+
   /** Get photo count for an activity GET /api/activities/{activityId}/gallery/count */
   @GetMapping("/count")
   public ResponseEntity<Long> getPhotoCount(@PathVariable Long activityId) {
@@ -4,12 +4,16 @@ import com.gege.activitypartner.dto.CategoryRequest;
 import com.gege.activitypartner.dto.CategoryResponse;
 import com.gege.activitypartner.dto.CategoryUpdateRequest;
 import com.gege.activitypartner.dto.CoverImageDTO;
+import com.gege.activitypartner.dto.UploadGcReport;
 import com.gege.activitypartner.entity.AccountDeletionRequest;
 import com.gege.activitypartner.entity.AppLog;
 import com.gege.activitypartner.entity.DownloadLog;
+import com.gege.activitypartner.exception.TooManyRequestsException;
 import com.gege.activitypartner.service.AdminService;
 import com.gege.activitypartner.service.CategoryService;
 import com.gege.activitypartner.service.CoverImageService;
+import com.gege.activitypartner.service.UploadGarbageCollector;
+import com.gege.activitypartner.util.ClientIpResolver;
 import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.nio.file.Path;
@@ -33,10 +37,12 @@ public class AdminController {
   private final AdminService adminService;
   private final CategoryService categoryService;
   private final CoverImageService coverImageService;
+  private final UploadGarbageCollector uploadGarbageCollector;
 
   // Admin login
   @PostMapping("/login")
-  public ResponseEntity<?> login(@RequestBody Map<String, String> request) {
+  public ResponseEntity<?> login(
+      @RequestBody Map<String, String> request, HttpServletRequest httpRequest) {
     String username = request.get("username");
     String password = request.get("password");
 
@@ -45,8 +51,11 @@ public class AdminController {
     }
 
     try {
-      String token = adminService.login(username, password);
+      String token =
+          adminService.login(username, password, ClientIpResolver.resolve(httpRequest));
       return ResponseEntity.ok(Map.of("token", token));
+    } catch (TooManyRequestsException e) {
+      throw e; // 429 with Retry-After from GlobalExceptionHandler
     } catch (Exception e) {
       return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
           .body(Map.of("error", "Invalid credentials"));
@@ -96,15 +105,14 @@ public class AdminController {
     if (adminId == null) {
       return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
     }
-    Path file = adminService.getCrashLogFile(filename);
-    if (file == null) {
+    Resource resource = adminService.getCrashLogFile(filename);
+    if (resource == null) {
       return ResponseEntity.notFound().build();
     }
-    Resource resource = new PathResource(file);
+    // Length is set by the converter for plain files; archives stream decompressed
     return ResponseEntity.ok()
         .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
         .contentType(MediaType.APPLICATION_OCTET_STREAM)
-        .contentLength(file.toFile().length())
         .body(resource);
   }
 
@@ -293,6 +301,40 @@ public class AdminController {
     }
   }
 
+  // ============= UPLOAD STORAGE =============
+
+  // Get the report of the last orphaned-upload collection
+  @GetMapping("/uploads/gc")
+  public ResponseEntity<?> getUploadGcReport(HttpServletRequest request) {
+    Long adminId = validateAdmin(request);
+    if (adminId == null) {
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Unauthorized"));
+    }
+
+    UploadGcReport report = uploadGarbageCollector.getLastReport();
+    if (report == null) {
+      return ResponseEntity.noContent().build();
+    }
+    return ResponseEntity.ok(report);
+  }
+
+  // Run an orphaned-upload collection now (mode: REPORT, QUARANTINE or DELETE)
+  @PostMapping("/uploads/gc")
+  public ResponseEntity<?> runUploadGc(
+      @RequestParam(defaultValue = "REPORT") UploadGarbageCollector.Mode mode,
+      HttpServletRequest request) {
+    Long adminId = validateAdmin(request);
+    if (adminId == null) {
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Unauthorized"));
+    }
+
+    try {
+      return ResponseEntity.ok(uploadGarbageCollector.collect(mode));
+    } catch (IllegalStateException e) {
+      return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+    }
+  }
+
   // Helper to validate admin token from request
   private Long validateAdmin(HttpServletRequest request) {
     String authHeader = request.getHeader("Authorization");
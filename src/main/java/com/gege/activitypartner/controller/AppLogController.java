@@ -1,8 +1,8 @@
 package com.gege.activitypartner.controller;
 
-import com.gege.activitypartner.entity.AppLog;
-import com.gege.activitypartner.repository.AppLogRepository;
-import java.time.LocalDateTime;
+import com.gege.activitypartner.exception.TooManyRequestsException;
+import com.gege.activitypartner.service.AppLogIngestionService;
+import com.gege.activitypartner.service.AppLogIngestionService.IngestResult;
 import java.util.List;
 import java.util.Map;
 import lombok.RequiredArgsConstructor;
@@ -14,66 +14,32 @@ import org.springframework.web.bind.annotation.*;
 @RequiredArgsConstructor
 public class AppLogController {
 
-  private final AppLogRepository appLogRepository;
+  private final AppLogIngestionService appLogIngestionService;
 
   @PostMapping
   public ResponseEntity<?> submitLog(@RequestBody Map<String, Object> request) {
-    try {
-      AppLog log = new AppLog();
-      log.setLevel((String) request.get("level"));
-      log.setTag((String) request.get("tag"));
-      log.setMessage((String) request.get("message"));
-      log.setAppVersion((String) request.get("appVersion"));
-      log.setOsVersion((String) request.get("osVersion"));
-      log.setDeviceModel((String) request.get("deviceModel"));
-      log.setPlatform((String) request.get("platform"));
-
-      if (request.get("userId") != null) {
-        log.setUserId(((Number) request.get("userId")).longValue());
-      }
-
-      if (request.get("loggedAt") != null) {
-        log.setLoggedAt(LocalDateTime.parse((String) request.get("loggedAt")));
-      } else {
-        log.setLoggedAt(LocalDateTime.now());
-      }
-
-      appLogRepository.save(log);
-      return ResponseEntity.ok(Map.of("success", true));
-    } catch (Exception e) {
-      return ResponseEntity.ok(Map.of("success", false));
-    }
+    IngestResult result = submit(List.of(request));
+    return ResponseEntity.ok(Map.of("success", result.accepted() == 1));
   }
 
-  // Batch submit multiple logs at once
+  // Batch submit multiple logs at once; entries are queued and written in the background
   @PostMapping("/batch")
   public ResponseEntity<?> submitLogs(@RequestBody List<Map<String, Object>> logs) {
-    try {
-      for (Map<String, Object> request : logs) {
-        AppLog log = new AppLog();
-        log.setLevel((String) request.get("level"));
-        log.setTag((String) request.get("tag"));
-        log.setMessage((String) request.get("message"));
-        log.setAppVersion((String) request.get("appVersion"));
-        log.setOsVersion((String) request.get("osVersion"));
-        log.setDeviceModel((String) request.get("deviceModel"));
-        log.setPlatform((String) request.get("platform"));
-
-        if (request.get("userId") != null) {
-          log.setUserId(((Number) request.get("userId")).longValue());
-        }
-
-        if (request.get("loggedAt") != null) {
-          log.setLoggedAt(LocalDateTime.parse((String) request.get("loggedAt")));
-        } else {
-          log.setLoggedAt(LocalDateTime.now());
-        }
+    IngestResult result = submit(logs);
+    return ResponseEntity.ok(
+        Map.of(
+            "success", result.accepted() > 0 || logs.isEmpty(),
+            "count", result.accepted(),
+            "invalid", result.invalid(),
+            "dropped", result.dropped()));
+  }
 
-        appLogRepository.save(log);
-      }
-      return ResponseEntity.ok(Map.of("success", true, "count", logs.size()));
-    } catch (Exception e) {
-      return ResponseEntity.ok(Map.of("success", false));
+  // Ask the client to retry later only when nothing valid could be queued
+  private IngestResult submit(List<Map<String, Object>> logs) {
+    IngestResult result = appLogIngestionService.submit(logs);
+    if (result.accepted() == 0 && result.dropped() > 0) {
+      throw new TooManyRequestsException("Log ingestion is overloaded, please retry later", 30);
     }
+    return result;
   }
 }
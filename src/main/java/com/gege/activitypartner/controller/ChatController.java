@@ -0,0 +1,29 @@
+package com.gege.activitypartner.controller;
+
+import com.gege.activitypartner.config.SecurityContextUtil;
+import com.gege.activitypartner.dto.ChatOverviewResponse;
+import com.gege.activitypartner.service.ChatReadCursorService;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/chats")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class ChatController {
+
+  private final ChatReadCursorService readCursorService;
+  private final SecurityContextUtil securityContextUtil;
+
+  /** All chats of the current user with last message and unread count GET /api/chats */
+  @GetMapping
+  @PreAuthorize("isAuthenticated()")
+  public ResponseEntity<List<ChatOverviewResponse>> getMyChats() {
+    Long userId = securityContextUtil.getCurrentUserId();
+
+    return ResponseEntity.ok(readCursorService.getChatOverview(userId));
+  }
+}
@@ -3,14 +3,14 @@ package com.gege.activitypartner.controller;
 import com.gege.activitypartner.dto.CoverImageDTO;
 import com.gege.activitypartner.service.CoverImageService;
 import com.gege.activitypartner.service.CoverImageStorageService;
-import java.nio.file.Path;
+import com.gege.activitypartner.service.ImageDerivativeService;
+import com.gege.activitypartner.service.ImageServingService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -24,6 +24,8 @@ public class CoverImageController {
 
   private final CoverImageService coverImageService;
   private final CoverImageStorageService coverImageStorageService;
+  private final ImageDerivativeService imageDerivativeService;
+  private final ImageServingService imageServingService;
 
   // Get all available cover images
   @GetMapping
@@ -32,25 +34,19 @@ public class CoverImageController {
     return ResponseEntity.ok(images);
   }
 
-  // Serve cover image file
+  // Serve cover image file (optionally a resized derivative via ?size=thumb|medium|large)
   @GetMapping("/{fileName:.+}")
-  public ResponseEntity<Resource> getCoverImage(@PathVariable String fileName) {
-    try {
-      Path filePath =
-          coverImageStorageService.getFileStorageLocation().resolve(fileName).normalize();
-      Resource resource = new UrlResource(filePath.toUri());
-
-      if (resource.exists() && resource.isReadable()) {
-        String contentType = determineContentType(fileName);
-        return ResponseEntity.ok()
-            .contentType(MediaType.parseMediaType(contentType))
-            .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"")
-            .body(resource);
-      }
-      return ResponseEntity.notFound().build();
-    } catch (Exception e) {
-      return ResponseEntity.notFound().build();
-    }
+  public void getCoverImage(
+      @PathVariable String fileName,
+      @RequestParam(required = false) String size,
+      HttpServletRequest request,
+      HttpServletResponse response)
+      throws IOException {
+    imageServingService.serve(
+        imageDerivativeService.resolve(
+            fileName, size, coverImageStorageService.getLegacyStorageLocation()),
+        request,
+        response);
   }
 
   // Upload new cover image (admin only)
@@ -78,18 +74,4 @@ public class CoverImageController {
     coverImageService.deactivateCoverImage(id);
     return ResponseEntity.noContent().build();
   }
-
-  private String determineContentType(String fileName) {
-    String lowerName = fileName.toLowerCase();
-    if (lowerName.endsWith(".png")) {
-      return "image/png";
-    } else if (lowerName.endsWith(".jpg") || lowerName.endsWith(".jpeg")) {
-      return "image/jpeg";
-    } else if (lowerName.endsWith(".gif")) {
-      return "image/gif";
-    } else if (lowerName.endsWith(".webp")) {
-      return "image/webp";
-    }
-    return "application/octet-stream";
-  }
 }
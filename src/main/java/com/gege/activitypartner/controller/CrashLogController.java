@@ -1,13 +1,6 @@
 package com.gege.activitypartner.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.time.LocalDate;
+import com.gege.activitypartner.service.CrashLogAppender;
 import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -21,31 +14,18 @@ import org.springframework.web.bind.annotation.*;
 public class CrashLogController {
 
   private static final Logger log = LoggerFactory.getLogger(CrashLogController.class);
-  private static final Path CRASH_LOG_DIR = Paths.get("logs/crashes");
 
-  private final ObjectMapper objectMapper;
+  private final CrashLogAppender crashLogAppender;
 
   @PostMapping
   public ResponseEntity<?> submitCrashLog(@RequestBody Map<String, Object> request) {
     try {
-      writeCrashToFile(request);
-      return ResponseEntity.ok(Map.of("success", true));
+      // Queued for the crash log writer thread; false when it is too far behind
+      boolean queued = crashLogAppender.append(request);
+      return ResponseEntity.ok(Map.of("success", queued));
     } catch (Exception e) {
       log.error("Failed to save crash log", e);
       return ResponseEntity.ok(Map.of("success", false));
     }
   }
-
-  private void writeCrashToFile(Map<String, Object> crashData) {
-    try {
-      Files.createDirectories(CRASH_LOG_DIR);
-      String date = LocalDate.now().toString();
-      Path file = CRASH_LOG_DIR.resolve("crashes-" + date + ".json");
-      String line = objectMapper.writeValueAsString(crashData) + System.lineSeparator();
-      Files.writeString(
-          file, line, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-    } catch (IOException e) {
-      log.error("Failed to write crash log to file", e);
-    }
-  }
 }
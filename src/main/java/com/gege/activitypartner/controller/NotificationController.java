@@ -29,7 +29,7 @@ public class NotificationController {
       @Valid @RequestBody DeviceTokenRequest request) {
     Long userId = securityContextUtil.getCurrentUserId();
 
-    notificationService.updateFcmToken(userId, request.getFcmToken());
+    notificationService.updateFcmToken(userId, request.getFcmToken(), request.getPlatform());
     return ResponseEntity.ok(Map.of("message", "Device token registered successfully"));
   }
 
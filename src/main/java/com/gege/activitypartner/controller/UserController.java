@@ -9,20 +9,19 @@ import com.gege.activitypartner.dto.UserProfileUpdateRequest;
 import com.gege.activitypartner.dto.UserRegistrationRequest;
 import com.gege.activitypartner.dto.UserResponse;
 import com.gege.activitypartner.dto.UserSimpleResponse;
+import com.gege.activitypartner.service.ImageDerivativeService;
+import com.gege.activitypartner.service.ImageServingService;
 import com.gege.activitypartner.service.UserService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.nio.file.Path;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -35,6 +34,8 @@ import org.springframework.web.multipart.MultipartFile;
 public class UserController {
 
   private final UserService userService;
+  private final ImageDerivativeService imageDerivativeService;
+  private final ImageServingService imageServingService;
 
   @Value("${jwt.expiration:86400000}")
   private long jwtExpiration; // Default 24 hours in milliseconds
@@ -194,43 +195,20 @@ public class UserController {
     return ResponseEntity.ok(response);
   }
 
-  // Get profile image
+  // Get profile image (optionally a resized derivative via ?size=thumb|medium|large)
   @GetMapping("/images/{fileName:.+}")
-  public ResponseEntity<Resource> getProfileImage(@PathVariable String fileName) {
-    try {
-      // Get file storage location from service
-      Path filePath =
-          userService
-              .getFileStorageService()
-              .getFileStorageLocation()
-              .resolve(fileName)
-              .normalize();
-      Resource resource = new UrlResource(filePath.toUri());
-
-      if (resource.exists() && resource.isReadable()) {
-        // Determine content type
-        String contentType = "application/octet-stream";
-        if (fileName.toLowerCase().endsWith(".png")) {
-          contentType = "image/png";
-        } else if (fileName.toLowerCase().endsWith(".jpg")
-            || fileName.toLowerCase().endsWith(".jpeg")) {
-          contentType = "image/jpeg";
-        } else if (fileName.toLowerCase().endsWith(".gif")) {
-          contentType = "image/gif";
-        } else if (fileName.toLowerCase().endsWith(".webp")) {
-          contentType = "image/webp";
-        }
-
-        return ResponseEntity.ok()
-            .contentType(MediaType.parseMediaType(contentType))
-            .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"")
-            .body(resource);
-      } else {
-        return ResponseEntity.notFound().build();
-      }
-    } catch (Exception e) {
-      return ResponseEntity.notFound().build();
-    }
+  public void getProfileImage(
+      @PathVariable String fileName,
+      @RequestParam(required = false) String size,
+      HttpServletRequest request,
+      HttpServletResponse response)
+      throws IOException {
+    // Content-addressed names come from the file store, older UUID names from the legacy directory
+    imageServingService.serve(
+        imageDerivativeService.resolve(
+            fileName, size, userService.getFileStorageService().getLegacyStorageLocation()),
+        request,
+        response);
   }
 
   // Web logout endpoint (clears cookies)
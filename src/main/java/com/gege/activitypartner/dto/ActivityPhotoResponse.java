@@ -16,6 +16,9 @@ public class ActivityPhotoResponse {
   private String userName;
   private String userAvatar;
   private String photoUrl;
+  private String thumbnailUrl;
+  private String mediumUrl;
+  private String largeUrl;
   private Integer displayOrder;
   private LocalDateTime uploadedAt;
 }
@@ -0,0 +1,23 @@
+package com.gege.activitypartner.dto;
+
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** One row of the "my chats" overview; last message fields are null for an empty room */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatOverviewResponse {
+  private Long activityId;
+  private String activityTitle;
+  private String activityCoverImageUrl;
+  private Long lastMessageId;
+  private String lastMessageText;
+  private Long lastMessageUserId;
+  private String lastMessageUserName;
+  private LocalDateTime lastMessageAt;
+  private Integer unreadCount;
+  private Long lastReadMessageId;
+}
@@ -0,0 +1,18 @@
+package com.gege.activitypartner.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** One page of chat search results, best match first */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSearchResponse {
+  private String query;
+  private Integer totalHits;
+  private Integer page;
+  private Integer size;
+  private List<ActivityMessageResponse> results;
+}
@@ -0,0 +1,15 @@
+package com.gege.activitypartner.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Frame pushed to /topic/activities/{activityId}/messages subscribers */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSocketMessage {
+  private String type; // MESSAGE_SENT, MESSAGE_DELETED
+  private Long messageId;
+  private ActivityMessageResponse message; // Null for MESSAGE_DELETED
+}
@@ -12,4 +12,7 @@ public class CoverImageDTO {
   private Long id;
   private String imageUrl;
   private String displayName;
+  private String thumbnailUrl;
+  private String mediumUrl;
+  private String largeUrl;
 }
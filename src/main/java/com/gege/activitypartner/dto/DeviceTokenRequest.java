@@ -12,4 +12,6 @@ public class DeviceTokenRequest {
 
   @NotBlank(message = "FCM token is required")
   private String fcmToken;
+
+  private String platform; // Optional: android, ios, web
 }
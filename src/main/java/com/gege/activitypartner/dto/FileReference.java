@@ -0,0 +1,14 @@
+package com.gege.activitypartner.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** A row id and the uploaded-file URL it points at, read in keyset pages by the upload GC */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileReference {
+  private Long id;
+  private String url;
+}
@@ -0,0 +1,19 @@
+package com.gege.activitypartner.dto;
+
+import java.time.LocalDateTime;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Outcome of one orphaned-upload collection run */
+@Data
+@NoArgsConstructor
+public class UploadGcReport {
+  private String mode; // REPORT, QUARANTINE or DELETE
+  private LocalDateTime startedAt;
+  private LocalDateTime finishedAt;
+  private long referencedFiles; // Distinct files referenced from the database
+  private long scannedFiles;
+  private long orphanedFiles; // Unreferenced files older than the grace period
+  private long reclaimedBytes; // Size of the orphans (would be reclaimed in REPORT mode)
+  private long failedFiles;
+}
@@ -12,6 +12,9 @@ public class UserPhotoResponse {
 
   private Long id;
   private String photoUrl;
+  private String thumbnailUrl;
+  private String mediumUrl;
+  private String largeUrl;
   private Boolean isProfilePicture;
   private Integer displayOrder;
   private LocalDateTime uploadedAt;
@@ -0,0 +1,15 @@
+package com.gege.activitypartner.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** The few user columns request authorization depends on, cached by UserStatusCache */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserStatus {
+  private Long id;
+  private Boolean isActive;
+  private Long tokenEpoch;
+}
@@ -7,19 +7,32 @@ import lombok.ToString;
 
 @Data
 @Entity
-@Table(name = "activity_messages")
+@Table(
+    name = "activity_messages",
+    indexes = {
+      // Keyset pagination of a room's history (newest first / after a cursor)
+      @Index(name = "idx_message_activity_deleted_id", columnList = "activity_id, is_deleted, id"),
+      // Timestamp polling fallback (getMessagesSince)
+      @Index(
+          name = "idx_message_activity_deleted_created",
+          columnList = "activity_id, is_deleted, created_at")
+    })
 public class ActivityMessage {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "activity_messages_seq")
+  @SequenceGenerator(
+      name = "activity_messages_seq",
+      sequenceName = "activity_messages_seq",
+      allocationSize = 50)
   private Long id;
 
-  @ManyToOne
+  @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "activity_id", nullable = false)
   @ToString.Exclude
   private Activity activity;
 
-  @ManyToOne
+  @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "user_id", nullable = false)
   @ToString.Exclude
   private User user;
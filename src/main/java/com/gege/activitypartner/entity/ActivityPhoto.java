@@ -16,8 +16,12 @@ import org.hibernate.annotations.CreationTimestamp;
 public class ActivityPhoto {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
-  private Long id;
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "activity_photos_seq")
+  @SequenceGenerator(
+      name = "activity_photos_seq",
+      sequenceName = "activity_photos_seq",
+      allocationSize = 50)
+  private Long id; // Pooled ids allow batched gallery inserts (see V3__ActivityPhotoIds)
 
   @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "activity_id", nullable = false)
@@ -32,6 +36,16 @@ public class ActivityPhoto {
   @Column(nullable = false, length = 1000)
   private String photoUrl;
 
+  // Resized JPEG derivatives, filled in asynchronously after upload (null until generated)
+  @Column(length = 1000)
+  private String thumbnailUrl;
+
+  @Column(length = 1000)
+  private String mediumUrl;
+
+  @Column(length = 1000)
+  private String largeUrl;
+
   @Column(nullable = false)
   private Integer displayOrder = 0; // Order to display photos
 
@@ -10,7 +10,8 @@ import lombok.Data;
 public class AppLog {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "app_logs_seq")
+  @SequenceGenerator(name = "app_logs_seq", sequenceName = "app_logs_seq", allocationSize = 50)
   private Long id;
 
   @Column(length = 20)
@@ -44,6 +45,8 @@ public class AppLog {
 
   @PrePersist
   protected void onCreate() {
-    receivedAt = LocalDateTime.now();
+    if (receivedAt == null) {
+      receivedAt = LocalDateTime.now(); // Queued entries keep the time they were submitted
+    }
   }
 }
@@ -0,0 +1,48 @@
+package com.gege.activitypartner.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.UpdateTimestamp;
+
+@Entity
+@Table(
+    name = "chat_read_cursors",
+    uniqueConstraints =
+        @UniqueConstraint(
+            name = "uk_chat_read_cursor_user_activity",
+            columnNames = {"user_id", "activity_id"}),
+    indexes = @Index(name = "idx_chat_read_cursor_activity", columnList = "activity_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatReadCursor {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "user_id", nullable = false)
+  @ToString.Exclude
+  private User user; // Chat member this cursor belongs to
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "activity_id", nullable = false)
+  @ToString.Exclude
+  private Activity activity; // Activity whose chat is tracked
+
+  private Long lastReadMessageId; // Null until the user has read anything
+
+  // Send time of lastReadMessageId; (lastReadMessageAt, lastReadMessageId) is the read position,
+  // since pooled message ids are not in send order
+  private LocalDateTime lastReadMessageAt;
+
+  @Column(nullable = false)
+  private Integer unreadCount = 0; // Messages from others after the read position
+
+  @UpdateTimestamp private LocalDateTime updatedAt;
+}
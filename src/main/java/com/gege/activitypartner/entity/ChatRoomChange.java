@@ -0,0 +1,57 @@
+package com.gege.activitypartner.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+/**
+ * A committed change to an activity's chat room, written in the same transaction as the change so
+ * every application instance can poll for it and drop what it cached about the room (see
+ * ChatRoomChangeFeed)
+ */
+@Entity
+@Table(
+    name = "chat_room_changes",
+    indexes = {@Index(name = "idx_chat_room_change_changed", columnList = "changed_at")})
+@Data
+@NoArgsConstructor
+public class ChatRoomChange {
+
+  public enum Kind {
+    MEMBERSHIP, // Someone joined or left the chat
+    MESSAGE_SENT,
+    MESSAGE_DELETED,
+    DELETED // The activity and its chat are gone
+  }
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(nullable = false)
+  private Long activityId;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false, length = 20)
+  private Kind kind;
+
+  // Sent or deleted message; null for room-level changes
+  private Long messageId;
+
+  // Instance that made the change; it has already updated its own caches
+  @Column(nullable = false, length = 36)
+  private String origin;
+
+  @CreationTimestamp
+  @Column(nullable = false, updatable = false)
+  private LocalDateTime changedAt;
+
+  public ChatRoomChange(Long activityId, Kind kind, Long messageId, String origin) {
+    this.activityId = activityId;
+    this.kind = kind;
+    this.messageId = messageId;
+    this.origin = origin;
+  }
+}
@@ -24,6 +24,16 @@ public class CoverImage {
   @Column(nullable = false)
   private String imageUrl;
 
+  // Resized JPEG derivatives, filled in asynchronously after upload (null until generated)
+  @Column(length = 1000)
+  private String thumbnailUrl;
+
+  @Column(length = 1000)
+  private String mediumUrl;
+
+  @Column(length = 1000)
+  private String largeUrl;
+
   @Column(length = 255)
   private String displayName;
 
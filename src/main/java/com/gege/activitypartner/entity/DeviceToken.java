@@ -0,0 +1,45 @@
+package com.gege.activitypartner.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.CreationTimestamp;
+
+@Entity
+@Table(
+    name = "device_tokens",
+    uniqueConstraints = @UniqueConstraint(name = "uk_device_token", columnNames = "token"),
+    indexes = {
+      @Index(name = "idx_device_token_user", columnList = "user_id"),
+      @Index(name = "idx_device_token_last_seen", columnList = "last_seen_at")
+    })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeviceToken {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "user_id", nullable = false)
+  @ToString.Exclude
+  private User user; // Owner of the device
+
+  @Column(nullable = false, length = 500)
+  private String token; // Firebase Cloud Messaging registration token
+
+  @Column(length = 20)
+  private String platform; // android, ios, web
+
+  @Column(nullable = false)
+  private LocalDateTime lastSeenAt; // Last time the device registered this token
+
+  @CreationTimestamp
+  @Column(nullable = false, updatable = false)
+  private LocalDateTime createdAt;
+}
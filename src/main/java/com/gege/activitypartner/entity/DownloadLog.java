@@ -10,7 +10,11 @@ import lombok.Data;
 public class DownloadLog {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "download_logs_seq")
+  @SequenceGenerator(
+      name = "download_logs_seq",
+      sequenceName = "download_logs_seq",
+      allocationSize = 50)
   private Long id;
 
   @Column(length = 100)
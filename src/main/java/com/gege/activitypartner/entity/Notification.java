@@ -16,7 +16,11 @@ import org.hibernate.annotations.CreationTimestamp;
 public class Notification {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notifications_seq")
+  @SequenceGenerator(
+      name = "notifications_seq",
+      sequenceName = "notifications_seq",
+      allocationSize = 50)
   private Long id;
 
   @ManyToOne(fetch = FetchType.LAZY)
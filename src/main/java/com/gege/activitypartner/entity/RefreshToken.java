@@ -8,7 +8,11 @@ import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
 
 @Entity
-@Table(name = "refresh_tokens")
+@Table(
+    name = "refresh_tokens",
+    uniqueConstraints =
+        @UniqueConstraint(name = "uk_refresh_tokens_token_hash", columnNames = "token_hash"),
+    indexes = {@Index(name = "idx_refresh_tokens_expiry", columnList = "expiry_date")})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -18,8 +22,12 @@ public class RefreshToken {
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private Long id;
 
-  @Column(nullable = false, unique = true, length = 500)
-  private String token;
+  // SHA-256 of the token; the token itself is never stored
+  @Column(name = "token_hash", nullable = false, length = 64)
+  private String tokenHash;
+
+  // Raw token, only known while handling the request that issued or presented it
+  @Transient private String token;
 
   @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "user_id", nullable = false)
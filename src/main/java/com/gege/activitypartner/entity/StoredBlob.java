@@ -0,0 +1,31 @@
+package com.gege.activitypartner.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+/** Reference count of a content-addressed file; the file is deleted when it drops to zero */
+@Entity
+@Table(name = "stored_blobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredBlob {
+
+  @Id
+  @Column(length = 80)
+  private String fileName; // <sha256 hex><extension>, also the public file name in image URLs
+
+  @Column(nullable = false)
+  private Integer refCount = 1; // Number of rows (photos, covers, profiles) pointing at the file
+
+  @Column(nullable = false)
+  private Long sizeBytes;
+
+  @CreationTimestamp
+  @Column(nullable = false, updatable = false)
+  private LocalDateTime createdAt;
+}
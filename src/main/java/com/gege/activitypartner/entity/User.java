@@ -93,6 +93,11 @@ public class User {
   @Column(nullable = false)
   private Boolean isActive = true;
 
+  // Bumped to revoke every access token issued so far (logout-all, password reset, deactivation).
+  // Only changed through UserRepository.incrementTokenEpoch so a stale entity save cannot undo it
+  @Column(nullable = false, updatable = false)
+  private Long tokenEpoch = 0L;
+
   @CreationTimestamp
   @Column(nullable = false, updatable = false)
   private LocalDateTime createdAt;
@@ -0,0 +1,35 @@
+package com.gege.activitypartner.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+/**
+ * A committed change to whether a user's tokens are accepted, written in the same transaction as
+ * the change so every application instance can poll for it (see UserAccessChangeFeed)
+ */
+@Entity
+@Table(
+    name = "user_access_changes",
+    indexes = {@Index(name = "idx_user_access_change_changed", columnList = "changed_at")})
+@Data
+@NoArgsConstructor
+public class UserAccessChange {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(nullable = false)
+  private Long userId;
+
+  @CreationTimestamp
+  @Column(nullable = false, updatable = false)
+  private LocalDateTime changedAt;
+
+  public UserAccessChange(Long userId) {
+    this.userId = userId;
+  }
+}
@@ -27,6 +27,16 @@ public class UserPhoto {
   @Column(nullable = false, length = 1000)
   private String photoUrl;
 
+  // Resized JPEG derivatives, filled in asynchronously after upload (null until generated)
+  @Column(length = 1000)
+  private String thumbnailUrl;
+
+  @Column(length = 1000)
+  private String mediumUrl;
+
+  @Column(length = 1000)
+  private String largeUrl;
+
   @Column(nullable = false)
   private Boolean isProfilePicture =
       false; // Flag to indicate which photo is the main profile picture
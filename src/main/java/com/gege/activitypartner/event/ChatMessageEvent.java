@@ -0,0 +1,24 @@
+package com.gege.activitypartner.event;
+
+import com.gege.activitypartner.dto.ActivityMessageResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published by ActivityMessageService when a chat message is sent or deleted. Listeners run after
+ * the transaction commits, so they never see a message that was rolled back; only
+ * ChatRoomChangeFeed records it synchronously, inside the transaction.
+ */
+@Getter
+@AllArgsConstructor
+public class ChatMessageEvent {
+
+  public enum Type {
+    SENT,
+    DELETED
+  }
+
+  private final Type type;
+  private final Long activityId;
+  private final ActivityMessageResponse message; // isOwnMessage is always false here
+}
@@ -0,0 +1,25 @@
+package com.gege.activitypartner.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when an uploaded image has been written to the file store. Derivatives are generated
+ * after the transaction commits, so a rolled back upload never spends CPU on resizing.
+ */
+@Getter
+@AllArgsConstructor
+public class ImageStoredEvent {
+
+  public enum Owner {
+    PROFILE_IMAGE, // User.profileImageUrl, no derivative columns
+    USER_PHOTO,
+    ACTIVITY_PHOTO,
+    COVER_IMAGE
+  }
+
+  private final Owner owner;
+  private final Long ownerId; // Row to record derivative URLs on; null for PROFILE_IMAGE
+  private final String fileName;
+  private final String originalUrl;
+}
@@ -0,0 +1,33 @@
+package com.gege.activitypartner.event;
+
+import com.gege.activitypartner.entity.ParticipantStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published by ActivityParticipantService whenever a participation changes status or is deleted.
+ * Chat components listen for it to keep their view of who is in an activity's room current.
+ */
+@Getter
+@AllArgsConstructor
+public class ParticipantStatusChangedEvent {
+
+  private final Long activityId;
+  private final Long userId;
+  private final ParticipantStatus oldStatus; // Null for a new participation
+  private final ParticipantStatus newStatus; // Null when the participation was deleted
+
+  /** Whether the user could use the chat (ACCEPTED or JOINED) before the change */
+  public boolean wasChatMember() {
+    return isChatStatus(oldStatus);
+  }
+
+  /** Whether the user can use the chat after the change */
+  public boolean isChatMember() {
+    return isChatStatus(newStatus);
+  }
+
+  public static boolean isChatStatus(ParticipantStatus status) {
+    return status == ParticipantStatus.ACCEPTED || status == ParticipantStatus.JOINED;
+  }
+}
@@ -0,0 +1,17 @@
+package com.gege.activitypartner.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published by UserService when something that decides whether a user's tokens are still accepted
+ * changes (deactivation, password reset, logout from all devices). UserStatusCache drops the
+ * user's entry once the change is committed, and UserAccessChangeFeed records it so the other
+ * application instances do the same.
+ */
+@Getter
+@AllArgsConstructor
+public class UserAccessChangedEvent {
+
+  private final Long userId;
+}
@@ -0,0 +1,8 @@
+package com.gege.activitypartner.exception;
+
+/** Malformed or contradictory request parameters; answered with 400 */
+public class InvalidRequestException extends RuntimeException {
+  public InvalidRequestException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,15 @@
+package com.gege.activitypartner.exception;
+
+import lombok.Getter;
+
+/** Request refused because a limit was hit; answered with 429 and a Retry-After header */
+@Getter
+public class TooManyRequestsException extends RuntimeException {
+
+  private final long retryAfterSeconds;
+
+  public TooManyRequestsException(String message, long retryAfterSeconds) {
+    super(message);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+}
@@ -0,0 +1,77 @@
+package com.gege.activitypartner.migration;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Helpers shared by the Java migrations. Tables are still created by Hibernate (ddl-auto=update),
+ * which runs after Flyway, so every migration must cope with a table that does not exist yet on a
+ * fresh database.
+ */
+final class MigrationSupport {
+
+  private MigrationSupport() {}
+
+  static boolean tableExists(Connection connection, String table) throws SQLException {
+    try (ResultSet rs =
+        connection
+            .getMetaData()
+            .getTables(connection.getCatalog(), null, table, new String[] {"TABLE"})) {
+      return rs.next();
+    }
+  }
+
+  static boolean columnExists(Connection connection, String table, String column)
+      throws SQLException {
+    try (ResultSet rs =
+        connection.getMetaData().getColumns(connection.getCatalog(), null, table, column)) {
+      return rs.next();
+    }
+  }
+
+  static boolean indexExists(Connection connection, String table, String index)
+      throws SQLException {
+    try (ResultSet rs =
+        connection.getMetaData().getIndexInfo(connection.getCatalog(), null, table, false, false)) {
+      while (rs.next()) {
+        if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Create the single-row table Hibernate uses to emulate a sequence on MySQL and seed it past the
+   * current maximum id. The pooled optimizer treats the stored value as the upper bound of the
+   * first block, so the seed is offset by the allocation size to keep new ids above existing rows.
+   */
+  static void createSequenceTable(
+      Connection connection, String sequenceTable, String entityTable, int allocationSize)
+      throws SQLException {
+    if (tableExists(connection, sequenceTable)) {
+      return;
+    }
+
+    long nextVal = 1;
+    if (tableExists(connection, entityTable)) {
+      try (Statement statement = connection.createStatement();
+          ResultSet rs = statement.executeQuery("SELECT MAX(id) FROM " + entityTable)) {
+        if (rs.next()) {
+          long maxId = rs.getLong(1);
+          if (!rs.wasNull()) {
+            nextVal = maxId + allocationSize + 1;
+          }
+        }
+      }
+    }
+
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE " + sequenceTable + " (next_val BIGINT) ENGINE=InnoDB");
+      statement.execute("INSERT INTO " + sequenceTable + " VALUES (" + nextVal + ")");
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package com.gege.activitypartner.migration;
+
+import java.sql.Connection;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves the high-volume insert tables from IDENTITY to pooled sequence ids (emulated with a table
+ * on MySQL), so Hibernate can batch their inserts. Must stay in sync with the
+ * {@code @SequenceGenerator} allocation size on each entity.
+ */
+@Component
+public class V2__PooledIdGenerators extends BaseJavaMigration {
+
+  private static final int ALLOCATION_SIZE = 50;
+
+  @Override
+  public void migrate(Context context) throws Exception {
+    Connection connection = context.getConnection();
+    MigrationSupport.createSequenceTable(
+        connection, "notifications_seq", "notifications", ALLOCATION_SIZE);
+    MigrationSupport.createSequenceTable(connection, "app_logs_seq", "app_logs", ALLOCATION_SIZE);
+    MigrationSupport.createSequenceTable(
+        connection, "activity_messages_seq", "activity_messages", ALLOCATION_SIZE);
+    MigrationSupport.createSequenceTable(
+        connection, "download_logs_seq", "download_logs", ALLOCATION_SIZE);
+  }
+}
@@ -0,0 +1,19 @@
+package com.gege.activitypartner.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves activity photos to pooled sequence ids so a multi-photo gallery upload is inserted in one
+ * JDBC batch. Must stay in sync with the {@code @SequenceGenerator} on ActivityPhoto.
+ */
+@Component
+public class V3__ActivityPhotoIds extends BaseJavaMigration {
+
+  @Override
+  public void migrate(Context context) throws Exception {
+    MigrationSupport.createSequenceTable(
+        context.getConnection(), "activity_photos_seq", "activity_photos", 50);
+  }
+}
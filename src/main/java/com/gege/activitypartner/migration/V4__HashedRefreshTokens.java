@@ -0,0 +1,71 @@
+package com.gege.activitypartner.migration;
+
+import com.gege.activitypartner.util.TokenDigest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.stereotype.Component;
+
+/**
+ * Replaces the raw refresh token column with its SHA-256 digest under a unique index. Existing
+ * sessions stay valid because their tokens are hashed in place before the raw column is dropped.
+ * Must stay in sync with the mapping of RefreshToken.
+ */
+@Component
+public class V4__HashedRefreshTokens extends BaseJavaMigration {
+
+  private static final int BATCH_SIZE = 500;
+  private static final String UNIQUE_HASH = "uk_refresh_tokens_token_hash";
+  private static final String EXPIRY_INDEX = "idx_refresh_tokens_expiry";
+
+  @Override
+  public void migrate(Context context) throws Exception {
+    Connection connection = context.getConnection();
+    if (!MigrationSupport.tableExists(connection, "refresh_tokens")) {
+      return;
+    }
+
+    try (Statement statement = connection.createStatement()) {
+      if (!MigrationSupport.columnExists(connection, "refresh_tokens", "token_hash")) {
+        statement.execute("ALTER TABLE refresh_tokens ADD COLUMN token_hash VARCHAR(64) NULL");
+      }
+      if (MigrationSupport.columnExists(connection, "refresh_tokens", "token")) {
+        hashExistingTokens(connection);
+        statement.execute("ALTER TABLE refresh_tokens DROP COLUMN token");
+      }
+      statement.execute("ALTER TABLE refresh_tokens MODIFY token_hash VARCHAR(64) NOT NULL");
+      if (!MigrationSupport.indexExists(connection, "refresh_tokens", UNIQUE_HASH)) {
+        statement.execute(
+            "ALTER TABLE refresh_tokens ADD CONSTRAINT " + UNIQUE_HASH + " UNIQUE (token_hash)");
+      }
+      if (!MigrationSupport.indexExists(connection, "refresh_tokens", EXPIRY_INDEX)) {
+        statement.execute("CREATE INDEX " + EXPIRY_INDEX + " ON refresh_tokens (expiry_date)");
+      }
+    }
+  }
+
+  private static void hashExistingTokens(Connection connection) throws Exception {
+    try (Statement select = connection.createStatement();
+        ResultSet rs =
+            select.executeQuery("SELECT id, token FROM refresh_tokens WHERE token_hash IS NULL");
+        PreparedStatement update =
+            connection.prepareStatement("UPDATE refresh_tokens SET token_hash = ? WHERE id = ?")) {
+      int pending = 0;
+      while (rs.next()) {
+        update.setString(1, TokenDigest.sha256Hex(rs.getString("token")));
+        update.setLong(2, rs.getLong("id"));
+        update.addBatch();
+        if (++pending == BATCH_SIZE) {
+          update.executeBatch();
+          pending = 0;
+        }
+      }
+      if (pending > 0) {
+        update.executeBatch();
+      }
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package com.gege.activitypartner.migration;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.stereotype.Component;
+
+/**
+ * Read cursors store the send time of the last read message next to its id, since pooled message
+ * ids are not in send order; existing cursors get it from their message. Also creates the cursor
+ * of every chat member that has none, because the chat overview no longer creates missing cursors
+ * on read. Must stay in sync with the mapping of ChatReadCursor.
+ */
+@Component
+public class V5__ChatReadCursorPositions extends BaseJavaMigration {
+
+  // Messages from others that are not deleted, i.e. everything unread for a cursor at the start
+  private static final String UNREAD_FOR =
+      "(SELECT COUNT(*) FROM activity_messages m WHERE m.activity_id = %s "
+          + "AND m.is_deleted = FALSE AND m.user_id <> %s)";
+
+  @Override
+  public void migrate(Context context) throws Exception {
+    Connection connection = context.getConnection();
+    if (!MigrationSupport.tableExists(connection, "activities")) {
+      return; // Fresh database, Hibernate creates everything
+    }
+
+    try (Statement statement = connection.createStatement()) {
+      if (!MigrationSupport.tableExists(connection, "chat_read_cursors")) {
+        statement.execute(
+            "CREATE TABLE chat_read_cursors ("
+                + "id BIGINT NOT NULL AUTO_INCREMENT, user_id BIGINT NOT NULL, "
+                + "activity_id BIGINT NOT NULL, last_read_message_id BIGINT NULL, "
+                + "last_read_message_at DATETIME(6) NULL, unread_count INT NOT NULL, "
+                + "updated_at DATETIME(6) NULL, PRIMARY KEY (id), "
+                + "CONSTRAINT uk_chat_read_cursor_user_activity UNIQUE (user_id, activity_id), "
+                + "INDEX idx_chat_read_cursor_activity (activity_id)) ENGINE=InnoDB");
+      } else if (!MigrationSupport.columnExists(
+          connection, "chat_read_cursors", "last_read_message_at")) {
+        statement.execute(
+            "ALTER TABLE chat_read_cursors ADD COLUMN last_read_message_at DATETIME(6) NULL");
+        statement.executeUpdate(
+            "UPDATE chat_read_cursors c JOIN activity_messages m ON m.id = c.last_read_message_id "
+                + "SET c.last_read_message_at = m.created_at");
+      }
+      if (!MigrationSupport.tableExists(connection, "activity_messages")) {
+        return; // No chat has been used yet; cursors are created on join from now on
+      }
+
+      statement.executeUpdate(
+          "INSERT INTO chat_read_cursors (user_id, activity_id, unread_count) "
+              + "SELECT a.creator_id, a.id, "
+              + String.format(UNREAD_FOR, "a.id", "a.creator_id")
+              + " FROM activities a WHERE NOT EXISTS (SELECT 1 FROM chat_read_cursors c "
+              + "WHERE c.activity_id = a.id AND c.user_id = a.creator_id)");
+      statement.executeUpdate(
+          "INSERT INTO chat_read_cursors (user_id, activity_id, unread_count) "
+              + "SELECT p.user_id, p.activity_id, "
+              + String.format(UNREAD_FOR, "p.activity_id", "p.user_id")
+              + " FROM activity_participants p WHERE p.status IN ('ACCEPTED', 'JOINED') "
+              + "AND NOT EXISTS (SELECT 1 FROM chat_read_cursors c "
+              + "WHERE c.activity_id = p.activity_id AND c.user_id = p.user_id)");
+    }
+  }
+}
@@ -1,9 +1,14 @@
 package com.gege.activitypartner.repository;
 
+import com.gege.activitypartner.dto.ActivityMessageResponse;
 import com.gege.activitypartner.entity.ActivityMessage;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -12,15 +17,116 @@ import org.springframework.stereotype.Repository;
 public interface ActivityMessageRepository extends JpaRepository<ActivityMessage, Long> {
 
   @Query(
-      "SELECT m FROM ActivityMessage m WHERE m.activity.id = :activityId AND m.isDeleted = false ORDER BY m.createdAt ASC")
+      "SELECT m FROM ActivityMessage m JOIN FETCH m.user WHERE m.activity.id = :activityId AND m.isDeleted = false ORDER BY m.createdAt ASC")
   List<ActivityMessage> findByActivityIdAndNotDeleted(@Param("activityId") Long activityId);
 
   @Query(
-      "SELECT m FROM ActivityMessage m WHERE m.activity.id = :activityId AND m.isDeleted = false AND m.createdAt > :since ORDER BY m.createdAt ASC")
+      "SELECT m FROM ActivityMessage m JOIN FETCH m.user WHERE m.activity.id = :activityId AND m.isDeleted = false AND m.createdAt > :since ORDER BY m.createdAt ASC")
   List<ActivityMessage> findByActivityIdSince(
       @Param("activityId") Long activityId, @Param("since") LocalDateTime since);
 
   @Query(
       "SELECT COUNT(m) FROM ActivityMessage m WHERE m.activity.id = :activityId AND m.isDeleted = false")
   Long countByActivityId(@Param("activityId") Long activityId);
+
+  // Unread messages from others after a (createdAt, id) read position (null = whole room)
+  @Query(
+      "SELECT COUNT(m) FROM ActivityMessage m WHERE m.activity.id = :activityId AND m.isDeleted = false "
+          + "AND m.user.id <> :userId AND (:afterId IS NULL OR m.createdAt > :afterAt "
+          + "OR (m.createdAt = :afterAt AND m.id > :afterId))")
+  long countUnread(
+      @Param("activityId") Long activityId,
+      @Param("userId") Long userId,
+      @Param("afterAt") LocalDateTime afterAt,
+      @Param("afterId") Long afterId);
+
+  // Latest non-deleted message of a room by (createdAt, id); ask for a page of one
+  @Query(
+      "SELECT m FROM ActivityMessage m WHERE m.activity.id = :activityId AND m.isDeleted = false "
+          + "ORDER BY m.createdAt DESC, m.id DESC")
+  List<ActivityMessage> findLatest(@Param("activityId") Long activityId, Pageable pageable);
+
+  // Soft delete; 0 if the message was already deleted
+  @Modifying
+  @Query(
+      "UPDATE ActivityMessage m SET m.isDeleted = true WHERE m.id = :messageId AND m.isDeleted = false")
+  int markDeleted(@Param("messageId") Long messageId);
+
+  // Send time of a message, used to turn an id cursor into a (createdAt, id) keyset position
+  @Query(
+      "SELECT m.createdAt FROM ActivityMessage m WHERE m.id = :messageId AND m.activity.id = :activityId")
+  Optional<LocalDateTime> findCreatedAt(
+      @Param("activityId") Long activityId, @Param("messageId") Long messageId);
+
+  // Keyset-paginated history projected straight into the response DTO with the sender joined in,
+  // served by idx_message_activity_deleted_created (InnoDB appends the id to it). History is
+  // ordered by (createdAt, id): pooled ids are handed out in blocks of 50 per instance, so id
+  // order is not send order once more than one instance writes; the id only breaks ties.
+  String HISTORY_SELECT =
+      "SELECT new com.gege.activitypartner.dto.ActivityMessageResponse("
+          + "m.id, m.activity.id, u.id, u.fullName, u.profileImageUrl, m.messageText, m.createdAt, "
+          + "CASE WHEN u.id = :userId THEN true ELSE false END) "
+          + "FROM ActivityMessage m JOIN m.user u "
+          + "WHERE m.activity.id = :activityId AND m.isDeleted = false ";
+
+  String NEWEST_FIRST = "ORDER BY m.createdAt DESC, m.id DESC";
+
+  String OLDEST_FIRST = "ORDER BY m.createdAt ASC, m.id ASC";
+
+  // Newest messages of a room, newest first
+  @Query(HISTORY_SELECT + NEWEST_FIRST)
+  List<ActivityMessageResponse> findLatestHistory(
+      @Param("activityId") Long activityId, @Param("userId") Long userId, Pageable pageable);
+
+  // Messages older than the cursor, newest first
+  @Query(
+      HISTORY_SELECT
+          + "AND (m.createdAt < :beforeAt OR (m.createdAt = :beforeAt AND m.id < :beforeId)) "
+          + NEWEST_FIRST)
+  List<ActivityMessageResponse> findHistoryBefore(
+      @Param("activityId") Long activityId,
+      @Param("beforeAt") LocalDateTime beforeAt,
+      @Param("beforeId") Long beforeId,
+      @Param("userId") Long userId,
+      Pageable pageable);
+
+  // Oldest messages of a room; the chat search index builds from this page and findHistoryAfter
+  @Query(HISTORY_SELECT + OLDEST_FIRST)
+  List<ActivityMessageResponse> findOldestHistory(
+      @Param("activityId") Long activityId, @Param("userId") Long userId, Pageable pageable);
+
+  // Given messages of a room unless deleted, oldest first (search index catching up on other nodes)
+  @Query(HISTORY_SELECT + "AND m.id IN :ids " + OLDEST_FIRST)
+  List<ActivityMessageResponse> findHistoryByIds(
+      @Param("activityId") Long activityId,
+      @Param("ids") Collection<Long> ids,
+      @Param("userId") Long userId);
+
+  // Messages newer than the cursor, oldest first
+  @Query(
+      HISTORY_SELECT
+          + "AND (m.createdAt > :afterAt OR (m.createdAt = :afterAt AND m.id > :afterId)) "
+          + OLDEST_FIRST)
+  List<ActivityMessageResponse> findHistoryAfter(
+      @Param("activityId") Long activityId,
+      @Param("afterAt") LocalDateTime afterAt,
+      @Param("afterId") Long afterId,
+      @Param("userId") Long userId,
+      Pageable pageable);
+
+  // Messages sent shortly before the cursor, oldest first. A message is stamped before its
+  // transaction commits, so one that committed late can sit behind a cursor the client already
+  // passed; catch-up re-sends this window instead of skipping it.
+  @Query(
+      HISTORY_SELECT
+          + "AND m.createdAt >= :fromAt "
+          + "AND (m.createdAt < :afterAt OR (m.createdAt = :afterAt AND m.id < :afterId)) "
+          + OLDEST_FIRST)
+  List<ActivityMessageResponse> findHistoryOverlap(
+      @Param("activityId") Long activityId,
+      @Param("fromAt") LocalDateTime fromAt,
+      @Param("afterAt") LocalDateTime afterAt,
+      @Param("afterId") Long afterId,
+      @Param("userId") Long userId,
+      Pageable pageable);
 }
@@ -87,4 +87,9 @@ public interface ActivityParticipantRepository extends JpaRepository<ActivityPar
           + "WHERE ap.activity.id = :activityId "
           + "AND (ap.status = 'ACCEPTED' OR ap.status = 'JOINED')")
   Long countOccupiedParticipants(@Param("activityId") Long activityId);
+
+  // Users who may use the activity chat (accepted or joined), for the chat membership cache
+  @Query(
+      "SELECT ap.user.id FROM ActivityParticipant ap WHERE ap.activity.id = :activityId AND ap.status IN ('ACCEPTED', 'JOINED')")
+  List<Long> findChatMemberUserIds(@Param("activityId") Long activityId);
 }
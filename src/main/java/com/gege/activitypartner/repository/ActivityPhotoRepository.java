@@ -1,9 +1,12 @@
 package com.gege.activitypartner.repository;
 
+import com.gege.activitypartner.dto.FileReference;
 import com.gege.activitypartner.entity.ActivityPhoto;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -31,4 +34,24 @@ public interface ActivityPhotoRepository extends JpaRepository<ActivityPhoto, Lo
 
   // Count photos uploaded by a specific user for an activity
   Long countByActivityIdAndUserId(Long activityId, Long userId);
+
+  // Record generated derivative URLs without loading the row
+  @Modifying
+  @Query(
+      "UPDATE ActivityPhoto ap SET ap.thumbnailUrl = :thumb, ap.mediumUrl = :medium, ap.largeUrl = :large WHERE ap.id = :id")
+  int updateDerivativeUrls(
+      @Param("id") Long id,
+      @Param("thumb") String thumbnailUrl,
+      @Param("medium") String mediumUrl,
+      @Param("large") String largeUrl);
+
+  // Photo URLs of an activity in gallery order, for the ZIP export
+  @Query(
+      "SELECT ap.photoUrl FROM ActivityPhoto ap WHERE ap.activity.id = :activityId ORDER BY ap.displayOrder, ap.id")
+  List<String> findPhotoUrlsByActivityId(@Param("activityId") Long activityId);
+
+  // Keyset page of referenced upload URLs, for the orphaned-file collector
+  @Query(
+      "SELECT new com.gege.activitypartner.dto.FileReference(ap.id, ap.photoUrl) FROM ActivityPhoto ap WHERE ap.id > :afterId AND ap.photoUrl IS NOT NULL ORDER BY ap.id")
+  List<FileReference> findFileReferencesAfter(@Param("afterId") Long afterId, Pageable pageable);
 }
@@ -1,9 +1,12 @@
 package com.gege.activitypartner.repository;
 
+import com.gege.activitypartner.dto.FileReference;
 import com.gege.activitypartner.entity.Activity;
 import com.gege.activitypartner.entity.ActivityStatus;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -56,4 +59,13 @@ public interface ActivityRepository extends JpaRepository<Activity, Long> {
       @Param("status") ActivityStatus status,
       @Param("startTime") LocalDateTime startTime,
       @Param("endTime") LocalDateTime endTime);
+
+  // Creator of an activity without loading the entity (chat membership cache)
+  @Query("SELECT a.creator.id FROM Activity a WHERE a.id = :activityId")
+  Optional<Long> findCreatorIdById(@Param("activityId") Long activityId);
+
+  // Keyset page of referenced upload URLs, for the orphaned-file collector
+  @Query(
+      "SELECT new com.gege.activitypartner.dto.FileReference(a.id, a.coverImageUrl) FROM Activity a WHERE a.id > :afterId AND a.coverImageUrl IS NOT NULL ORDER BY a.id")
+  List<FileReference> findFileReferencesAfter(@Param("afterId") Long afterId, Pageable pageable);
 }
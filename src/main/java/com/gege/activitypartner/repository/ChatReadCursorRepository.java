@@ -0,0 +1,81 @@
+package com.gege.activitypartner.repository;
+
+import com.gege.activitypartner.dto.ChatOverviewResponse;
+import com.gege.activitypartner.entity.ChatReadCursor;
+import jakarta.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ChatReadCursorRepository extends JpaRepository<ChatReadCursor, Long> {
+
+  Optional<ChatReadCursor> findByUserIdAndActivityId(Long userId, Long activityId);
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  Optional<ChatReadCursor> findLockedByUserIdAndActivityId(Long userId, Long activityId);
+
+  // Create the user's cursor for a room unless it exists. Cursors are created when an activity is
+  // created, from the participant listener, markRead and sendMessage, possibly at the same time, so
+  // a plain insert could collide on uk_chat_read_cursor_user_activity.
+  @Modifying
+  @Query(
+      value =
+          "INSERT INTO chat_read_cursors (user_id, activity_id, unread_count) "
+              + "VALUES (:userId, :activityId, :unreadCount) ON DUPLICATE KEY UPDATE id = id",
+      nativeQuery = true)
+  int insertIfAbsent(
+      @Param("userId") Long userId,
+      @Param("activityId") Long activityId,
+      @Param("unreadCount") int unreadCount);
+
+  // A new message is unread for every other member of the room
+  @Modifying
+  @Query(
+      "UPDATE ChatReadCursor c SET c.unreadCount = c.unreadCount + 1 WHERE c.activity.id = :activityId AND c.user.id <> :senderId")
+  int incrementUnread(@Param("activityId") Long activityId, @Param("senderId") Long senderId);
+
+  // A deleted message no longer counts for members whose read position is before it
+  @Modifying
+  @Query(
+      "UPDATE ChatReadCursor c SET c.unreadCount = c.unreadCount - 1 "
+          + "WHERE c.activity.id = :activityId AND c.user.id <> :senderId AND c.unreadCount > 0 "
+          + "AND (c.lastReadMessageId IS NULL OR c.lastReadMessageAt < :messageAt "
+          + "OR (c.lastReadMessageAt = :messageAt AND c.lastReadMessageId < :messageId))")
+  int decrementUnread(
+      @Param("activityId") Long activityId,
+      @Param("senderId") Long senderId,
+      @Param("messageAt") LocalDateTime messageAt,
+      @Param("messageId") Long messageId);
+
+  @Modifying
+  @Query("DELETE FROM ChatReadCursor c WHERE c.activity.id = :activityId AND c.user.id = :userId")
+  int deleteByActivityIdAndUserId(
+      @Param("activityId") Long activityId, @Param("userId") Long userId);
+
+  @Modifying
+  @Query("DELETE FROM ChatReadCursor c WHERE c.activity.id = :activityId")
+  int deleteByActivityId(@Param("activityId") Long activityId);
+
+  // Every chat of the user with its latest message and unread count, most recent activity first.
+  // The latest message is the one with no later (createdAt, id) position in the room.
+  @Query(
+      "SELECT new com.gege.activitypartner.dto.ChatOverviewResponse("
+          + "a.id, a.title, a.coverImageUrl, m.id, m.messageText, u.id, u.fullName, m.createdAt, "
+          + "c.unreadCount, c.lastReadMessageId) "
+          + "FROM ChatReadCursor c JOIN c.activity a "
+          + "LEFT JOIN ActivityMessage m ON m.activity = a AND m.isDeleted = false "
+          + "AND NOT EXISTS (SELECT m2.id FROM ActivityMessage m2 "
+          + "WHERE m2.activity = a AND m2.isDeleted = false AND (m2.createdAt > m.createdAt "
+          + "OR (m2.createdAt = m.createdAt AND m2.id > m.id))) "
+          + "LEFT JOIN m.user u "
+          + "WHERE c.user.id = :userId "
+          + "ORDER BY COALESCE(m.createdAt, a.createdAt) DESC")
+  List<ChatOverviewResponse> findChatOverview(@Param("userId") Long userId);
+}
@@ -0,0 +1,24 @@
+package com.gege.activitypartner.repository;
+
+import com.gege.activitypartner.entity.ChatRoomChange;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ChatRoomChangeRepository extends JpaRepository<ChatRoomChange, Long> {
+
+  // Room changes made by other instances since the given time; served by the changed_at index
+  @Query("SELECT c FROM ChatRoomChange c WHERE c.changedAt >= :since AND c.origin <> :origin")
+  List<ChatRoomChange> findChangedSince(
+      @Param("since") LocalDateTime since, @Param("origin") String origin);
+
+  // Changes every instance has long since polled
+  @Modifying
+  @Query("DELETE FROM ChatRoomChange c WHERE c.changedAt < :before")
+  int deleteChangedBefore(@Param("before") LocalDateTime before);
+}
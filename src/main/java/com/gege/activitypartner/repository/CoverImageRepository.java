@@ -1,9 +1,14 @@
 package com.gege.activitypartner.repository;
 
+import com.gege.activitypartner.dto.FileReference;
 import com.gege.activitypartner.entity.CoverImage;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -14,4 +19,19 @@ public interface CoverImageRepository extends JpaRepository<CoverImage, Long> {
   Optional<CoverImage> findByFileName(String fileName);
 
   List<CoverImage> findByActiveTrueOrderByDisplayNameAsc();
+
+  // Record generated derivative URLs without loading the row
+  @Modifying
+  @Query(
+      "UPDATE CoverImage c SET c.thumbnailUrl = :thumb, c.mediumUrl = :medium, c.largeUrl = :large WHERE c.id = :id")
+  int updateDerivativeUrls(
+      @Param("id") Long id,
+      @Param("thumb") String thumbnailUrl,
+      @Param("medium") String mediumUrl,
+      @Param("large") String largeUrl);
+
+  // Keyset page of referenced upload URLs, for the orphaned-file collector
+  @Query(
+      "SELECT new com.gege.activitypartner.dto.FileReference(c.id, c.imageUrl) FROM CoverImage c WHERE c.id > :afterId AND c.imageUrl IS NOT NULL ORDER BY c.id")
+  List<FileReference> findFileReferencesAfter(@Param("afterId") Long afterId, Pageable pageable);
 }
@@ -0,0 +1,32 @@
+package com.gege.activitypartner.repository;
+
+import com.gege.activitypartner.entity.DeviceToken;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DeviceTokenRepository extends JpaRepository<DeviceToken, Long> {
+
+  Optional<DeviceToken> findByToken(String token);
+
+  // All push tokens registered by a user (uses idx_device_token_user)
+  @Query("SELECT d.token FROM DeviceToken d WHERE d.user.id = :userId")
+  List<String> findTokensByUserId(@Param("userId") Long userId);
+
+  // Remove tokens that FCM reported as no longer valid
+  @Modifying
+  @Query("DELETE FROM DeviceToken d WHERE d.token IN :tokens")
+  int deleteByTokenIn(@Param("tokens") Collection<String> tokens);
+
+  // Remove tokens whose device has not checked in since the cutoff
+  @Modifying
+  @Query("DELETE FROM DeviceToken d WHERE d.lastSeenAt < :cutoff")
+  int deleteStaleTokens(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -5,6 +5,7 @@ import com.gege.activitypartner.entity.User;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -14,7 +15,8 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
 
-  Optional<RefreshToken> findByToken(String token);
+  // Unique index on token_hash makes this a single-row lookup
+  Optional<RefreshToken> findByTokenHash(String tokenHash);
 
   List<RefreshToken> findByUserAndIsActiveTrue(User user);
 
@@ -23,12 +25,23 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long
   void deactivateAllUserTokens(@Param("userId") Long userId);
 
   @Modifying
-  @Query("UPDATE RefreshToken rt SET rt.isActive = false WHERE rt.token = :token")
-  void deactivateToken(@Param("token") String token);
+  @Query("UPDATE RefreshToken rt SET rt.isActive = false WHERE rt.tokenHash = :tokenHash")
+  void deactivateToken(@Param("tokenHash") String tokenHash);
 
+  // Flush a coalesced last-used time; never moves it backwards
   @Modifying
-  @Query("DELETE FROM RefreshToken rt WHERE rt.expiryDate < :now")
-  void deleteExpiredTokens(@Param("now") LocalDateTime now);
+  @Query(
+      "UPDATE RefreshToken rt SET rt.lastUsedAt = :usedAt WHERE rt.id = :id AND (rt.lastUsedAt IS NULL OR rt.lastUsedAt < :usedAt)")
+  int updateLastUsedAt(@Param("id") Long id, @Param("usedAt") LocalDateTime usedAt);
+
+  // Next chunk of expired or deactivated tokens for the purge job
+  @Query(
+      "SELECT rt.id FROM RefreshToken rt WHERE rt.expiryDate < :now OR rt.isActive = false ORDER BY rt.id")
+  List<Long> findPurgeableIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+  @Modifying
+  @Query("DELETE FROM RefreshToken rt WHERE rt.id IN :ids")
+  int deleteByIdIn(@Param("ids") List<Long> ids);
 
   // Count active sessions for a user
   @Query("SELECT COUNT(rt) FROM RefreshToken rt WHERE rt.user.id = :userId AND rt.isActive = true")
@@ -0,0 +1,39 @@
+package com.gege.activitypartner.repository;
+
+import com.gege.activitypartner.entity.StoredBlob;
+import jakarta.persistence.LockModeType;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String> {
+
+  // Take a reference, creating the row for new content. One atomic statement, so two first
+  // uploads of the same bytes cannot both try to insert it; it also locks the row until commit.
+  @Modifying
+  @Query(
+      value =
+          "INSERT INTO stored_blobs (file_name, ref_count, size_bytes, created_at) "
+              + "VALUES (:fileName, 1, :sizeBytes, CURRENT_TIMESTAMP) "
+              + "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1",
+      nativeQuery = true)
+  int retain(@Param("fileName") String fileName, @Param("sizeBytes") long sizeBytes);
+
+  // SELECT ... FOR UPDATE; locks the key even when there is no row, so retain() waits for it
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  Optional<StoredBlob> findLockedByFileName(String fileName);
+
+  @Modifying
+  @Query("UPDATE StoredBlob b SET b.refCount = b.refCount - 1 WHERE b.fileName = :fileName")
+  int decrementRefCount(@Param("fileName") String fileName);
+
+  // Drop the row once nothing references the blob; callers hold the row lock
+  @Modifying
+  @Query("DELETE FROM StoredBlob b WHERE b.fileName = :fileName AND b.refCount <= 0")
+  int deleteIfUnreferenced(@Param("fileName") String fileName);
+}
@@ -0,0 +1,23 @@
+package com.gege.activitypartner.repository;
+
+import com.gege.activitypartner.entity.UserAccessChange;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserAccessChangeRepository extends JpaRepository<UserAccessChange, Long> {
+
+  // Users whose access changed since the given time; served by the changed_at index
+  @Query("SELECT DISTINCT c.userId FROM UserAccessChange c WHERE c.changedAt >= :since")
+  List<Long> findUserIdsChangedSince(@Param("since") LocalDateTime since);
+
+  // Changes every instance has long since polled
+  @Modifying
+  @Query("DELETE FROM UserAccessChange c WHERE c.changedAt < :before")
+  int deleteChangedBefore(@Param("before") LocalDateTime before);
+}
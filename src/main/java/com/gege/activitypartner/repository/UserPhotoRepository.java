@@ -1,9 +1,14 @@
 package com.gege.activitypartner.repository;
 
+import com.gege.activitypartner.dto.FileReference;
 import com.gege.activitypartner.entity.UserPhoto;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -20,4 +25,19 @@ public interface UserPhotoRepository extends JpaRepository<UserPhoto, Long> {
 
   // Delete all photos for a user
   void deleteByUserId(Long userId);
+
+  // Record generated derivative URLs without loading the row
+  @Modifying
+  @Query(
+      "UPDATE UserPhoto p SET p.thumbnailUrl = :thumb, p.mediumUrl = :medium, p.largeUrl = :large WHERE p.id = :id")
+  int updateDerivativeUrls(
+      @Param("id") Long id,
+      @Param("thumb") String thumbnailUrl,
+      @Param("medium") String mediumUrl,
+      @Param("large") String largeUrl);
+
+  // Keyset page of referenced upload URLs, for the orphaned-file collector
+  @Query(
+      "SELECT new com.gege.activitypartner.dto.FileReference(p.id, p.photoUrl) FROM UserPhoto p WHERE p.id > :afterId AND p.photoUrl IS NOT NULL ORDER BY p.id")
+  List<FileReference> findFileReferencesAfter(@Param("afterId") Long afterId, Pageable pageable);
 }
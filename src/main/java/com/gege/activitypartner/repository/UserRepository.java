@@ -1,9 +1,13 @@
 package com.gege.activitypartner.repository;
 
+import com.gege.activitypartner.dto.FileReference;
+import com.gege.activitypartner.dto.UserStatus;
 import com.gege.activitypartner.entity.User;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -29,4 +33,24 @@ public interface UserRepository extends JpaRepository<User, Long> {
   @Query(
       "SELECT u FROM User u WHERE LOWER(u.fullName) LIKE LOWER(CONCAT('%', :name, '%')) AND u.isActive = true")
   List<User> searchByName(@Param("name") String name);
+
+  // Authorization-relevant columns only, for the user status cache
+  @Query(
+      "SELECT new com.gege.activitypartner.dto.UserStatus(u.id, u.isActive, u.tokenEpoch) FROM User u WHERE u.id = :id")
+  Optional<UserStatus> findStatusById(@Param("id") Long id);
+
+  // Revoke all access tokens issued to the user so far
+  @Modifying
+  @Query("UPDATE User u SET u.tokenEpoch = u.tokenEpoch + 1 WHERE u.id = :userId")
+  void incrementTokenEpoch(@Param("userId") Long userId);
+
+  // Clear the legacy single-device FCM token (e.g. after FCM reported it as unregistered)
+  @Modifying
+  @Query("UPDATE User u SET u.fcmToken = null WHERE u.id = :userId")
+  void clearFcmToken(@Param("userId") Long userId);
+
+  // Keyset page of referenced upload URLs, for the orphaned-file collector
+  @Query(
+      "SELECT new com.gege.activitypartner.dto.FileReference(u.id, u.profileImageUrl) FROM User u WHERE u.id > :afterId AND u.profileImageUrl IS NOT NULL ORDER BY u.id")
+  List<FileReference> findFileReferencesAfter(@Param("afterId") Long afterId, Pageable pageable);
 }
@@ -2,19 +2,30 @@ package com.gege.activitypartner.service;
 
 import com.gege.activitypartner.dto.ActivityMessageRequest;
 import com.gege.activitypartner.dto.ActivityMessageResponse;
+import com.gege.activitypartner.dto.ChatSearchResponse;
 import com.gege.activitypartner.entity.*;
+import com.gege.activitypartner.event.ChatMessageEvent;
 import com.gege.activitypartner.exception.InvalidParticipantActionException;
+import com.gege.activitypartner.exception.InvalidRequestException;
 import com.gege.activitypartner.exception.ResourceNotFoundException;
 import com.gege.activitypartner.repository.ActivityMessageRepository;
-import com.gege.activitypartner.repository.ActivityParticipantRepository;
 import com.gege.activitypartner.repository.ActivityRepository;
 import com.gege.activitypartner.repository.UserRepository;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 @RequiredArgsConstructor
@@ -23,46 +34,37 @@ public class ActivityMessageService {
   private final ActivityMessageRepository messageRepository;
   private final ActivityRepository activityRepository;
   private final UserRepository userRepository;
-  private final ActivityParticipantRepository participantRepository;
   private final NotificationService notificationService;
+  private final ApplicationEventPublisher eventPublisher;
+  private final ChatMembershipCache chatMembershipCache;
+  private final ChatRecentMessageBuffer recentMessageBuffer;
+  private final ChatReadCursorService readCursorService;
+  private final ChatSearchIndex chatSearchIndex;
+  private final TransactionTemplate transactionTemplate;
+
+  private static final int MAX_HISTORY_PAGE_SIZE = 100;
+
+  // How far before an afterId cursor catch-up looks again for messages that committed late
+  @Value("${chat.history.catch-up-overlap-seconds:5}")
+  private long catchUpOverlapSeconds;
 
   /** Send a message in activity chat Only accepted/joined participants can send messages */
   @Transactional
   public ActivityMessageResponse sendMessage(
       Long activityId, Long userId, ActivityMessageRequest request) {
-    // Validate activity exists
-    Activity activity =
-        activityRepository
-            .findById(activityId)
-            .orElseThrow(
-                () -> new ResourceNotFoundException("Activity not found with id: " + activityId));
-
-    // Validate user exists
-    User user =
-        userRepository
-            .findById(userId)
-            .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
-
     // Check if user is the creator OR an accepted/joined participant
-    boolean isCreator = activity.getCreator().getId().equals(userId);
-    boolean isParticipant =
-        participantRepository
-            .findByActivityIdAndUserId(activityId, userId)
-            .map(
-                p ->
-                    p.getStatus() == ParticipantStatus.ACCEPTED
-                        || p.getStatus() == ParticipantStatus.JOINED)
-            .orElse(false);
-
-    if (!isCreator && !isParticipant) {
-      throw new InvalidParticipantActionException("Only accepted participants can send messages");
-    }
+    Set<Long> members =
+        requireChatMember(activityId, userId, "Only accepted participants can send messages");
 
     // Validate message text
     if (request.getMessageText() == null || request.getMessageText().trim().isEmpty()) {
       throw new IllegalArgumentException("Message text cannot be empty");
     }
 
+    // The membership check proved both exist; they load lazily only where a field is read
+    Activity activity = activityRepository.getReferenceById(activityId);
+    User user = userRepository.getReferenceById(userId);
+
     // Create and save message
     ActivityMessage message = new ActivityMessage();
     message.setActivity(activity);
@@ -71,8 +73,15 @@ public class ActivityMessageService {
 
     ActivityMessage saved = messageRepository.save(message);
 
+    // Push to WebSocket subscribers once the message is committed
+    eventPublisher.publishEvent(
+        new ChatMessageEvent(ChatMessageEvent.Type.SENT, activityId, mapToResponse(saved, null)));
+
     // Send notifications to all participants (except the sender)
-    sendMessageNotifications(activity, user, saved);
+    sendMessageNotifications(activity, user, saved, members);
+
+    // Last, so the room's cursor rows stay locked only until commit, not across the FCM calls
+    readCursorService.recordSentMessage(activity, user, saved);
 
     return mapToResponse(saved, userId);
   }
@@ -83,50 +92,127 @@ public class ActivityMessageService {
    */
   @Transactional(readOnly = true)
   public List<ActivityMessageResponse> getActivityMessages(Long activityId, Long userId) {
-    // Validate activity exists
-    Activity activity =
-        activityRepository
-            .findById(activityId)
-            .orElseThrow(
-                () -> new ResourceNotFoundException("Activity not found with id: " + activityId));
-
-    // Check if user has access
-    validateUserAccess(activity, userId);
+    requireChatMember(activityId, userId, "Only accepted participants can view messages");
 
     return messageRepository.findByActivityIdAndNotDeleted(activityId).stream()
         .map(message -> mapToResponse(message, userId))
         .collect(Collectors.toList());
   }
 
-  /** Get messages since a specific timestamp (for polling) */
-  @Transactional(readOnly = true)
+  /**
+   * Get one page of chat history in chronological order. Without a cursor the latest messages are
+   * returned; beforeId pages backwards (scrolling up) and afterId pages forwards (catching up).
+   *
+   * <p>An afterId page starts with the messages sent in the last few seconds before the cursor
+   * (see findHistoryOverlap), so it can repeat messages the client already has. Clients dedupe by
+   * id and keep the newest message they hold as the next cursor.
+   *
+   * <p>Not transactional itself: the buffer is asked first, outside any transaction, so it can
+   * prime a room without holding two connections; only a miss opens one for the database read.
+   */
+  public List<ActivityMessageResponse> getMessageHistory(
+      Long activityId, Long userId, Long beforeId, Long afterId, int limit) {
+    requireChatMember(activityId, userId, "Only accepted participants can view messages");
+
+    if (beforeId != null && afterId != null) {
+      throw new InvalidRequestException("Use either beforeId or afterId, not both");
+    }
+
+    int pageSize = Math.max(1, Math.min(limit, MAX_HISTORY_PAGE_SIZE));
+    if (beforeId == null && afterId == null) {
+      // Opening the chat: hot rooms are served from the recent-message buffer
+      Optional<List<ActivityMessageResponse>> buffered =
+          recentMessageBuffer.getLatest(activityId, pageSize, userId);
+      if (buffered.isPresent()) {
+        return buffered.get();
+      }
+    }
+
+    return transactionTemplate.execute(
+        status -> readHistory(activityId, userId, beforeId, afterId, pageSize));
+  }
+
+  private List<ActivityMessageResponse> readHistory(
+      Long activityId, Long userId, Long beforeId, Long afterId, int pageSize) {
+    Pageable page = PageRequest.of(0, pageSize);
+    if (afterId != null) {
+      LocalDateTime afterAt = cursorTime(activityId, afterId);
+      List<ActivityMessageResponse> messages =
+          new ArrayList<>(
+              messageRepository.findHistoryOverlap(
+                  activityId,
+                  afterAt.minusSeconds(catchUpOverlapSeconds),
+                  afterAt,
+                  afterId,
+                  userId,
+                  PageRequest.of(0, MAX_HISTORY_PAGE_SIZE)));
+      messages.addAll(
+          messageRepository.findHistoryAfter(activityId, afterAt, afterId, userId, page));
+      return messages;
+    }
+
+    List<ActivityMessageResponse> newestFirst =
+        beforeId != null
+            ? messageRepository.findHistoryBefore(
+                activityId, cursorTime(activityId, beforeId), beforeId, userId, page)
+            : messageRepository.findLatestHistory(activityId, userId, page);
+    List<ActivityMessageResponse> messages = new ArrayList<>(newestFirst);
+    Collections.reverse(messages);
+    return messages;
+  }
+
+  // Keyset position of a cursor message; deleted messages still have one
+  private LocalDateTime cursorTime(Long activityId, Long messageId) {
+    return messageRepository
+        .findCreatedAt(activityId, messageId)
+        .orElseThrow(() -> new InvalidRequestException("Unknown message cursor: " + messageId));
+  }
+
+  /** Search a room's messages, best match first; not transactional, the index reads on its own */
+  public ChatSearchResponse searchMessages(
+      Long activityId, Long userId, String query, int page, int size) {
+    requireChatMember(activityId, userId, "Only accepted participants can view messages");
+
+    if (query == null || query.trim().isEmpty()) {
+      throw new InvalidRequestException("Search query cannot be empty");
+    }
+
+    int pageSize = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+    int pageNumber = Math.max(0, page);
+    List<ActivityMessageResponse> hits = chatSearchIndex.search(activityId, query.trim());
+    int from = (int) Math.min((long) pageNumber * pageSize, hits.size());
+    int to = Math.min(from + pageSize, hits.size());
+
+    return new ChatSearchResponse(
+        query.trim(),
+        hits.size(),
+        pageNumber,
+        pageSize,
+        ChatRecentMessageBuffer.forViewer(hits.subList(from, to), userId));
+  }
+
+  /** Get messages since a specific timestamp (for polling); not transactional, as above */
   public List<ActivityMessageResponse> getMessagesSince(
       Long activityId, Long userId, LocalDateTime since) {
-    // Validate activity exists
-    Activity activity =
-        activityRepository
-            .findById(activityId)
-            .orElseThrow(
-                () -> new ResourceNotFoundException("Activity not found with id: " + activityId));
+    requireChatMember(activityId, userId, "Only accepted participants can view messages");
 
-    // Check if user has access
-    validateUserAccess(activity, userId);
+    Optional<List<ActivityMessageResponse>> buffered =
+        recentMessageBuffer.getSince(activityId, since, userId);
+    if (buffered.isPresent()) {
+      return buffered.get();
+    }
 
-    return messageRepository.findByActivityIdSince(activityId, since).stream()
-        .map(message -> mapToResponse(message, userId))
-        .collect(Collectors.toList());
+    return transactionTemplate.execute(
+        status ->
+            messageRepository.findByActivityIdSince(activityId, since).stream()
+                .map(message -> mapToResponse(message, userId))
+                .collect(Collectors.toList()));
   }
 
   /** Get message count for an activity */
   @Transactional(readOnly = true)
   public Long getMessageCount(Long activityId, Long userId) {
-    Activity activity =
-        activityRepository
-            .findById(activityId)
-            .orElseThrow(
-                () -> new ResourceNotFoundException("Activity not found with id: " + activityId));
-
-    validateUserAccess(activity, userId);
+    requireChatMember(activityId, userId, "Only accepted participants can view messages");
 
     return messageRepository.countByActivityId(activityId);
   }
@@ -149,59 +235,49 @@ public class ActivityMessageService {
           "Only the message sender or activity creator can delete messages");
     }
 
-    // Soft delete
+    // Soft delete. The conditional update makes a repeated or concurrent delete a no-op, so unread
+    // counters are only decremented once.
+    if (messageRepository.markDeleted(messageId) == 0) {
+      return;
+    }
     message.setIsDeleted(true);
-    messageRepository.save(message);
+    readCursorService.recordDeletedMessage(message);
+
+    eventPublisher.publishEvent(
+        new ChatMessageEvent(
+            ChatMessageEvent.Type.DELETED,
+            message.getActivity().getId(),
+            mapToResponse(message, null)));
   }
 
-  /** Validate user has access to view messages */
-  private void validateUserAccess(Activity activity, Long userId) {
-    boolean isCreator = activity.getCreator().getId().equals(userId);
-    boolean isParticipant =
-        participantRepository
-            .findByActivityIdAndUserId(activity.getId(), userId)
-            .map(
-                p ->
-                    p.getStatus() == ParticipantStatus.ACCEPTED
-                        || p.getStatus() == ParticipantStatus.JOINED)
-            .orElse(false);
-
-    if (!isCreator && !isParticipant) {
-      throw new InvalidParticipantActionException("Only accepted participants can view messages");
-    }
+  /** Check whether a user may read an activity's chat (authorizes WebSocket subscriptions) */
+  public boolean isChatMember(Long activityId, Long userId) {
+    return chatMembershipCache.isMember(activityId, userId);
   }
 
-  /** Send notifications to all participants about new message */
-  private void sendMessageNotifications(Activity activity, User sender, ActivityMessage message) {
-    // Get all accepted/joined participants (excluding the sender)
-    List<ActivityParticipant> participants =
-        participantRepository.findByActivityId(activity.getId()).stream()
-            .filter(
-                p ->
-                    (p.getStatus() == ParticipantStatus.ACCEPTED
-                            || p.getStatus() == ParticipantStatus.JOINED)
-                        && !p.getUser().getId().equals(sender.getId()))
-            .collect(Collectors.toList());
-
-    // Also notify creator if they're not the sender
-    boolean shouldNotifyCreator = !activity.getCreator().getId().equals(sender.getId());
-
-    // Notify participants
-    for (ActivityParticipant participant : participants) {
-      notificationService.createAndSendNotification(
-          participant.getUser(),
-          "New message in " + activity.getTitle(),
-          sender.getFullName() + ": " + truncateMessage(message.getMessageText()),
-          NotificationType.NEW_MESSAGE,
-          activity.getId(),
-          null,
-          null);
+  /** Creator or accepted/joined participant, answered from the membership cache */
+  private Set<Long> requireChatMember(Long activityId, Long userId, String deniedMessage) {
+    Set<Long> members =
+        chatMembershipCache
+            .getMembers(activityId)
+            .orElseThrow(
+                () -> new ResourceNotFoundException("Activity not found with id: " + activityId));
+
+    if (!members.contains(userId)) {
+      throw new InvalidParticipantActionException(deniedMessage);
     }
+    return members;
+  }
 
-    // Notify creator if needed
-    if (shouldNotifyCreator) {
+  /** Send notifications to all chat members (creator included) about new message */
+  private void sendMessageNotifications(
+      Activity activity, User sender, ActivityMessage message, Set<Long> members) {
+    for (Long memberId : members) {
+      if (memberId.equals(sender.getId())) {
+        continue;
+      }
       notificationService.createAndSendNotification(
-          activity.getCreator(),
+          userRepository.getReferenceById(memberId),
           "New message in " + activity.getTitle(),
           sender.getFullName() + ": " + truncateMessage(message.getMessageText()),
           NotificationType.NEW_MESSAGE,
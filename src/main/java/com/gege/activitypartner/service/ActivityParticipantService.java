@@ -2,6 +2,7 @@ package com.gege.activitypartner.service;
 
 import com.gege.activitypartner.dto.*;
 import com.gege.activitypartner.entity.*;
+import com.gege.activitypartner.event.ParticipantStatusChangedEvent;
 import com.gege.activitypartner.exception.DuplicateResourceException;
 import com.gege.activitypartner.exception.InvalidParticipantActionException;
 import com.gege.activitypartner.exception.ResourceNotFoundException;
@@ -11,6 +12,7 @@ import com.gege.activitypartner.repository.UserRepository;
 import java.util.List;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -25,6 +27,7 @@ public class ActivityParticipantService {
   private final ActivityRepository activityRepository;
   private final UserRepository userRepository;
   private final NotificationService notificationService;
+  private final ApplicationEventPublisher eventPublisher;
 
   // Express interest in an activity
   public ParticipantResponse expressInterest(Long activityId, Long userId) {
@@ -75,6 +78,7 @@ public class ActivityParticipantService {
       participant.setApplicationAttempts(totalAttempts.intValue() + 1);
 
       ActivityParticipant saved = participantRepository.save(participant);
+      publishStatusChange(saved, status, ParticipantStatus.INTERESTED);
 
       // Notify activity creator about renewed interest
       notificationService.createAndSendNotification(
@@ -109,6 +113,7 @@ public class ActivityParticipantService {
     participant.setApplicationAttempts(totalAttempts.intValue() + 1);
 
     ActivityParticipant saved = participantRepository.save(participant);
+    publishStatusChange(saved, null, ParticipantStatus.INTERESTED);
 
     // Notify activity creator about new interest
     notificationService.createAndSendNotification(
@@ -226,6 +231,7 @@ public class ActivityParticipantService {
 
     participant.setStatus(newStatus);
     ActivityParticipant updated = participantRepository.save(participant);
+    publishStatusChange(updated, currentStatus, newStatus);
 
     // Notify participant about status change
     String notificationTitle =
@@ -284,6 +290,7 @@ public class ActivityParticipantService {
 
     participant.setStatus(ParticipantStatus.JOINED);
     ActivityParticipant updated = participantRepository.save(participant);
+    publishStatusChange(updated, ParticipantStatus.ACCEPTED, ParticipantStatus.JOINED);
 
     // Notify activity creator that participant joined
     notificationService.createAndSendNotification(
@@ -322,6 +329,7 @@ public class ActivityParticipantService {
     if (participant.getStatus() == ParticipantStatus.INTERESTED) {
       participant.setStatus(ParticipantStatus.WITHDRAWN);
       participantRepository.save(participant);
+      publishStatusChange(participant, ParticipantStatus.INTERESTED, ParticipantStatus.WITHDRAWN);
       return;
     }
 
@@ -329,6 +337,7 @@ public class ActivityParticipantService {
     if (participant.getStatus() == ParticipantStatus.ACCEPTED) {
       participant.setStatus(ParticipantStatus.LEFT);
       participantRepository.save(participant);
+      publishStatusChange(participant, ParticipantStatus.ACCEPTED, ParticipantStatus.LEFT);
 
       // Notify activity creator that participant left
       notificationService.createAndSendNotification(
@@ -363,6 +372,18 @@ public class ActivityParticipantService {
     }
 
     participantRepository.delete(participant);
+    publishStatusChange(participant, ParticipantStatus.WITHDRAWN, null);
+  }
+
+  // Let chat components (membership, unread counters) react once the change is committed
+  private void publishStatusChange(
+      ActivityParticipant participant, ParticipantStatus oldStatus, ParticipantStatus newStatus) {
+    eventPublisher.publishEvent(
+        new ParticipantStatusChangedEvent(
+            participant.getActivity().getId(),
+            participant.getUser().getId(),
+            oldStatus,
+            newStatus));
   }
 
   // Check if two users have participated in completed activities together
@@ -7,6 +7,7 @@ import com.gege.activitypartner.entity.ActivityParticipant;
 import com.gege.activitypartner.entity.ActivityPhoto;
 import com.gege.activitypartner.entity.ParticipantStatus;
 import com.gege.activitypartner.entity.User;
+import com.gege.activitypartner.event.ImageStoredEvent;
 import com.gege.activitypartner.exception.InvalidParticipantActionException;
 import com.gege.activitypartner.exception.ResourceNotFoundException;
 import com.gege.activitypartner.repository.ActivityParticipantRepository;
@@ -14,17 +15,23 @@ import com.gege.activitypartner.repository.ActivityPhotoRepository;
 import com.gege.activitypartner.repository.ActivityRepository;
 import com.gege.activitypartner.repository.UserRepository;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 @Service
 @RequiredArgsConstructor
-@Transactional
+@Slf4j
 public class ActivityPhotoService {
 
   private final ActivityPhotoRepository activityPhotoRepository;
@@ -32,6 +39,8 @@ public class ActivityPhotoService {
   private final UserRepository userRepository;
   private final ActivityParticipantRepository activityParticipantRepository;
   private final FileStorageService fileStorageService;
+  private final ApplicationEventPublisher eventPublisher;
+  private final TransactionTemplate transactionTemplate;
 
   @Value("${activity.gallery.min-photos:3}")
   private int minPhotosPerActivity;
@@ -43,6 +52,7 @@ public class ActivityPhotoService {
    * Check if a user has access to view the activity gallery. Gallery is accessible to activity
    * creators and participants who joined, after the event has ended
    */
+  @Transactional(readOnly = true)
   public ActivityGalleryAccessResponse checkGalleryAccess(Long activityId, Long userId) {
     Activity activity =
         activityRepository
@@ -97,7 +107,8 @@ public class ActivityPhotoService {
 
   /**
    * Upload photos for an activity Only participants who joined can upload photos, and only after
-   * the activity has ended
+   * the activity has ended. Not @Transactional: the files are stored first and the rows inserted
+   * in a short transaction afterwards; if that fails, the file references are released again.
    */
   public List<ActivityPhotoResponse> uploadActivityPhotos(
       Long activityId, Long userId, List<MultipartFile> files) {
@@ -117,7 +128,8 @@ public class ActivityPhotoService {
       throw new InvalidParticipantActionException("At least one photo is required");
     }
 
-    long currentPhotoCount = activityPhotoRepository.countByActivityId(activityId);
+    // checkGalleryAccess already counted the photos, reuse it to refuse before storing anything
+    long currentPhotoCount = access.getPhotoCount();
     if (currentPhotoCount + files.size() > maxPhotosPerActivity) {
       throw new InvalidParticipantActionException(
           "Cannot upload "
@@ -128,39 +140,66 @@ public class ActivityPhotoService {
               + currentPhotoCount);
     }
 
-    Activity activity =
-        activityRepository
-            .findById(activityId)
-            .orElseThrow(() -> new ResourceNotFoundException("Activity not found"));
+    // Files are hashed and published before any transaction, and their references committed
+    // with them; only the row inserts below hold a connection
+    List<String> fileNames = fileStorageService.storeImages(files);
+    try {
+      return transactionTemplate.execute(status -> savePhotos(activityId, userId, fileNames));
+    } catch (RuntimeException e) {
+      releaseFiles(fileNames);
+      throw e;
+    }
+  }
 
-    User user =
-        userRepository
-            .findById(userId)
-            .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
-    // Upload all photos
-    List<ActivityPhoto> uploadedPhotos =
-        files.stream()
-            .map(
-                file -> {
-                  String fileName = fileStorageService.storeFile(file);
-                  String photoUrl = "/api/users/images/" + fileName;
-
-                  ActivityPhoto photo = new ActivityPhoto();
-                  photo.setActivity(activity);
-                  photo.setUser(user);
-                  photo.setPhotoUrl(photoUrl);
-                  photo.setDisplayOrder(
-                      (int) (activityPhotoRepository.countByActivityId(activityId) + 1));
-
-                  return activityPhotoRepository.save(photo);
-                })
-            .collect(Collectors.toList());
+  private List<ActivityPhotoResponse> savePhotos(
+      Long activityId, Long userId, List<String> fileNames) {
+    // Counted again: another upload may have committed while the files were being stored
+    long currentPhotoCount = activityPhotoRepository.countByActivityId(activityId);
+    if (currentPhotoCount + fileNames.size() > maxPhotosPerActivity) {
+      throw new InvalidParticipantActionException(
+          "Maximum number of photos reached for this activity");
+    }
+
+    // Both were checked by checkGalleryAccess
+    Activity activity = activityRepository.getReferenceById(activityId);
+    User user = userRepository.getReferenceById(userId);
+
+    List<ActivityPhoto> photos = new ArrayList<>(fileNames.size());
+    for (int i = 0; i < fileNames.size(); i++) {
+      ActivityPhoto photo = new ActivityPhoto();
+      photo.setActivity(activity);
+      photo.setUser(user);
+      photo.setPhotoUrl("/api/users/images/" + fileNames.get(i));
+      photo.setDisplayOrder((int) currentPhotoCount + i + 1);
+      photos.add(photo);
+    }
+    List<ActivityPhoto> uploadedPhotos = activityPhotoRepository.saveAll(photos);
+
+    for (int i = 0; i < uploadedPhotos.size(); i++) {
+      ActivityPhoto saved = uploadedPhotos.get(i);
+      eventPublisher.publishEvent(
+          new ImageStoredEvent(
+              ImageStoredEvent.Owner.ACTIVITY_PHOTO,
+              saved.getId(),
+              fileNames.get(i),
+              saved.getPhotoUrl()));
+    }
 
     return uploadedPhotos.stream().map(this::mapToResponse).collect(Collectors.toList());
   }
 
+  // Drop the references taken by storeImages; files nothing else uses are deleted on commit
+  private void releaseFiles(List<String> fileNames) {
+    try {
+      transactionTemplate.executeWithoutResult(
+          status -> fileNames.forEach(fileStorageService::deleteFile));
+    } catch (RuntimeException e) {
+      log.error("Could not release {} files of a failed photo upload", fileNames.size(), e);
+    }
+  }
+
   /** Get all photos for an activity Only accessible to participants who joined */
+  @Transactional(readOnly = true)
   public List<ActivityPhotoResponse> getActivityPhotos(Long activityId, Long userId) {
     // Check access
     ActivityGalleryAccessResponse access = checkGalleryAccess(activityId, userId);
@@ -174,6 +213,7 @@ public class ActivityPhotoService {
   }
 
   /** Delete a photo Users can only delete their own photos */
+  @Transactional
   public void deleteActivityPhoto(Long activityId, Long photoId, Long userId) {
     ActivityPhoto photo =
         activityPhotoRepository
@@ -199,15 +239,39 @@ public class ActivityPhotoService {
       throw new InvalidParticipantActionException("You can only delete your own photos");
     }
 
-    // Extract filename from URL and delete file
+    activityPhotoRepository.delete(photo);
+
+    // Release the file; it is removed from disk only once this transaction commits
     String photoUrl = photo.getPhotoUrl();
     String fileName = photoUrl.substring(photoUrl.lastIndexOf('/') + 1);
     fileStorageService.deleteFile(fileName);
+  }
 
-    activityPhotoRepository.delete(photo);
+  /**
+   * Archive entry names and stored file names of all gallery photos, in display order, for a ZIP
+   * export. Same access rules as viewing the gallery.
+   */
+  @Transactional(readOnly = true)
+  public Map<String, String> getGalleryExportEntries(Long activityId, Long userId) {
+    ActivityGalleryAccessResponse access = checkGalleryAccess(activityId, userId);
+    if (!access.getHasAccess()) {
+      throw new InvalidParticipantActionException(access.getReason());
+    }
+
+    List<String> photoUrls = activityPhotoRepository.findPhotoUrlsByActivityId(activityId);
+    Map<String, String> entries = new LinkedHashMap<>();
+    for (int i = 0; i < photoUrls.size(); i++) {
+      String photoUrl = photoUrls.get(i);
+      String fileName = photoUrl.substring(photoUrl.lastIndexOf('/') + 1);
+      int dot = fileName.lastIndexOf('.');
+      String extension = dot > 0 ? fileName.substring(dot) : "";
+      entries.put(String.format("photo-%03d%s", i + 1, extension), fileName);
+    }
+    return entries;
   }
 
   /** Get photo count for an activity */
+  @Transactional(readOnly = true)
   public Long getPhotoCount(Long activityId) {
     return activityPhotoRepository.countByActivityId(activityId);
   }
@@ -221,6 +285,9 @@ public class ActivityPhotoService {
     response.setUserName(photo.getUser().getFullName());
     response.setUserAvatar(photo.getUser().getProfileImageUrl());
     response.setPhotoUrl(photo.getPhotoUrl());
+    response.setThumbnailUrl(photo.getThumbnailUrl());
+    response.setMediumUrl(photo.getMediumUrl());
+    response.setLargeUrl(photo.getLargeUrl());
     response.setDisplayOrder(photo.getDisplayOrder());
     response.setUploadedAt(photo.getUploadedAt());
     return response;
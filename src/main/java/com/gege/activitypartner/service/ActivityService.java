@@ -10,6 +10,7 @@ import com.gege.activitypartner.entity.User;
 import com.gege.activitypartner.exception.ResourceNotFoundException;
 import com.gege.activitypartner.repository.ActivityParticipantRepository;
 import com.gege.activitypartner.repository.ActivityRepository;
+import com.gege.activitypartner.repository.ChatReadCursorRepository;
 import com.gege.activitypartner.repository.UserRepository;
 import com.gege.activitypartner.util.DistanceCalculator;
 import java.math.BigDecimal;
@@ -31,6 +32,8 @@ public class ActivityService {
   private final ActivityRepository activityRepository;
   private final UserRepository userRepository;
   private final ActivityParticipantRepository activityParticipantRepository;
+  private final ChatRoomChangeFeed chatRoomChangeFeed;
+  private final ChatReadCursorRepository chatReadCursorRepository;
 
   // Create new activity
   public ActivityResponseDTO createActivity(ActivityRequestDTO request, Long creatorId) {
@@ -64,6 +67,8 @@ public class ActivityService {
     activity.setTrending(false);
 
     Activity savedActivity = activityRepository.save(activity);
+    // The creator is in the chat from the start, so the room shows up in their chat overview
+    chatReadCursorRepository.insertIfAbsent(creatorId, savedActivity.getId(), 0);
     return mapToResponseDTO(savedActivity);
   }
 
@@ -380,7 +385,9 @@ public class ActivityService {
       throw new IllegalStateException("Only the creator can delete this activity");
     }
 
+    chatReadCursorRepository.deleteByActivityId(id);
     activityRepository.delete(activity);
+    chatRoomChangeFeed.recordRoomDeleted(id);
   }
 
   // Helper method to map Activity to ActivityResponseDTO
@@ -16,11 +16,15 @@ import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.PathResource;
+import org.springframework.core.io.Resource;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -32,20 +36,22 @@ public class AdminService {
   private final AccountDeletionRequestRepository accountDeletionRequestRepository;
   private final DownloadLogRepository downloadLogRepository;
   private final AppLogRepository appLogRepository;
-  private final PasswordEncoder passwordEncoder;
+  private final PasswordHashingService passwordHashingService;
+  private final LoginAttemptThrottle loginAttemptThrottle;
   private final JwtUtil jwtUtil;
+  private final CrashLogAppender crashLogAppender;
 
-  // Admin login
-  @Transactional
-  public String login(String username, String password) {
-    Admin admin =
-        adminRepository
-            .findByUsername(username)
-            .orElseThrow(() -> new BadCredentialsException("Invalid credentials"));
+  // Admin login. Not @Transactional, so no connection is held while the password is hashed;
+  // the lookup and the lastLoginAt update each run in their own short transaction
+  public String login(String username, String password, String clientIp) {
+    loginAttemptThrottle.checkAttempt("admin", clientIp, username);
 
-    if (!passwordEncoder.matches(password, admin.getPassword())) {
+    Admin admin = adminRepository.findByUsername(username).orElse(null);
+    if (admin == null || !passwordHashingService.matches(password, admin.getPassword())) {
+      loginAttemptThrottle.recordFailure("admin", username);
       throw new BadCredentialsException("Invalid credentials");
     }
+    loginAttemptThrottle.recordSuccess("admin", username);
 
     admin.setLastLoginAt(LocalDateTime.now());
     adminRepository.save(admin);
@@ -122,23 +128,47 @@ public class AdminService {
     return Files.exists(file) ? file : null;
   }
 
-  // List crash log files (newest first)
+  // List crash log files (newest first); gzipped archives are listed under their .json name
   public List<Map<String, Object>> getCrashLogFiles() {
-    Path crashDir = Paths.get("logs/crashes");
-    return listFiles(crashDir, "crashes-");
+    List<Map<String, Object>> result = new ArrayList<>();
+    for (Map<String, Object> file :
+        listFiles(crashLogAppender.getDirectory(), CrashLogAppender.FILE_PREFIX)) {
+      String filename = (String) file.get("filename");
+      if (filename.endsWith(CrashLogAppender.ARCHIVE_SUFFIX)) {
+        Map<String, Object> entry = new HashMap<>(file);
+        entry.put("filename", filename.substring(0, filename.length() - 3)); // Strip .gz
+        entry.put("compressed", true);
+        result.add(entry);
+      } else if (filename.endsWith(CrashLogAppender.FILE_SUFFIX)) {
+        result.add(file);
+      }
+    }
+    return result;
   }
 
-  // Get a crash log file for download (validates filename to prevent path traversal)
-  public Path getCrashLogFile(String filename) {
-    if (!filename.startsWith("crashes-")
-        || !filename.endsWith(".json")
+  /**
+   * Get a crash log for download (validates filename to prevent path traversal). Archived days are
+   * decompressed on the fly, so callers always receive the plain JSON lines.
+   *
+   * @return null if there is no such crash log
+   */
+  public Resource getCrashLogFile(String filename) throws IOException {
+    if (!filename.startsWith(CrashLogAppender.FILE_PREFIX)
+        || !filename.endsWith(CrashLogAppender.FILE_SUFFIX)
         || filename.contains("/")
         || filename.contains("\\")
         || filename.contains("..")) {
       return null;
     }
-    Path file = Paths.get("logs/crashes").resolve(filename);
-    return Files.exists(file) ? file : null;
+    Path file = crashLogAppender.getDirectory().resolve(filename);
+    if (Files.exists(file)) {
+      return new PathResource(file);
+    }
+    Path archive = crashLogAppender.getDirectory().resolve(filename + ".gz");
+    if (Files.exists(archive)) {
+      return new InputStreamResource(new GZIPInputStream(Files.newInputStream(archive)));
+    }
+    return null;
   }
 
   private List<Map<String, Object>> listFiles(Path dir, String prefix) {
@@ -176,7 +206,7 @@ public class AdminService {
 
     Admin admin = new Admin();
     admin.setUsername(username);
-    admin.setPassword(passwordEncoder.encode(password));
+    admin.setPassword(passwordHashingService.encode(password));
     return adminRepository.save(admin);
   }
 }
@@ -0,0 +1,256 @@
+package com.gege.activitypartner.service;
+
+import com.gege.activitypartner.entity.AppLog;
+import com.gege.activitypartner.repository.AppLogRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.InvalidDataAccessResourceUsageException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Accepts app log entries into a bounded in-memory queue and writes them from a single background
+ * thread in JDBC batches, so clients never wait for the database. Entries are validated one by
+ * one; a bad entry is skipped instead of failing the whole batch. A batch the database refuses
+ * for its data is retried row by row to isolate the bad rows; any other failure is retried as a
+ * whole batch with exponential backoff, while the queue absorbs new entries. When the queue fills
+ * up, DEBUG and VERBOSE entries are shed first and everything else is refused only once it is
+ * full.
+ */
+@Service
+@Slf4j
+public class AppLogIngestionService {
+
+  private static final Set<String> SHEDDABLE_LEVELS = Set.of("VERBOSE", "DEBUG");
+
+  // TEXT holds 64KB; leaves room for 4-byte characters
+  private static final int MAX_MESSAGE_LENGTH = 16000;
+
+  /** Outcome of a submission, counted per entry */
+  public record IngestResult(int accepted, int invalid, int dropped) {}
+
+  private final AppLogRepository appLogRepository;
+  private final BlockingQueue<AppLog> queue;
+  private final int shedThreshold;
+  private final int batchSize;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+  private final Counter writtenRows;
+  private final Counter failedRows;
+  private final Counter invalidEntries;
+  private final Counter shedEntries;
+  private final Counter rejectedEntries;
+
+  private volatile boolean running = true;
+  private Thread writer;
+
+  public AppLogIngestionService(
+      AppLogRepository appLogRepository,
+      MeterRegistry meterRegistry,
+      @Value("${app-logs.ingest.queue-capacity:10000}") int queueCapacity,
+      @Value("${app-logs.ingest.shed-percent:80}") int shedPercent,
+      @Value("${app-logs.ingest.batch-size:500}") int batchSize,
+      @Value("${app-logs.ingest.retry.initial-backoff-ms:500}") long initialBackoffMillis,
+      @Value("${app-logs.ingest.retry.max-backoff-ms:30000}") long maxBackoffMillis) {
+    this.appLogRepository = appLogRepository;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.shedThreshold = queueCapacity * shedPercent / 100;
+    this.batchSize = batchSize;
+    this.initialBackoffMillis = initialBackoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+
+    this.writtenRows = rows(meterRegistry, "written", "App log rows inserted");
+    this.failedRows = rows(meterRegistry, "failed", "App log rows the database refused");
+    this.invalidEntries = dropped(meterRegistry, "invalid", "Malformed app log entries skipped");
+    this.shedEntries = dropped(meterRegistry, "shed", "DEBUG entries shed under load");
+    this.rejectedEntries = dropped(meterRegistry, "rejected", "Entries refused by a full queue");
+    Gauge.builder("app.logs.queue.size", queue, BlockingQueue::size)
+        .description("App log entries waiting to be written")
+        .register(meterRegistry);
+  }
+
+  private static Counter rows(MeterRegistry registry, String result, String description) {
+    return Counter.builder("app.logs.rows")
+        .tag("result", result)
+        .description(description)
+        .register(registry);
+  }
+
+  private static Counter dropped(MeterRegistry registry, String reason, String description) {
+    return Counter.builder("app.logs.dropped")
+        .tag("reason", reason)
+        .description(description)
+        .register(registry);
+  }
+
+  @PostConstruct
+  void start() {
+    writer = new Thread(this::drainLoop, "app-log-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /** Stop taking new entries and write what is still queued */
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    running = false;
+    writer.join(TimeUnit.SECONDS.toMillis(10));
+  }
+
+  /** Validate and enqueue entries as sent by the mobile apps */
+  public IngestResult submit(List<Map<String, Object>> entries) {
+    LocalDateTime receivedAt = LocalDateTime.now();
+    int accepted = 0;
+    int invalid = 0;
+    int dropped = 0;
+
+    for (Map<String, Object> entry : entries) {
+      AppLog appLog = toAppLog(entry, receivedAt);
+      if (appLog == null) {
+        invalidEntries.increment();
+        invalid++;
+      } else if (!running) {
+        rejectedEntries.increment();
+        dropped++;
+      } else if (isSheddable(appLog) && queue.size() >= shedThreshold) {
+        shedEntries.increment();
+        dropped++;
+      } else if (queue.offer(appLog)) {
+        accepted++;
+      } else {
+        rejectedEntries.increment();
+        dropped++;
+      }
+    }
+    return new IngestResult(accepted, invalid, dropped);
+  }
+
+  private static boolean isSheddable(AppLog appLog) {
+    return appLog.getLevel() != null && SHEDDABLE_LEVELS.contains(appLog.getLevel());
+  }
+
+  // Null if the entry is malformed; over-long text is truncated to the column size
+  private static AppLog toAppLog(Map<String, Object> entry, LocalDateTime receivedAt) {
+    if (entry == null) {
+      return null;
+    }
+    String message = text(entry.get("message"), MAX_MESSAGE_LENGTH);
+    if (message == null || message.isBlank()) {
+      return null;
+    }
+    String level = text(entry.get("level"), 20);
+
+    AppLog appLog = new AppLog();
+    appLog.setLevel(level != null ? level.toUpperCase(Locale.ROOT) : null);
+    appLog.setMessage(message);
+    appLog.setTag(text(entry.get("tag"), 100));
+    appLog.setAppVersion(text(entry.get("appVersion"), 100));
+    appLog.setOsVersion(text(entry.get("osVersion"), 100));
+    appLog.setDeviceModel(text(entry.get("deviceModel"), 100));
+    appLog.setPlatform(text(entry.get("platform"), 50));
+    appLog.setReceivedAt(receivedAt);
+
+    if (entry.get("userId") instanceof Number userId) {
+      appLog.setUserId(userId.longValue());
+    }
+
+    Object loggedAt = entry.get("loggedAt");
+    if (loggedAt == null) {
+      appLog.setLoggedAt(receivedAt);
+    } else {
+      try {
+        appLog.setLoggedAt(LocalDateTime.parse(loggedAt.toString()));
+      } catch (DateTimeParseException e) {
+        return null;
+      }
+    }
+    return appLog;
+  }
+
+  private static String text(Object value, int maxLength) {
+    if (value == null) {
+      return null;
+    }
+    String text = value.toString();
+    return text.length() > maxLength ? text.substring(0, maxLength) : text;
+  }
+
+  private void drainLoop() {
+    List<AppLog> batch = new ArrayList<>(batchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        AppLog first = queue.poll(1, TimeUnit.SECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        write(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        log.error("Error in app log writer", e);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void write(List<AppLog> batch) throws InterruptedException {
+    long backoffMillis = initialBackoffMillis;
+    while (true) {
+      try {
+        // Pooled ids plus hibernate.jdbc.batch_size turn this into multi-row batch inserts
+        appLogRepository.saveAll(batch);
+        writtenRows.increment(batch.size());
+        return;
+      } catch (DataIntegrityViolationException | InvalidDataAccessResourceUsageException e) {
+        // Some row is bad; find it by inserting the rest one at a time
+        log.warn("Batch insert of {} app logs refused, retrying one by one", batch.size(), e);
+        writeOneByOne(batch);
+        return;
+      } catch (Exception e) {
+        // Anything else (lost connection, lock timeout, failover) says nothing about the rows
+        if (!running) {
+          failedRows.increment(batch.size());
+          log.error("Dropped {} app logs at shutdown, database unavailable", batch.size(), e);
+          return;
+        }
+        log.warn(
+            "Batch insert of {} app logs failed, retry in {} ms", batch.size(), backoffMillis, e);
+        Thread.sleep(backoffMillis);
+        backoffMillis = Math.min(backoffMillis * 2, maxBackoffMillis);
+        batch.forEach(appLog -> appLog.setId(null));
+      }
+    }
+  }
+
+  private void writeOneByOne(List<AppLog> batch) {
+    for (AppLog appLog : batch) {
+      try {
+        appLog.setId(null);
+        appLogRepository.save(appLog);
+        writtenRows.increment();
+      } catch (Exception rowError) {
+        failedRows.increment();
+        log.debug("Dropped app log row: {}", rowError.getMessage());
+      }
+    }
+  }
+}
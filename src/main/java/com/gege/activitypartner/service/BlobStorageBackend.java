@@ -0,0 +1,36 @@
+package com.gege.activitypartner.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Where content-addressed blobs physically live. Keys are relative, slash separated paths such as
+ * {@code ab/cd/abcd...ef.jpg}. Selected with the {@code storage.backend} property.
+ */
+public interface BlobStorageBackend {
+
+  /** Move or upload a finished local file to the key; the source file may be consumed */
+  void put(String key, Path source, String contentType) throws IOException;
+
+  boolean exists(String key) throws IOException;
+
+  InputStream open(String key) throws IOException;
+
+  /**
+   * Mark an existing key as freshly written, so a new reference to deduplicated content is
+   * covered by the orphan collector's grace period
+   */
+  void touch(String key) throws IOException;
+
+  /** Delete the key; missing keys are ignored */
+  void delete(String key) throws IOException;
+
+  /** File on this node's disk holding the key, when blobs are stored locally */
+  Optional<Path> localPath(String key);
+
+  /** Time-limited URL clients can fetch the key from directly, when the backend supports it */
+  Optional<URI> presignedUrl(String key);
+}
@@ -0,0 +1,91 @@
+package com.gege.activitypartner.service;
+
+import com.gege.activitypartner.dto.ChatSocketMessage;
+import com.gege.activitypartner.event.ChatMessageEvent;
+import com.gege.activitypartner.event.ParticipantStatusChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpSession;
+import org.springframework.messaging.simp.user.SimpSubscription;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Pushes committed chat changes to the activity's WebSocket topic, and drops the topic
+ * subscriptions of users who leave or are removed from the activity. Membership is only checked
+ * at SUBSCRIBE time, so without that a removed participant would keep receiving the room.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChatBroadcastService {
+
+  private final SimpMessagingTemplate messagingTemplate;
+  private final SimpUserRegistry simpUserRegistry;
+
+  public static String chatTopic(Long activityId) {
+    return "/topic/activities/" + activityId + "/messages";
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+  public void onChatMessage(ChatMessageEvent event) {
+    ChatSocketMessage frame =
+        event.getType() == ChatMessageEvent.Type.SENT
+            ? new ChatSocketMessage("MESSAGE_SENT", event.getMessage().getId(), event.getMessage())
+            : new ChatSocketMessage("MESSAGE_DELETED", event.getMessage().getId(), null);
+    try {
+      messagingTemplate.convertAndSend(chatTopic(event.getActivityId()), frame);
+    } catch (Exception e) {
+      // Clients fall back to polling, so a failed push must not surface to the sender
+      log.error(
+          "Failed to broadcast {} for activity {}: {}",
+          frame.getType(),
+          event.getActivityId(),
+          e.getMessage());
+    }
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onParticipantStatusChanged(ParticipantStatusChangedEvent event) {
+    if (!event.wasChatMember() || event.isChatMember()) {
+      return;
+    }
+    // Principal names of STOMP sessions are user IDs (see WebSocketAuthInterceptor)
+    SimpUser user = simpUserRegistry.getUser(event.getUserId().toString());
+    if (user == null) {
+      return; // Not connected to this node
+    }
+
+    String topic = chatTopic(event.getActivityId());
+    for (SimpSession session : user.getSessions()) {
+      for (SimpSubscription subscription : session.getSubscriptions()) {
+        if (topic.equals(subscription.getDestination())) {
+          unsubscribe(session.getId(), subscription.getId());
+        }
+      }
+    }
+  }
+
+  // Remove the subscription from the broker as if the client had sent UNSUBSCRIBE
+  private void unsubscribe(String sessionId, String subscriptionId) {
+    SimpMessageHeaderAccessor accessor =
+        SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+    accessor.setSessionId(sessionId);
+    accessor.setSubscriptionId(subscriptionId);
+    try {
+      messagingTemplate
+          .getMessageChannel()
+          .send(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+      log.debug("Dropped chat subscription {} of session {}", subscriptionId, sessionId);
+    } catch (Exception e) {
+      log.error("Failed to drop chat subscription of session {}: {}", sessionId, e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package com.gege.activitypartner.service;
+
+import com.gege.activitypartner.dto.ActivityMessageResponse;
+import com.gege.activitypartner.event.ChatMessageEvent;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * Long-poll variant of getMessagesSince for clients that cannot keep a WebSocket open. A request
+ * with nothing new is parked as a {@link DeferredResult} (no Tomcat worker is held) and completed
+ * when a message is committed to the room, or with an empty list when it times out.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChatLongPollService {
+
+  public static final long MIN_TIMEOUT_SECONDS = 5;
+  public static final long MAX_TIMEOUT_SECONDS = 30;
+
+  private final ActivityMessageService messageService;
+
+  private final Map<Long, Set<Waiter>> waitersByRoom = new ConcurrentHashMap<>();
+
+  /** Parked poll of one user on one room */
+  private static class Waiter {
+    final Long userId;
+    final LocalDateTime since;
+    final DeferredResult<ResponseEntity<List<ActivityMessageResponse>>> result;
+
+    Waiter(
+        Long userId,
+        LocalDateTime since,
+        DeferredResult<ResponseEntity<List<ActivityMessageResponse>>> result) {
+      this.userId = userId;
+      this.since = since;
+      this.result = result;
+    }
+  }
+
+  /**
+   * Wait for messages newer than {@code since}. Access is checked up front, so a non-member gets
+   * the usual error instead of a parked request.
+   */
+  public DeferredResult<ResponseEntity<List<ActivityMessageResponse>>> waitForMessages(
+      Long activityId, Long userId, LocalDateTime since, long timeoutSeconds) {
+    long timeout = Math.max(MIN_TIMEOUT_SECONDS, Math.min(timeoutSeconds, MAX_TIMEOUT_SECONDS));
+    DeferredResult<ResponseEntity<List<ActivityMessageResponse>>> result =
+        new DeferredResult<>(timeout * 1000, ResponseEntity.ok(Collections.emptyList()));
+
+    // Register before checking so a message committed in between is not missed
+    Waiter waiter = new Waiter(userId, since, result);
+    Set<Waiter> waiters =
+        waitersByRoom.computeIfAbsent(activityId, id -> ConcurrentHashMap.newKeySet());
+    waiters.add(waiter);
+    result.onCompletion(() -> unregister(activityId, waiter));
+
+    try {
+      List<ActivityMessageResponse> messages =
+          messageService.getMessagesSince(activityId, userId, since);
+      if (!messages.isEmpty()) {
+        result.setResult(ResponseEntity.ok(messages));
+      }
+    } catch (RuntimeException e) {
+      unregister(activityId, waiter);
+      throw e;
+    }
+    return result;
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onChatMessage(ChatMessageEvent event) {
+    if (event.getType() != ChatMessageEvent.Type.SENT) {
+      return;
+    }
+    Set<Waiter> waiters = waitersByRoom.get(event.getActivityId());
+    if (waiters == null || waiters.isEmpty()) {
+      return;
+    }
+
+    // Answer from the event itself: other after-commit listeners, such as the recent-message
+    // buffer, may not have seen this message yet
+    ActivityMessageResponse message = event.getMessage();
+    for (Waiter waiter : waiters) {
+      if (waiter.result.isSetOrExpired() || !message.getCreatedAt().isAfter(waiter.since)) {
+        continue;
+      }
+      List<ActivityMessageResponse> messages = Collections.emptyList();
+      try {
+        if (messageService.isChatMember(event.getActivityId(), waiter.userId)) {
+          messages = ChatRecentMessageBuffer.forViewer(List.of(message), waiter.userId);
+        } else {
+          log.debug(
+              "Completing long poll of user {} on activity {} empty: no longer a member",
+              waiter.userId,
+              event.getActivityId());
+        }
+      } catch (Exception e) {
+        log.debug(
+            "Completing long poll of user {} on activity {} empty: {}",
+            waiter.userId,
+            event.getActivityId(),
+            e.getMessage());
+      }
+      waiter.result.setResult(ResponseEntity.ok(messages));
+    }
+  }
+
+  private void unregister(Long activityId, Waiter waiter) {
+    waitersByRoom.computeIfPresent(
+        activityId,
+        (id, waiters) -> {
+          waiters.remove(waiter);
+          return waiters.isEmpty() ? null : waiters;
+        });
+  }
+}
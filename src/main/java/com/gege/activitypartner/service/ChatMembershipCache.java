@@ -0,0 +1,130 @@
+package com.gege.activitypartner.service;
+
+import com.gege.activitypartner.event.ParticipantStatusChangedEvent;
+import com.gege.activitypartner.repository.ActivityParticipantRepository;
+import com.gege.activitypartner.repository.ActivityRepository;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * In-memory set of users allowed in each activity's chat (creator plus ACCEPTED/JOINED
+ * participants). A room is loaded from the database and then kept current by participant status
+ * events, so chat access checks are hash lookups. Idle rooms are evicted least recently used first.
+ *
+ * <p>Changes made on other application instances arrive through ChatRoomChangeFeed within one poll
+ * interval; the TTL only bounds staleness if that polling fails.
+ */
+@Service
+@Slf4j
+public class ChatMembershipCache {
+
+  private record Room(Set<Long> members, long loadedAtMillis) {}
+
+  private final ActivityRepository activityRepository;
+  private final ActivityParticipantRepository participantRepository;
+  private final long ttlMillis;
+  private final Map<Long, Room> rooms;
+
+  // Bumped on every membership change so a load that raced with a change is not cached
+  private final AtomicLong version = new AtomicLong();
+
+  public ChatMembershipCache(
+      ActivityRepository activityRepository,
+      ActivityParticipantRepository participantRepository,
+      @Value("${chat.membership-cache.ttl-seconds:60}") long ttlSeconds,
+      @Value("${chat.membership-cache.max-rooms:10000}") int maxRooms) {
+    this.activityRepository = activityRepository;
+    this.participantRepository = participantRepository;
+    this.ttlMillis = ttlSeconds * 1000;
+    this.rooms =
+        Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<Long, Room> eldest) {
+                return size() > maxRooms;
+              }
+            });
+  }
+
+  /**
+   * Members of an activity's chat
+   *
+   * @return empty if the activity does not exist
+   */
+  public Optional<Set<Long>> getMembers(Long activityId) {
+    long now = System.currentTimeMillis();
+    Room room = rooms.get(activityId);
+    if (room != null && now - room.loadedAtMillis() < ttlMillis) {
+      return Optional.of(room.members());
+    }
+
+    long loadVersion = version.get();
+    Optional<Long> creatorId = activityRepository.findCreatorIdById(activityId);
+    if (creatorId.isEmpty()) {
+      return Optional.empty();
+    }
+    Set<Long> loaded = new HashSet<>(participantRepository.findChatMemberUserIds(activityId));
+    loaded.add(creatorId.get());
+    Set<Long> members = Collections.unmodifiableSet(loaded);
+
+    synchronized (rooms) {
+      if (version.get() == loadVersion) {
+        rooms.put(activityId, new Room(members, now));
+      }
+    }
+    return Optional.of(members);
+  }
+
+  /** Whether the user may read and write the activity's chat; false for unknown activities */
+  public boolean isMember(Long activityId, Long userId) {
+    return getMembers(activityId).map(members -> members.contains(userId)).orElse(false);
+  }
+
+  /** Forget a room, e.g. after its activity was deleted */
+  public void evict(Long activityId) {
+    synchronized (rooms) {
+      version.incrementAndGet();
+      rooms.remove(activityId);
+    }
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onParticipantStatusChanged(ParticipantStatusChangedEvent event) {
+    if (event.wasChatMember() == event.isChatMember()) {
+      return;
+    }
+
+    synchronized (rooms) {
+      version.incrementAndGet();
+      Room current = rooms.get(event.getActivityId());
+      if (current == null) {
+        return; // Not cached, the next access loads the committed state
+      }
+      Set<Long> updated = new HashSet<>(current.members());
+      if (event.isChatMember()) {
+        updated.add(event.getUserId());
+      } else {
+        updated.remove(event.getUserId());
+      }
+      rooms.put(
+          event.getActivityId(),
+          new Room(Collections.unmodifiableSet(updated), current.loadedAtMillis()));
+    }
+    log.debug(
+        "Chat membership of user {} in activity {} changed: {} -> {}",
+        event.getUserId(),
+        event.getActivityId(),
+        event.getOldStatus(),
+        event.getNewStatus());
+  }
+}
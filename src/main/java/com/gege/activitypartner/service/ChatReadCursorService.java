@@ -0,0 +1,164 @@
+package com.gege.activitypartner.service;
+
+import com.gege.activitypartner.dto.ChatOverviewResponse;
+import com.gege.activitypartner.entity.Activity;
+import com.gege.activitypartner.entity.ActivityMessage;
+import com.gege.activitypartner.entity.ChatReadCursor;
+import com.gege.activitypartner.entity.User;
+import com.gege.activitypartner.event.ParticipantStatusChangedEvent;
+import com.gege.activitypartner.exception.InvalidParticipantActionException;
+import com.gege.activitypartner.exception.ResourceNotFoundException;
+import com.gege.activitypartner.repository.ActivityMessageRepository;
+import com.gege.activitypartner.repository.ChatReadCursorRepository;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Per-user read cursors for activity chats. Unread counts are maintained incrementally: sending a
+ * message bumps every other member's counter in the same transaction, and reading resets it, so
+ * badges never require counting a room's history. A cursor is created when its user joins the
+ * room (or creates the activity) and positions are compared by (createdAt, id), the order history
+ * is shown in.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChatReadCursorService {
+
+  private final ChatReadCursorRepository cursorRepository;
+  private final ActivityMessageRepository messageRepository;
+  private final ChatMembershipCache chatMembershipCache;
+
+  /**
+   * Called from sendMessage: unread for everyone else, read for the sender. The bulk update locks
+   * every cursor of the room until commit, so callers run it as late in their transaction as
+   * possible.
+   */
+  @Transactional
+  public void recordSentMessage(Activity activity, User sender, ActivityMessage message) {
+    cursorRepository.incrementUnread(activity.getId(), sender.getId());
+
+    ChatReadCursor cursor = getOrCreateCursor(sender.getId(), activity.getId(), 0);
+    cursor.setLastReadMessageId(message.getId());
+    cursor.setLastReadMessageAt(message.getCreatedAt());
+    cursor.setUnreadCount(0);
+    cursorRepository.save(cursor);
+  }
+
+  /** Called from deleteMessage so a removed message stops counting as unread */
+  @Transactional
+  public void recordDeletedMessage(ActivityMessage message) {
+    cursorRepository.decrementUnread(
+        message.getActivity().getId(),
+        message.getUser().getId(),
+        message.getCreatedAt(),
+        message.getId());
+  }
+
+  /**
+   * Advance the user's read cursor. Without a message ID the cursor moves to the latest message.
+   * Cursors never move backwards.
+   *
+   * @return remaining unread count
+   */
+  @Transactional
+  public int markRead(Long activityId, Long userId, Long messageId) {
+    Set<Long> members =
+        chatMembershipCache
+            .getMembers(activityId)
+            .orElseThrow(
+                () -> new ResourceNotFoundException("Activity not found with id: " + activityId));
+    if (!members.contains(userId)) {
+      throw new InvalidParticipantActionException("Only accepted participants can view messages");
+    }
+
+    Long readId = messageId;
+    LocalDateTime readAt = null;
+    if (messageId != null) {
+      readAt =
+          messageRepository
+              .findCreatedAt(activityId, messageId)
+              .orElseThrow(
+                  () -> new ResourceNotFoundException("Message not found with id: " + messageId));
+    } else {
+      List<ActivityMessage> latest = messageRepository.findLatest(activityId, PageRequest.of(0, 1));
+      if (!latest.isEmpty()) {
+        readId = latest.get(0).getId();
+        readAt = latest.get(0).getCreatedAt();
+      }
+    }
+    ChatReadCursor cursor = getOrCreateCursor(userId, activityId, 0);
+
+    if (readId != null && isAfterCursor(readAt, readId, cursor)) {
+      cursor.setLastReadMessageId(readId);
+      cursor.setLastReadMessageAt(readAt);
+    }
+    cursor.setUnreadCount(
+        (int)
+            messageRepository.countUnread(
+                activityId, userId, cursor.getLastReadMessageAt(), cursor.getLastReadMessageId()));
+    cursorRepository.save(cursor);
+    return cursor.getUnreadCount();
+  }
+
+  private static boolean isAfterCursor(LocalDateTime at, Long id, ChatReadCursor cursor) {
+    if (cursor.getLastReadMessageId() == null || cursor.getLastReadMessageAt() == null) {
+      return true;
+    }
+    int byTime = at.compareTo(cursor.getLastReadMessageAt());
+    return byTime > 0 || (byTime == 0 && id > cursor.getLastReadMessageId());
+  }
+
+  /**
+   * All chats of the user with last message and unread count. Read-only: every room the user
+   * belongs to already has a cursor (see onParticipantStatusChanged and the V5 migration).
+   */
+  @Transactional(readOnly = true)
+  public List<ChatOverviewResponse> getChatOverview(Long userId) {
+    return cursorRepository.findChatOverview(userId);
+  }
+
+  /** Start or stop tracking a room when the user joins or leaves its chat */
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  public void onParticipantStatusChanged(ParticipantStatusChangedEvent event) {
+    if (event.wasChatMember() == event.isChatMember()) {
+      return;
+    }
+    Long activityId = event.getActivityId();
+    Long userId = event.getUserId();
+
+    if (!event.isChatMember()) {
+      cursorRepository.deleteByActivityIdAndUserId(activityId, userId);
+      return;
+    }
+    if (cursorRepository.findByUserIdAndActivityId(userId, activityId).isEmpty()) {
+      cursorRepository.insertIfAbsent(
+          userId, activityId, (int) messageRepository.countUnread(activityId, userId, null, null));
+    }
+  }
+
+  // Existing cursor, or one inserted now without racing other creators of the same cursor
+  private ChatReadCursor getOrCreateCursor(Long userId, Long activityId, int unreadCount) {
+    Optional<ChatReadCursor> existing =
+        cursorRepository.findByUserIdAndActivityId(userId, activityId);
+    if (existing.isPresent()) {
+      return existing.get();
+    }
+    cursorRepository.insertIfAbsent(userId, activityId, unreadCount);
+    // Locking read: a cursor another transaction just committed is not in our snapshot
+    return cursorRepository
+        .findLockedByUserIdAndActivityId(userId, activityId)
+        .orElseThrow(() -> new IllegalStateException("Chat read cursor was not created"));
+  }
+}
@@ -0,0 +1,265 @@
+package com.gege.activitypartner.service;
+
+import com.gege.activitypartner.dto.ActivityMessageResponse;
+import com.gege.activitypartner.event.ChatMessageEvent;
+import com.gege.activitypartner.repository.ActivityMessageRepository;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Bounded buffer of the most recent messages of each active chat room, so "latest page" and
+ * "since T" reads of hot rooms are answered from memory. Rooms are primed from the database on
+ * first read, kept current by committed {@link ChatMessageEvent}s and evicted least recently used
+ * first. A read the buffer cannot answer completely returns empty and the caller queries the
+ * database.
+ *
+ * <p>Messages sent or deleted on other application instances arrive through ChatRoomChangeFeed,
+ * which drops the room so the next read primes it again; rooms are also re-primed after {@code
+ * chat.recent-buffer.ttl-seconds} in case that polling fails. Priming reads in a transaction of its
+ * own, so it only happens when the caller has none open (see {@link #room}).
+ */
+@Service
+@Slf4j
+public class ChatRecentMessageBuffer {
+
+  private final ActivityMessageRepository messageRepository;
+  private final TransactionTemplate primeTransaction;
+  private final int capacity;
+  private final long ttlMillis;
+  private final Map<Long, Room> rooms;
+
+  public ChatRecentMessageBuffer(
+      ActivityMessageRepository messageRepository,
+      PlatformTransactionManager transactionManager,
+      @Value("${chat.recent-buffer.size:100}") int capacity,
+      @Value("${chat.recent-buffer.ttl-seconds:60}") long ttlSeconds,
+      @Value("${chat.recent-buffer.max-rooms:2000}") int maxRooms) {
+    this.messageRepository = messageRepository;
+    this.primeTransaction = freshReadTransaction(transactionManager);
+    this.capacity = capacity;
+    this.ttlMillis = ttlSeconds * 1000;
+    this.rooms =
+        Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<Long, Room> eldest) {
+                return size() > maxRooms;
+              }
+            });
+  }
+
+  /** Latest {@code limit} messages in chronological order, as seen by the given user */
+  public Optional<List<ActivityMessageResponse>> getLatest(
+      Long activityId, int limit, Long viewerId) {
+    if (limit > capacity) {
+      return Optional.empty();
+    }
+    return room(activityId).flatMap(room -> room.latest(limit)).map(m -> forViewer(m, viewerId));
+  }
+
+  /** Messages created after {@code since} in chronological order, as seen by the given user */
+  public Optional<List<ActivityMessageResponse>> getSince(
+      Long activityId, LocalDateTime since, Long viewerId) {
+    return room(activityId).flatMap(room -> room.since(since)).map(m -> forViewer(m, viewerId));
+  }
+
+  /** Forget a room, e.g. after it changed on another instance */
+  public void evict(Long activityId) {
+    rooms.remove(activityId);
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onChatMessage(ChatMessageEvent event) {
+    Room room = rooms.get(event.getActivityId());
+    if (room == null) {
+      return; // Not buffered, the next read primes from the database
+    }
+    if (event.getType() == ChatMessageEvent.Type.SENT) {
+      room.append(event.getMessage());
+    } else {
+      room.remove(event.getMessage().getId());
+    }
+  }
+
+  /**
+   * Read-only, read-committed transaction of its own. Priming must not reuse the caller's
+   * REPEATABLE READ snapshot: a message committed after that snapshot but before the room was
+   * registered would be missed by both the read and the event, and the room would never serve it.
+   */
+  static TransactionTemplate freshReadTransaction(PlatformTransactionManager transactionManager) {
+    TransactionTemplate template = new TransactionTemplate(transactionManager);
+    template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    template.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    template.setReadOnly(true);
+    return template;
+  }
+
+  /**
+   * Get a primed room, priming it on a miss or once it has expired. The room is registered before
+   * the database read, so messages committed while the read is in flight are appended to it and
+   * merged afterwards. The read starts a fresh snapshot (see {@link #freshReadTransaction}) after
+   * the registration.
+   *
+   * <p>Inside a caller's transaction a miss is not primed: the fresh transaction would take a
+   * second pooled connection while the caller holds one, so the caller reads the database itself.
+   */
+  private Optional<Room> room(Long activityId) {
+    long now = System.currentTimeMillis();
+    Room room;
+    boolean prime = false;
+    synchronized (rooms) {
+      room = rooms.get(activityId);
+      if (room == null || now - room.createdAtMillis >= ttlMillis) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+          return Optional.empty();
+        }
+        room = new Room(capacity, now);
+        rooms.put(activityId, room);
+        prime = true;
+      }
+    }
+
+    if (prime) {
+      try {
+        room.prime(
+            primeTransaction.execute(
+                status ->
+                    messageRepository.findLatestHistory(
+                        activityId, null, PageRequest.of(0, capacity))));
+      } catch (RuntimeException e) {
+        rooms.remove(activityId, room);
+        throw e;
+      }
+    }
+    return room.isPrimed() ? Optional.of(room) : Optional.empty();
+  }
+
+  /** Cached responses are shared, so hand out copies with isOwnMessage set for the reader */
+  static List<ActivityMessageResponse> forViewer(
+      List<ActivityMessageResponse> messages, Long viewerId) {
+    List<ActivityMessageResponse> copies = new ArrayList<>(messages.size());
+    for (ActivityMessageResponse m : messages) {
+      copies.add(
+          new ActivityMessageResponse(
+              m.getId(),
+              m.getActivityId(),
+              m.getUserId(),
+              m.getUserName(),
+              m.getUserProfilePicture(),
+              m.getMessageText(),
+              m.getCreatedAt(),
+              m.getUserId().equals(viewerId)));
+    }
+    return copies;
+  }
+
+  /** Chat history order: send time, then id (see ActivityMessageRepository.HISTORY_SELECT) */
+  static final Comparator<ActivityMessageResponse> HISTORY_ORDER =
+      Comparator.comparing(ActivityMessageResponse::getCreatedAt)
+          .thenComparing(ActivityMessageResponse::getId);
+
+  /** Ring of a room's newest messages in history order */
+  private static class Room {
+
+    private final int capacity;
+    private final long createdAtMillis;
+    private final List<ActivityMessageResponse> messages = new ArrayList<>();
+    private final Set<Long> deletedWhilePriming = new HashSet<>();
+    private boolean primed;
+    private boolean complete; // Buffer holds the room's entire (non-deleted) history
+
+    Room(int capacity, long createdAtMillis) {
+      this.capacity = capacity;
+      this.createdAtMillis = createdAtMillis;
+    }
+
+    synchronized boolean isPrimed() {
+      return primed;
+    }
+
+    synchronized void prime(List<ActivityMessageResponse> newestFirst) {
+      for (ActivityMessageResponse message : newestFirst) {
+        if (!deletedWhilePriming.contains(message.getId())) {
+          insert(message);
+        }
+      }
+      complete = newestFirst.size() < capacity;
+      trim();
+      primed = true;
+      deletedWhilePriming.clear();
+    }
+
+    synchronized void append(ActivityMessageResponse message) {
+      insert(message);
+      trim();
+    }
+
+    synchronized void remove(Long messageId) {
+      messages.removeIf(m -> m.getId().equals(messageId));
+      if (!primed) {
+        deletedWhilePriming.add(messageId); // The in-flight read may still return it
+      }
+    }
+
+    synchronized Optional<List<ActivityMessageResponse>> latest(int limit) {
+      if (messages.size() < limit && !complete) {
+        return Optional.empty();
+      }
+      int from = Math.max(0, messages.size() - limit);
+      return Optional.of(new ArrayList<>(messages.subList(from, messages.size())));
+    }
+
+    synchronized Optional<List<ActivityMessageResponse>> since(LocalDateTime since) {
+      // Older, unbuffered messages are all at or before the oldest buffered one
+      boolean covered =
+          complete || (!messages.isEmpty() && !messages.get(0).getCreatedAt().isAfter(since));
+      if (!covered) {
+        return Optional.empty();
+      }
+      List<ActivityMessageResponse> result = new ArrayList<>();
+      for (ActivityMessageResponse message : messages) {
+        if (message.getCreatedAt().isAfter(since)) {
+          result.add(message);
+        }
+      }
+      return Optional.of(result);
+    }
+
+    // Insert keeping history order; duplicates (same message from prime and event) are ignored
+    private void insert(ActivityMessageResponse message) {
+      int i = messages.size();
+      while (i > 0 && HISTORY_ORDER.compare(messages.get(i - 1), message) > 0) {
+        i--;
+      }
+      if (i > 0 && messages.get(i - 1).getId().equals(message.getId())) {
+        return;
+      }
+      messages.add(i, message);
+    }
+
+    private void trim() {
+      while (messages.size() > capacity) {
+        messages.remove(0);
+        complete = false;
+      }
+    }
+  }
+}
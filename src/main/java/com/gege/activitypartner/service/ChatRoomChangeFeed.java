@@ -0,0 +1,160 @@
+package com.gege.activitypartner.service;
+
+import com.gege.activitypartner.entity.ChatRoomChange;
+import com.gege.activitypartner.event.ChatMessageEvent;
+import com.gege.activitypartner.event.ParticipantStatusChangedEvent;
+import com.gege.activitypartner.repository.ChatRoomChangeRepository;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Carries chat room changes to every application instance. A change is recorded in {@code
+ * chat_room_changes} inside the transaction that made it, and each instance polls the table and
+ * drops (or, for the search index, patches) what it cached about the rooms changed elsewhere. The instance that made a change updates
+ * its own caches from the event, so its rows are skipped. A user removed from a chat on one node
+ * is therefore refused on all of them within one poll interval instead of after the cache TTL.
+ *
+ * <p>Each poll looks back a little further than the previous one, so a change whose transaction
+ * committed after its timestamp was taken (or on a node with a slightly different clock) is still
+ * seen; rows already handled by the previous poll are not applied again.
+ */
+@Service
+@Slf4j
+public class ChatRoomChangeFeed {
+
+  private final ChatRoomChangeRepository changeRepository;
+  private final ChatMembershipCache chatMembershipCache;
+  private final ChatRecentMessageBuffer recentMessageBuffer;
+  private final ChatSearchIndex chatSearchIndex;
+  private final long overlapSeconds;
+  private final long retentionMinutes;
+  private final String origin = UUID.randomUUID().toString();
+
+  private LocalDateTime lastPollAt = LocalDateTime.now();
+  private Set<Long> lastPollIds = Set.of();
+
+  public ChatRoomChangeFeed(
+      ChatRoomChangeRepository changeRepository,
+      ChatMembershipCache chatMembershipCache,
+      ChatRecentMessageBuffer recentMessageBuffer,
+      ChatSearchIndex chatSearchIndex,
+      @Value("${chat.room-changes.poll-overlap-seconds:10}") long overlapSeconds,
+      @Value("${chat.room-changes.retention-minutes:60}") long retentionMinutes) {
+    this.changeRepository = changeRepository;
+    this.chatMembershipCache = chatMembershipCache;
+    this.recentMessageBuffer = recentMessageBuffer;
+    this.chatSearchIndex = chatSearchIndex;
+    this.overlapSeconds = overlapSeconds;
+    this.retentionMinutes = retentionMinutes;
+  }
+
+  // Synchronous, so the row commits or rolls back together with the change itself
+  @EventListener
+  public void onParticipantStatusChanged(ParticipantStatusChangedEvent event) {
+    if (event.wasChatMember() != event.isChatMember()) {
+      record(event.getActivityId(), ChatRoomChange.Kind.MEMBERSHIP);
+    }
+  }
+
+  @EventListener
+  public void onChatMessage(ChatMessageEvent event) {
+    ChatRoomChange.Kind kind =
+        event.getType() == ChatMessageEvent.Type.SENT
+            ? ChatRoomChange.Kind.MESSAGE_SENT
+            : ChatRoomChange.Kind.MESSAGE_DELETED;
+    changeRepository.save(
+        new ChatRoomChange(event.getActivityId(), kind, event.getMessage().getId(), origin));
+  }
+
+  /** Called from deleteActivity, inside its transaction; also forgets the room on this instance */
+  public void recordRoomDeleted(Long activityId) {
+    record(activityId, ChatRoomChange.Kind.DELETED);
+    forgetRoom(activityId);
+  }
+
+  /** Drop cached state of rooms changed on other instances since the previous poll */
+  @Scheduled(fixedDelayString = "${chat.room-changes.poll-ms:2000}")
+  public synchronized void poll() {
+    try {
+      LocalDateTime now = LocalDateTime.now();
+      List<ChatRoomChange> changes =
+          changeRepository.findChangedSince(lastPollAt.minusSeconds(overlapSeconds), origin);
+      Set<Long> pollIds = new HashSet<>();
+      Map<Long, Set<Long>> sentByRoom = new HashMap<>();
+      Map<Long, Set<Long>> deletedByRoom = new HashMap<>();
+      int applied = 0;
+      for (ChatRoomChange change : changes) {
+        pollIds.add(change.getId());
+        if (lastPollIds.contains(change.getId())) {
+          continue;
+        }
+        Long activityId = change.getActivityId();
+        switch (change.getKind()) {
+          case MEMBERSHIP -> chatMembershipCache.evict(activityId);
+          case MESSAGE_SENT -> {
+            recentMessageBuffer.evict(activityId);
+            sentByRoom
+                .computeIfAbsent(activityId, id -> new HashSet<>())
+                .add(change.getMessageId());
+          }
+          case MESSAGE_DELETED -> {
+            recentMessageBuffer.evict(activityId);
+            deletedByRoom
+                .computeIfAbsent(activityId, id -> new HashSet<>())
+                .add(change.getMessageId());
+          }
+          case DELETED -> forgetRoom(activityId);
+        }
+        applied++;
+      }
+
+      // The search index is patched rather than dropped, since rebuilding reads a room's history
+      Set<Long> messageRooms = new HashSet<>(sentByRoom.keySet());
+      messageRooms.addAll(deletedByRoom.keySet());
+      for (Long activityId : messageRooms) {
+        chatSearchIndex.applyRemoteChanges(
+            activityId,
+            sentByRoom.getOrDefault(activityId, Set.of()),
+            deletedByRoom.getOrDefault(activityId, Set.of()));
+      }
+      lastPollAt = now;
+      lastPollIds = pollIds;
+      if (applied > 0) {
+        log.debug("Applied {} chat room changes made on other instances", applied);
+      }
+    } catch (Exception e) {
+      log.warn("Could not poll chat room changes: {}", e.getMessage());
+    }
+  }
+
+  @Scheduled(cron = "${chat.room-changes.purge.cron:0 55 * * * ?}")
+  @Transactional
+  public void purge() {
+    int deleted =
+        changeRepository.deleteChangedBefore(LocalDateTime.now().minusMinutes(retentionMinutes));
+    if (deleted > 0) {
+      log.info("Purged {} chat room change records", deleted);
+    }
+  }
+
+  private void record(Long activityId, ChatRoomChange.Kind kind) {
+    changeRepository.save(new ChatRoomChange(activityId, kind, null, origin));
+  }
+
+  private void forgetRoom(Long activityId) {
+    chatMembershipCache.evict(activityId);
+    recentMessageBuffer.evict(activityId);
+    chatSearchIndex.evict(activityId);
+  }
+}
@@ -0,0 +1,357 @@
+package com.gege.activitypartner.service;
+
+import com.gege.activitypartner.dto.ActivityMessageResponse;
+import com.gege.activitypartner.event.ChatMessageEvent;
+import com.gege.activitypartner.repository.ActivityMessageRepository;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Embedded inverted index over chat message text, one per activity. A room is indexed from the
+ * database on its first search and then kept current by committed {@link ChatMessageEvent}s, and
+ * by ChatRoomChangeFeed for messages sent or deleted on other instances. Rooms are rebuilt after
+ * {@code chat.search.ttl-seconds} in case that polling fails. Indexed rooms are bounded and
+ * evicted least recently used first.
+ *
+ * <p>Text is lower-cased and stripped of accents (so "talalkozo" finds "találkozó"). Each query
+ * term also matches longer words starting with it. Hits are ranked by TF-IDF, newer messages first
+ * on ties.
+ */
+@Service
+@Slf4j
+public class ChatSearchIndex {
+
+  private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+  private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+  private static final int MIN_PREFIX_LENGTH = 3; // Shorter terms must match a whole word
+
+  private final ActivityMessageRepository messageRepository;
+  private final TransactionTemplate buildTransaction;
+  private final int buildPageSize;
+  private final long ttlMillis;
+  private final Map<Long, RoomIndex> rooms;
+
+  public ChatSearchIndex(
+      ActivityMessageRepository messageRepository,
+      PlatformTransactionManager transactionManager,
+      @Value("${chat.search.build-page-size:1000}") int buildPageSize,
+      @Value("${chat.search.ttl-seconds:600}") long ttlSeconds,
+      @Value("${chat.search.max-rooms:200}") int maxRooms) {
+    this.messageRepository = messageRepository;
+    this.buildTransaction = ChatRecentMessageBuffer.freshReadTransaction(transactionManager);
+    this.buildPageSize = buildPageSize;
+    this.ttlMillis = ttlSeconds * 1000;
+    this.rooms =
+        Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<Long, RoomIndex> eldest) {
+                return size() > maxRooms;
+              }
+            });
+  }
+
+  /**
+   * Ranked hits for the query; callers must check room membership first and must not hold a
+   * transaction, since building a room reads in transactions of its own. The returned responses
+   * are shared with the index and must be copied before being modified.
+   */
+  public List<ActivityMessageResponse> search(Long activityId, String query) {
+    List<String> terms = tokenize(query);
+    if (terms.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return room(activityId).search(terms);
+  }
+
+  /** Forget a room, e.g. after its activity was deleted */
+  public void evict(Long activityId) {
+    rooms.remove(activityId);
+  }
+
+  /**
+   * Bring an indexed room up to date with messages sent and deleted on other instances. Rooms
+   * still building are dropped instead, since their history read may already be past the sent
+   * messages.
+   */
+  public void applyRemoteChanges(Long activityId, Set<Long> sentIds, Set<Long> deletedIds) {
+    RoomIndex room = rooms.get(activityId);
+    if (room == null) {
+      return;
+    }
+    if (!room.isBuilt()) {
+      rooms.remove(activityId, room);
+      return;
+    }
+    deletedIds.forEach(room::remove);
+    Set<Long> missing = new HashSet<>(sentIds);
+    missing.removeIf(room::contains);
+    if (!missing.isEmpty()) {
+      buildTransaction
+          .execute(status -> messageRepository.findHistoryByIds(activityId, missing, null))
+          .forEach(room::add);
+    }
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onChatMessage(ChatMessageEvent event) {
+    RoomIndex room = rooms.get(event.getActivityId());
+    if (room == null) {
+      return; // Not indexed, the first search builds it from the database
+    }
+    if (event.getType() == ChatMessageEvent.Type.SENT) {
+      room.add(event.getMessage());
+    } else {
+      room.remove(event.getMessage().getId());
+    }
+  }
+
+  /**
+   * Get a room's index, building it on a miss or once it has expired. The room is registered
+   * before the history is read so messages committed meanwhile are not lost; concurrent searches
+   * wait for the build. The history is read in keyset pages, each in a short read-committed
+   * transaction of its own, so no connection is held for the whole build and every page sees
+   * everything committed before the registration.
+   */
+  private RoomIndex room(Long activityId) {
+    long now = System.currentTimeMillis();
+    RoomIndex room;
+    boolean build = false;
+    synchronized (rooms) {
+      room = rooms.get(activityId);
+      if (room == null || (room.isBuilt() && now - room.createdAtMillis >= ttlMillis)) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+          throw new IllegalStateException("Chat search index must not be built in a transaction");
+        }
+        room = new RoomIndex(now);
+        rooms.put(activityId, room);
+        build = true;
+      }
+    }
+
+    if (build) {
+      try {
+        int indexed = buildFromHistory(activityId, room);
+        log.debug(
+            "Indexed {} messages of activity {} in {} ms",
+            indexed,
+            activityId,
+            System.currentTimeMillis() - now);
+      } catch (RuntimeException e) {
+        rooms.remove(activityId, room);
+        room.fail();
+        throw e;
+      }
+    }
+    room.awaitBuilt();
+    return room;
+  }
+
+  private int buildFromHistory(Long activityId, RoomIndex room) {
+    int indexed = 0;
+    List<ActivityMessageResponse> page =
+        buildTransaction.execute(
+            status ->
+                messageRepository.findOldestHistory(
+                    activityId, null, PageRequest.of(0, buildPageSize)));
+    while (true) {
+      room.addHistory(page);
+      indexed += page.size();
+      if (page.size() < buildPageSize) {
+        break;
+      }
+      ActivityMessageResponse last = page.get(page.size() - 1);
+      page =
+          buildTransaction.execute(
+              status ->
+                  messageRepository.findHistoryAfter(
+                      activityId,
+                      last.getCreatedAt(),
+                      last.getId(),
+                      null,
+                      PageRequest.of(0, buildPageSize)));
+    }
+    room.build();
+    return indexed;
+  }
+
+  static List<String> tokenize(String text) {
+    if (text == null) {
+      return Collections.emptyList();
+    }
+    String normalized =
+        DIACRITICS
+            .matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+            .replaceAll("")
+            .toLowerCase(Locale.ROOT);
+    List<String> tokens = new ArrayList<>();
+    for (String token : NON_WORD.split(normalized)) {
+      if (!token.isEmpty()) {
+        tokens.add(token);
+      }
+    }
+    return tokens;
+  }
+
+  /** Postings (term -> message id -> term frequency) and stored responses of one room */
+  private static class RoomIndex {
+
+    private final TreeMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<Long, ActivityMessageResponse> documents = new HashMap<>();
+    private final Set<Long> deletedWhileBuilding = new HashSet<>();
+    private final long createdAtMillis;
+    private boolean built;
+    private boolean failed;
+
+    RoomIndex(long createdAtMillis) {
+      this.createdAtMillis = createdAtMillis;
+    }
+
+    synchronized boolean isBuilt() {
+      return built;
+    }
+
+    synchronized boolean contains(Long messageId) {
+      return documents.containsKey(messageId);
+    }
+
+    synchronized void addHistory(List<ActivityMessageResponse> history) {
+      for (ActivityMessageResponse message : history) {
+        if (!deletedWhileBuilding.contains(message.getId())) {
+          add(message);
+        }
+      }
+    }
+
+    synchronized void build() {
+      deletedWhileBuilding.clear();
+      built = true;
+      notifyAll();
+    }
+
+    synchronized void fail() {
+      failed = true;
+      notifyAll();
+    }
+
+    synchronized void awaitBuilt() {
+      boolean interrupted = false;
+      while (!built && !failed) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      if (failed) {
+        throw new IllegalStateException("Chat search index could not be built");
+      }
+    }
+
+    synchronized void add(ActivityMessageResponse message) {
+      if (documents.putIfAbsent(message.getId(), message) != null) {
+        return; // Already indexed from both the history read and the event
+      }
+      for (String term : tokenize(message.getMessageText())) {
+        postings
+            .computeIfAbsent(term, t -> new HashMap<>())
+            .merge(message.getId(), 1, Integer::sum);
+      }
+    }
+
+    synchronized void remove(Long messageId) {
+      ActivityMessageResponse message = documents.remove(messageId);
+      if (message == null) {
+        if (!built) {
+          deletedWhileBuilding.add(messageId);
+        }
+        return;
+      }
+      for (String term : new HashSet<>(tokenize(message.getMessageText()))) {
+        Map<Long, Integer> docs = postings.get(term);
+        if (docs != null) {
+          docs.remove(messageId);
+          if (docs.isEmpty()) {
+            postings.remove(term);
+          }
+        }
+      }
+    }
+
+    synchronized List<ActivityMessageResponse> search(List<String> terms) {
+      int totalDocs = Math.max(1, documents.size());
+      Map<Long, Double> scores = new HashMap<>();
+      Map<Long, Integer> matchedTerms = new HashMap<>();
+
+      for (String term : new HashSet<>(terms)) {
+        Map<Long, Integer> termDocs = matchingDocs(term);
+        if (termDocs.isEmpty()) {
+          return Collections.emptyList(); // Every term must match
+        }
+        double idf = Math.log(1.0 + (double) totalDocs / termDocs.size());
+        for (Map.Entry<Long, Integer> posting : termDocs.entrySet()) {
+          double tf = 1.0 + Math.log(posting.getValue());
+          scores.merge(posting.getKey(), tf * idf, Double::sum);
+          matchedTerms.merge(posting.getKey(), 1, Integer::sum);
+        }
+      }
+
+      int required = new HashSet<>(terms).size();
+      List<Long> hits = new ArrayList<>();
+      for (Map.Entry<Long, Integer> entry : matchedTerms.entrySet()) {
+        if (entry.getValue() == required) {
+          hits.add(entry.getKey());
+        }
+      }
+      hits.sort(
+          Comparator.comparingDouble((Long id) -> scores.get(id))
+              .reversed()
+              .thenComparing(
+                  id -> documents.get(id),
+                  ChatRecentMessageBuffer.HISTORY_ORDER.reversed())); // Newer first on ties
+
+      List<ActivityMessageResponse> results = new ArrayList<>(hits.size());
+      for (Long id : hits) {
+        results.add(documents.get(id));
+      }
+      return results;
+    }
+
+    // Whole-word matches plus words the term is a prefix of; a message counts once per term
+    private Map<Long, Integer> matchingDocs(String term) {
+      if (term.length() < MIN_PREFIX_LENGTH) {
+        return postings.getOrDefault(term, Collections.emptyMap());
+      }
+      Map<Long, Integer> merged = new HashMap<>();
+      Map<String, Map<Long, Integer>> words =
+          postings.subMap(term, true, term + Character.MAX_VALUE, true);
+      for (Map<Long, Integer> docs : words.values()) {
+        docs.forEach((id, tf) -> merged.merge(id, tf, Integer::sum));
+      }
+      return merged;
+    }
+  }
+}
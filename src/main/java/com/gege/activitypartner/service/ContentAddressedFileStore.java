@@ -0,0 +1,506 @@
+package com.gege.activitypartner.service;
+
+import com.gege.activitypartner.entity.StoredBlob;
+import com.gege.activitypartner.exception.FileStorageException;
+import com.gege.activitypartner.repository.StoredBlobRepository;
+import com.gege.activitypartner.util.ImageTypeDetector;
+import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Single store for all uploaded images. Files are named by the SHA-256 of their content and
+ * sharded two levels deep ({@code ab/cd/abcd...ef.jpg}), so no directory grows unbounded and
+ * identical uploads share one file. A reference count in {@code stored_blobs} decides when the
+ * file can go. Writes stream to a temp file and are renamed into place, so readers never see a
+ * partial file. Where blobs physically live is up to the {@link BlobStorageBackend}. Names that
+ * are not content hashes are pre-store UUID files and are resolved in the caller's legacy
+ * directory on local disk. With {@code storage.legacy.in-backend} they are also looked up in the
+ * backend under {@code legacy/<name>} when this node's disk does not have them, after
+ * {@link LegacyUploadCopier} has copied them there.
+ *
+ * <p>Uploads and deletions of the same content are serialized on its {@code stored_blobs} row: an
+ * upload takes its reference (locking the row) before it checks for or writes the file, and a
+ * deletion re-checks the count under the same lock before removing the file.
+ */
+@Service
+@Slf4j
+public class ContentAddressedFileStore {
+
+  // Content hash, optionally followed by a derivative suffix such as _thumb
+  private static final Pattern BLOB_NAME =
+      Pattern.compile("[0-9a-f]{64}(_[a-z]{1,10})?\\.[a-z0-9]{1,5}");
+
+  // Backend key prefix of pre-store files copied from a legacy directory
+  private static final String LEGACY_PREFIX = "legacy/";
+
+  private final StoredBlobRepository storedBlobRepository;
+  private final TransactionTemplate deleteTransaction;
+  private final BlobStorageBackend backend;
+  private final Path root;
+  private final Path tempDirectory;
+  private final ThreadPoolExecutor uploadExecutor;
+  private final boolean legacyInBackend;
+
+  /** Hashed upload in scratch space, not yet referenced or handed to the backend */
+  private record Staged(String fileName, long sizeBytes, Path temp) {}
+
+  /** Where to read a file from: a local path, or a URL the client should be redirected to */
+  public record Location(Path localPath, URI remoteUrl) {}
+
+  public ContentAddressedFileStore(
+      StoredBlobRepository storedBlobRepository,
+      PlatformTransactionManager transactionManager,
+      BlobStorageBackend backend,
+      @Value("${file.store.dir:uploads/blobs}") String rootDir,
+      @Value("${file.upload.threads:4}") int uploadThreads,
+      @Value("${file.upload.queue-capacity:100}") int uploadQueueCapacity,
+      @Value("${storage.legacy.in-backend:false}") boolean legacyInBackend) {
+    this.storedBlobRepository = storedBlobRepository;
+    this.legacyInBackend = legacyInBackend;
+    // Deletions run after the releasing transaction has committed, so they need one of their own
+    this.deleteTransaction = new TransactionTemplate(transactionManager);
+    this.deleteTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.backend = backend;
+    this.root = Paths.get(rootDir).toAbsolutePath().normalize();
+    // Scratch space for uploads; under the root so a local backend's rename stays on one volume
+    this.tempDirectory = root.resolve(".tmp");
+
+    try {
+      Files.createDirectories(this.tempDirectory);
+    } catch (Exception ex) {
+      throw new FileStorageException("Could not create the file store directory.", ex);
+    }
+
+    // Bounded pool for multi-file uploads; when saturated the request thread stores the file
+    // itself, which throttles uploaders instead of failing them
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.uploadExecutor =
+        new ThreadPoolExecutor(
+            uploadThreads,
+            uploadThreads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(uploadQueueCapacity),
+            runnable -> {
+              Thread thread = new Thread(runnable, "file-upload-" + threadNumber.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    uploadExecutor.shutdown();
+  }
+
+  /** Whether a public file name refers to a content-addressed blob rather than a legacy file */
+  public static boolean isBlobName(String fileName) {
+    return fileName != null && BLOB_NAME.matcher(fileName).matches();
+  }
+
+  public Path getRoot() {
+    return root;
+  }
+
+  /**
+   * Where to read a file from. Blobs are looked up in the backend; other names must be plain file
+   * names and are read from the given legacy directory, or from the backend's copy when this node
+   * does not have the file.
+   */
+  public Location locate(String fileName, Path legacyDirectory) {
+    if (!isBlobName(fileName)) {
+      Path local = legacyPath(fileName, legacyDirectory);
+      if (!legacyInBackend || Files.exists(local)) {
+        return new Location(local, null);
+      }
+      return locateKey(LEGACY_PREFIX + fileName, fileName);
+    }
+    return locateKey(keyFor(fileName), fileName);
+  }
+
+  private Location locateKey(String key, String fileName) {
+    return backend
+        .localPath(key)
+        .map(path -> new Location(path, null))
+        .or(() -> backend.presignedUrl(key).map(url -> new Location(null, url)))
+        .orElseThrow(() -> new FileStorageException("No way to read " + fileName));
+  }
+
+  public boolean exists(String fileName, Path legacyDirectory) {
+    if (!isBlobName(fileName)) {
+      if (Files.exists(legacyPath(fileName, legacyDirectory))) {
+        return true;
+      }
+      return legacyInBackend && backendExists(LEGACY_PREFIX + fileName);
+    }
+    return backendExists(keyFor(fileName));
+  }
+
+  private boolean backendExists(String key) {
+    try {
+      return backend.exists(key);
+    } catch (IOException ex) {
+      log.warn("Could not check {}: {}", key, ex.getMessage());
+      return false;
+    }
+  }
+
+  /** Read a blob's content */
+  public InputStream open(String fileName) throws IOException {
+    if (!isBlobName(fileName)) {
+      throw new FileStorageException("Not a stored blob: " + fileName);
+    }
+    return backend.open(keyFor(fileName));
+  }
+
+  /** Read a blob, or a legacy file from the given directory */
+  public InputStream open(String fileName, Path legacyDirectory) throws IOException {
+    if (!isBlobName(fileName)) {
+      Path local = legacyPath(fileName, legacyDirectory);
+      if (!legacyInBackend || Files.exists(local)) {
+        return Files.newInputStream(local);
+      }
+      return backend.open(LEGACY_PREFIX + fileName);
+    }
+    return open(fileName);
+  }
+
+  /** Scratch file for content that will be handed to {@link #putDerived} */
+  public Path createTempFile() throws IOException {
+    return Files.createTempFile(tempDirectory, "derived-", ".tmp");
+  }
+
+  /** Store a file derived from a blob (e.g. a thumbnail) next to it, consuming the source */
+  public void putDerived(String derivedFileName, Path source) throws IOException {
+    if (!isBlobName(derivedFileName)) {
+      throw new FileStorageException("Not a stored blob name: " + derivedFileName);
+    }
+    backend.put(
+        keyFor(derivedFileName), source, ImageServingService.contentTypeFor(derivedFileName));
+  }
+
+  /** Store one validated image and take a reference on it in the current transaction */
+  @Transactional
+  public String storeImage(MultipartFile file) {
+    Staged staged = stage(file);
+    try {
+      retain(staged);
+      publish(staged);
+      return staged.fileName();
+    } finally {
+      deleteTemp(staged);
+    }
+  }
+
+  /**
+   * Store several images in parallel and return their names in the same order. Each part is
+   * streamed to scratch space and hashed in parallel; references are then taken on the calling
+   * thread so they join its transaction, and the files are handed to the backend in parallel. If
+   * the transaction does not commit, callers discard the names with {@link #discardUnreferenced}.
+   * Called outside a transaction, the references commit with the files, and a caller whose own
+   * rows then fail gives them back with {@link #release}.
+   */
+  @Transactional
+  public List<String> storeImages(List<MultipartFile> files) {
+    List<CompletableFuture<Staged>> staging = new ArrayList<>(files.size());
+    for (MultipartFile file : files) {
+      staging.add(CompletableFuture.supplyAsync(() -> stage(file), uploadExecutor));
+    }
+
+    List<Staged> staged = new ArrayList<>(files.size());
+    RuntimeException failure = null;
+    for (CompletableFuture<Staged> future : staging) {
+      try {
+        staged.add(future.join());
+      } catch (CompletionException e) {
+        if (failure == null) {
+          failure = unwrap(e);
+        }
+      }
+    }
+
+    try {
+      if (failure != null) {
+        throw failure; // Nothing was referenced or published yet
+      }
+      staged.forEach(this::retain);
+
+      List<CompletableFuture<Void>> publishing = new ArrayList<>(staged.size());
+      for (Staged blob : staged) {
+        publishing.add(CompletableFuture.runAsync(() -> publish(blob), uploadExecutor));
+      }
+      for (CompletableFuture<Void> future : publishing) {
+        try {
+          future.join();
+        } catch (CompletionException e) {
+          if (failure == null) {
+            failure = unwrap(e);
+          }
+        }
+      }
+      List<String> fileNames = staged.stream().map(Staged::fileName).toList();
+      if (failure != null) {
+        // The references roll back with the caller; files published meanwhile go with them
+        afterRollback(() -> discardUnreferenced(fileNames));
+        throw failure;
+      }
+      return fileNames;
+    } finally {
+      staged.forEach(this::deleteTemp);
+    }
+  }
+
+  /**
+   * Drop a reference. When the last one goes, the file and its derivatives are deleted after the
+   * transaction commits, so a rollback never leaves a row pointing at a missing file.
+   */
+  @Transactional
+  public void release(String fileName, Path legacyDirectory) {
+    if (!isBlobName(fileName)) {
+      // Legacy files are never shared
+      Path directory = legacyPath(fileName, legacyDirectory).getParent();
+      afterCommit(() -> deleteLegacyFiles(directory, fileName));
+      return;
+    }
+    storedBlobRepository.decrementRefCount(fileName);
+    afterCommit(() -> deleteIfUnreferenced(fileName));
+  }
+
+  /**
+   * Delete blobs written for an upload that did not commit, unless another upload references the
+   * same content. Safe to call outside a transaction.
+   */
+  public void discardUnreferenced(List<String> fileNames) {
+    for (String fileName : fileNames) {
+      if (isBlobName(fileName)) {
+        deleteIfUnreferenced(fileName);
+      }
+    }
+  }
+
+  /**
+   * Delete a blob's file, derivatives and row if no reference is left, checked under the row lock.
+   * An upload of the same content either already holds the row (its reference is seen once it
+   * commits) or takes it after this deletion commits and then writes the file again.
+   *
+   * @return true if the blob was deleted
+   */
+  public boolean deleteIfUnreferenced(String fileName) {
+    try {
+      return Boolean.TRUE.equals(
+          deleteTransaction.execute(
+              status -> {
+                Optional<StoredBlob> blob = storedBlobRepository.findLockedByFileName(fileName);
+                if (blob.isPresent() && blob.get().getRefCount() > 0) {
+                  return false;
+                }
+                deleteBlob(fileName);
+                storedBlobRepository.deleteIfUnreferenced(fileName);
+                return true;
+              }));
+    } catch (Exception e) {
+      log.warn("Could not delete blob {}: {}", fileName, e.getMessage());
+      return false;
+    }
+  }
+
+  private void retain(Staged blob) {
+    storedBlobRepository.retain(blob.fileName(), blob.sizeBytes());
+  }
+
+  private Staged stage(MultipartFile file) {
+    String originalFileName = StringUtils.cleanPath(String.valueOf(file.getOriginalFilename()));
+
+    try (InputStream in = file.getInputStream()) {
+      // Type comes from the magic bytes, not the client supplied Content-Type or name
+      byte[] header = in.readNBytes(ImageTypeDetector.HEADER_LENGTH);
+      String fileExtension = ImageTypeDetector.detectExtension(header, header.length);
+      if (fileExtension == null) {
+        throw new FileStorageException(
+            "Only JPEG, PNG, GIF and WebP images are allowed: " + originalFileName);
+      }
+      return hash(new SequenceInputStream(new ByteArrayInputStream(header), in), fileExtension);
+    } catch (IOException ex) {
+      throw new FileStorageException(
+          "Could not store file " + originalFileName + ". Please try again!", ex);
+    }
+  }
+
+  /** Stream content to scratch space, hashing on the way */
+  private Staged hash(InputStream in, String extension) throws IOException {
+    Path temp = Files.createTempFile(tempDirectory, "upload-", ".tmp");
+    try {
+      MessageDigest digest = sha256();
+      long size;
+      try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+        size = in.transferTo(out);
+      }
+      return new Staged(HexFormat.of().formatHex(digest.digest()) + extension, size, temp);
+    } catch (IOException | RuntimeException ex) {
+      Files.deleteIfExists(temp);
+      throw ex;
+    }
+  }
+
+  /** Hand a staged file to the backend; must run after {@link #retain} took the row lock */
+  private void publish(Staged blob) {
+    String key = keyFor(blob.fileName());
+    try {
+      if (!backend.exists(key)) {
+        backend.put(key, blob.temp(), ImageServingService.contentTypeFor(blob.fileName()));
+      } else {
+        backend.touch(key);
+      }
+    } catch (IOException ex) {
+      throw new FileStorageException("Could not store file. Please try again!", ex);
+    }
+  }
+
+  private void deleteTemp(Staged blob) {
+    try {
+      Files.deleteIfExists(blob.temp());
+    } catch (IOException ex) {
+      log.warn("Could not delete temp file {}: {}", blob.temp(), ex.getMessage());
+    }
+  }
+
+  private static RuntimeException unwrap(CompletionException e) {
+    return e.getCause() instanceof RuntimeException runtime
+        ? runtime
+        : new FileStorageException("Could not store file", e.getCause());
+  }
+
+  /** Backend key of a blob or one of its derivatives: {@code ab/cd/abcd...ef.jpg} */
+  private static String keyFor(String fileName) {
+    return fileName.substring(0, 2) + "/" + fileName.substring(2, 4) + "/" + fileName;
+  }
+
+  private static Path legacyPath(String fileName, Path legacyDirectory) {
+    if (fileName == null
+        || fileName.isEmpty()
+        || fileName.contains("/")
+        || fileName.contains("\\")
+        || fileName.contains("..")) {
+      throw new FileStorageException("Invalid file name: " + fileName);
+    }
+    return legacyDirectory.resolve(fileName);
+  }
+
+  private void deleteBlob(String fileName) {
+    try {
+      backend.delete(keyFor(fileName));
+      for (ImageDerivativeService.Size size : ImageDerivativeService.Size.values()) {
+        backend.delete(keyFor(ImageDerivativeService.derivativeFileName(fileName, size)));
+      }
+    } catch (IOException ex) {
+      log.warn("Could not delete blob {}: {}", fileName, ex.getMessage());
+    }
+  }
+
+  private void deleteLegacyFiles(Path directory, String fileName) {
+    try {
+      Files.deleteIfExists(directory.resolve(fileName));
+      ImageDerivativeService.deleteDerivatives(directory, fileName);
+      if (legacyInBackend) {
+        backend.delete(LEGACY_PREFIX + fileName);
+        for (ImageDerivativeService.Size size : ImageDerivativeService.Size.values()) {
+          backend.delete(LEGACY_PREFIX + ImageDerivativeService.derivativeFileName(fileName, size));
+        }
+      }
+    } catch (IOException ex) {
+      log.warn("Could not delete file {}: {}", fileName, ex.getMessage());
+    }
+  }
+
+  /**
+   * Copy a pre-store file (or a derivative of one) from a legacy directory to the backend, unless
+   * the backend already has it. The local file is left in place.
+   *
+   * @return true if the file was copied
+   */
+  public boolean copyLegacyFile(Path file) throws IOException {
+    String fileName = file.getFileName().toString();
+    String key = LEGACY_PREFIX + fileName;
+    if (isBlobName(fileName) || backend.exists(key)) {
+      return false;
+    }
+    // The backend may consume its source, so it gets a scratch copy
+    Path temp = Files.createTempFile(tempDirectory, "legacy-", ".tmp");
+    try {
+      Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
+      backend.put(key, temp, ImageServingService.contentTypeFor(fileName));
+      return true;
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private static void afterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            action.run();
+          }
+        });
+  }
+
+  private static void afterRollback(Runnable action) {
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCompletion(int status) {
+            if (status != STATUS_COMMITTED) {
+              action.run();
+            }
+          }
+        });
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+}
@@ -2,10 +2,12 @@ package com.gege.activitypartner.service;
 
 import com.gege.activitypartner.dto.CoverImageDTO;
 import com.gege.activitypartner.entity.CoverImage;
+import com.gege.activitypartner.event.ImageStoredEvent;
 import com.gege.activitypartner.repository.CoverImageRepository;
 import java.util.List;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -17,6 +19,7 @@ public class CoverImageService {
 
   private final CoverImageRepository coverImageRepository;
   private final CoverImageStorageService coverImageStorageService;
+  private final ApplicationEventPublisher eventPublisher;
 
   @Transactional(readOnly = true)
   public List<CoverImageDTO> getAllAvailableCoverImages() {
@@ -36,6 +39,12 @@ public class CoverImageService {
     coverImage.setActive(true);
 
     CoverImage saved = coverImageRepository.save(coverImage);
+    eventPublisher.publishEvent(
+        new ImageStoredEvent(
+            ImageStoredEvent.Owner.COVER_IMAGE,
+            saved.getId(),
+            fileName,
+            imageUrl));
     return mapToDTO(saved);
   }
 
@@ -50,6 +59,12 @@ public class CoverImageService {
   }
 
   private CoverImageDTO mapToDTO(CoverImage image) {
-    return new CoverImageDTO(image.getId(), image.getImageUrl(), image.getDisplayName());
+    return new CoverImageDTO(
+        image.getId(),
+        image.getImageUrl(),
+        image.getDisplayName(),
+        image.getThumbnailUrl(),
+        image.getMediumUrl(),
+        image.getLargeUrl());
   }
 }
@@ -0,0 +1,274 @@
+package com.gege.activitypartner.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Appends crash reports as JSON lines to {@code crashes-<date>.json}. Request threads only
+ * serialize the report and put it on a lock-free queue; a single writer thread owns the open file
+ * channel, batches lines through a buffer and flushes it periodically. At the date boundary the
+ * finished file is gzipped to {@code crashes-<date>.json.gz}, and the oldest archives are deleted
+ * once the directory exceeds its size cap.
+ */
+@Service
+@Slf4j
+public class CrashLogAppender {
+
+  public static final String FILE_PREFIX = "crashes-";
+  public static final String FILE_SUFFIX = ".json";
+  public static final String ARCHIVE_SUFFIX = ".json.gz";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final ObjectMapper objectMapper;
+  private final Path directory;
+  private final long flushIntervalNanos;
+  private final int maxPending;
+  private final long maxTotalBytes;
+
+  private final Queue<byte[]> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pendingCount = new AtomicInteger();
+  private volatile boolean running = true;
+  private Thread writer;
+
+  // Owned by the writer thread
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private FileChannel channel;
+  private LocalDate currentDate;
+
+  public CrashLogAppender(
+      ObjectMapper objectMapper,
+      @Value("${crash-logs.dir:logs/crashes}") String directory,
+      @Value("${crash-logs.flush-ms:1000}") long flushMillis,
+      @Value("${crash-logs.max-pending:10000}") int maxPending,
+      @Value("${crash-logs.max-total-bytes:536870912}") long maxTotalBytes) {
+    this.objectMapper = objectMapper;
+    this.directory = Paths.get(directory);
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+    this.maxPending = maxPending;
+    this.maxTotalBytes = maxTotalBytes;
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  @PostConstruct
+  void start() throws IOException {
+    Files.createDirectories(directory);
+    writer = new Thread(this::writeLoop, "crash-log-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /** Stop accepting reports and write out everything still queued */
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    running = false;
+    LockSupport.unpark(writer);
+    writer.join(TimeUnit.SECONDS.toMillis(10));
+  }
+
+  /**
+   * Queue a crash report for writing
+   *
+   * @return false if the report was dropped because the writer is too far behind or stopped
+   */
+  public boolean append(Map<String, Object> crashData) throws JsonProcessingException {
+    byte[] line =
+        (objectMapper.writeValueAsString(crashData) + System.lineSeparator())
+            .getBytes(StandardCharsets.UTF_8);
+    if (!running || pendingCount.incrementAndGet() > maxPending) {
+      pendingCount.decrementAndGet();
+      return false;
+    }
+    pending.offer(line);
+    return true;
+  }
+
+  private void writeLoop() {
+    try {
+      archiveFinishedFiles();
+    } catch (Exception e) {
+      log.error("Failed to archive crash logs", e);
+    }
+
+    long nextFlush = System.nanoTime() + flushIntervalNanos;
+    while (running || !pending.isEmpty()) {
+      try {
+        byte[] line;
+        while ((line = pending.poll()) != null) {
+          pendingCount.decrementAndGet();
+          write(line);
+        }
+        if (System.nanoTime() - nextFlush >= 0 || !running) {
+          flush();
+          if (channel != null && !LocalDate.now().equals(currentDate)) {
+            // Quiet past midnight: archive yesterday now rather than on the next report
+            closeQuietly();
+            archiveFinishedFiles();
+          }
+          nextFlush = System.nanoTime() + flushIntervalNanos;
+        }
+        if (running) {
+          LockSupport.parkNanos(this, Math.max(0, nextFlush - System.nanoTime()));
+        }
+      } catch (Exception e) {
+        log.error("Error in crash log writer", e);
+        closeQuietly();
+        buffer.clear(); // Drops the unwritten lines rather than retrying them forever
+      }
+    }
+    closeQuietly();
+  }
+
+  private void write(byte[] line) throws IOException {
+    LocalDate today = LocalDate.now();
+    if (channel == null || !today.equals(currentDate)) {
+      rollOver(today);
+    }
+    if (line.length > buffer.remaining()) {
+      flush();
+    }
+    if (line.length > buffer.capacity()) {
+      channel.write(ByteBuffer.wrap(line));
+    } else {
+      buffer.put(line);
+    }
+  }
+
+  private void flush() throws IOException {
+    if (channel == null || buffer.position() == 0) {
+      return;
+    }
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  // Close the previous day's file, archive it and open today's
+  private void rollOver(LocalDate today) throws IOException {
+    if (channel != null) {
+      flush();
+      channel.force(false);
+      channel.close();
+      channel = null;
+      archiveFinishedFiles();
+    }
+    Files.createDirectories(directory);
+    channel =
+        FileChannel.open(
+            directory.resolve(FILE_PREFIX + today + FILE_SUFFIX),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+    currentDate = today;
+  }
+
+  // Gzip every plain file older than today, then enforce the size cap
+  private void archiveFinishedFiles() throws IOException {
+    String todayName = FILE_PREFIX + LocalDate.now() + FILE_SUFFIX;
+    for (Path file : listFiles()) {
+      String name = file.getFileName().toString();
+      if (name.endsWith(FILE_SUFFIX) && !name.equals(todayName)) {
+        compress(file);
+      }
+    }
+    enforceSizeCap(todayName);
+  }
+
+  private void compress(Path file) throws IOException {
+    String name = file.getFileName().toString();
+    String baseName = name.substring(0, name.length() - FILE_SUFFIX.length());
+    Path archive = directory.resolve(baseName + ARCHIVE_SUFFIX);
+    Path temp = directory.resolve(archive.getFileName() + ".tmp");
+    try (InputStream in = Files.newInputStream(file);
+        OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), BUFFER_SIZE)) {
+      in.transferTo(out);
+    }
+    Files.move(temp, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    Files.delete(file);
+    log.info("Archived crash log {}", archive.getFileName());
+  }
+
+  // Delete the oldest files until the directory fits the cap; today's file is always kept
+  private void enforceSizeCap(String todayName) throws IOException {
+    List<Path> files = listFiles();
+    long total = 0;
+    for (Path file : files) {
+      total += Files.size(file);
+    }
+    for (Path file : files) {
+      if (total <= maxTotalBytes) {
+        break;
+      }
+      if (file.getFileName().toString().equals(todayName)) {
+        continue;
+      }
+      long size = Files.size(file);
+      Files.delete(file);
+      total -= size;
+      log.info("Deleted crash log {} to stay under the size cap", file.getFileName());
+    }
+  }
+
+  // Crash log files, oldest first (names sort by date)
+  private List<Path> listFiles() throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (var stream = Files.list(directory)) {
+      stream
+          .filter(
+              p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(FILE_PREFIX)
+                    && (name.endsWith(FILE_SUFFIX) || name.endsWith(ARCHIVE_SUFFIX));
+              })
+          .sorted(Comparator.comparing((Path p) -> p.getFileName().toString()))
+          .forEach(files::add);
+    }
+    return files;
+  }
+
+  private void closeQuietly() {
+    if (channel == null) {
+      return;
+    }
+    try {
+      flush();
+      channel.force(false);
+      channel.close();
+    } catch (IOException e) {
+      log.error("Failed to close crash log file", e);
+    }
+    channel = null;
+  }
+}
@@ -0,0 +1,97 @@
+package com.gege.activitypartner.service;
+
+import com.gege.activitypartner.entity.DeviceToken;
+import com.gege.activitypartner.entity.User;
+import com.gege.activitypartner.exception.ResourceNotFoundException;
+import com.gege.activitypartner.repository.DeviceTokenRepository;
+import com.gege.activitypartner.repository.UserRepository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DeviceTokenService {
+
+  private final DeviceTokenRepository deviceTokenRepository;
+  private final UserRepository userRepository;
+
+  @Value("${notifications.device-token.stale-days:60}")
+  private int staleDays;
+
+  /**
+   * Register (or refresh) a push token for one of the user's devices. A token that was
+   * previously registered by another account is moved to the current user, since FCM tokens
+   * identify an app install rather than a person.
+   */
+  @Transactional
+  public void registerToken(Long userId, String token, String platform) {
+    User user =
+        userRepository
+            .findById(userId)
+            .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+
+    LocalDateTime now = LocalDateTime.now();
+    DeviceToken deviceToken = deviceTokenRepository.findByToken(token).orElseGet(DeviceToken::new);
+    deviceToken.setUser(user);
+    deviceToken.setToken(token);
+    if (platform != null && !platform.isBlank()) {
+      deviceToken.setPlatform(platform.toLowerCase());
+    }
+    deviceToken.setLastSeenAt(now);
+    deviceTokenRepository.save(deviceToken);
+
+    // Move the legacy single-device token into the registry so that device keeps receiving pushes
+    String legacyToken = user.getFcmToken();
+    if (legacyToken != null && !legacyToken.isEmpty()) {
+      if (!legacyToken.equals(token) && deviceTokenRepository.findByToken(legacyToken).isEmpty()) {
+        DeviceToken legacy = new DeviceToken();
+        legacy.setUser(user);
+        legacy.setToken(legacyToken);
+        legacy.setLastSeenAt(now);
+        deviceTokenRepository.save(legacy);
+      }
+      user.setFcmToken(null);
+      userRepository.save(user);
+    }
+  }
+
+  /** Get every push token registered for a user */
+  @Transactional(readOnly = true)
+  public List<String> getTokensForUser(Long userId) {
+    return deviceTokenRepository.findTokensByUserId(userId);
+  }
+
+  /** Delete tokens that FCM rejected as invalid so they are never retried */
+  @Transactional
+  public void removeInvalidTokens(Collection<String> tokens) {
+    if (tokens.isEmpty()) {
+      return;
+    }
+    int removed = deviceTokenRepository.deleteByTokenIn(tokens);
+    log.info("Pruned {} invalid device token(s)", removed);
+  }
+
+  /**
+   * Scheduled task that runs daily at 3:30 AM to expire tokens of devices that have not
+   * re-registered within the configured number of days. FCM itself treats such tokens as stale.
+   */
+  @Scheduled(cron = "0 30 3 * * ?")
+  @Transactional
+  public void purgeStaleTokens() {
+    try {
+      LocalDateTime cutoff = LocalDateTime.now().minusDays(staleDays);
+      int removed = deviceTokenRepository.deleteStaleTokens(cutoff);
+      log.info("Expired {} device token(s) not seen since {}", removed, cutoff);
+    } catch (Exception e) {
+      log.error("Error in purgeStaleTokens scheduler", e);
+    }
+  }
+}
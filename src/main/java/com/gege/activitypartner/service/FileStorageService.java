@@ -2,81 +2,105 @@ package com.gege.activitypartner.service;
 
 import com.gege.activitypartner.exception.FileStorageException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+/**
+ * User and gallery images, served from /api/users/images/{fileName}. New files go to the shared
+ * {@link ContentAddressedFileStore}; files uploaded before it are still read from the legacy
+ * directory.
+ */
 @Service
+@Slf4j
 public class FileStorageService {
 
-  private final Path fileStorageLocation;
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
 
-  public FileStorageService(@Value("${file.upload.dir}") String uploadDir) {
-    this.fileStorageLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
+  private final ContentAddressedFileStore fileStore;
+  private final Path legacyStorageLocation;
+
+  public FileStorageService(
+      ContentAddressedFileStore fileStore, @Value("${file.upload.dir}") String uploadDir) {
+    this.fileStore = fileStore;
+    this.legacyStorageLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
 
     try {
-      Files.createDirectories(this.fileStorageLocation);
+      Files.createDirectories(this.legacyStorageLocation);
     } catch (Exception ex) {
       throw new FileStorageException(
           "Could not create the directory where uploaded files will be stored.", ex);
     }
   }
 
-  /** Store a file and return the file path */
+  /** Store an image and return its file name */
   public String storeFile(MultipartFile file) {
-    // Normalize file name
-    String originalFileName = StringUtils.cleanPath(file.getOriginalFilename());
+    return fileStore.storeImage(file);
+  }
 
-    try {
-      // Check if the file's name contains invalid characters
-      if (originalFileName.contains("..")) {
-        throw new FileStorageException(
-            "Filename contains invalid path sequence: " + originalFileName);
-      }
+  /** Store several images in parallel and return their file names in the same order */
+  public List<String> storeImages(List<MultipartFile> files) {
+    return fileStore.storeImages(files);
+  }
 
-      // Validate file type (only images)
-      String contentType = file.getContentType();
-      if (contentType == null || !contentType.startsWith("image/")) {
-        throw new FileStorageException("Only image files are allowed");
-      }
+  /** Release a file by filename; it is removed from disk once nothing references it */
+  public void deleteFile(String fileName) {
+    fileStore.release(fileName, legacyStorageLocation);
+  }
 
-      // Generate unique filename to avoid collisions
-      String fileExtension = "";
-      int dotIndex = originalFileName.lastIndexOf('.');
-      if (dotIndex > 0) {
-        fileExtension = originalFileName.substring(dotIndex);
-      }
-      String fileName = UUID.randomUUID().toString() + fileExtension;
+  /** Remove files of an upload whose transaction rolled back */
+  public void deleteQuietly(List<String> fileNames) {
+    fileStore.discardUnreferenced(fileNames);
+  }
 
-      // Copy file to the target location (Replacing existing file with the same name)
-      Path targetLocation = this.fileStorageLocation.resolve(fileName);
-      Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+  /**
+   * Write files as a ZIP archive to the stream, using constant memory. Images are already
+   * compressed, so entries are DEFLATED at level 0: the CRC and sizes go into a data descriptor
+   * after the data, so each file is read once. Files that cannot be opened are skipped.
+   *
+   * @param entries archive entry name to stored file name, in archive order
+   */
+  public void writeZip(Map<String, String> entries, OutputStream out) throws IOException {
+    ZipOutputStream zip = new ZipOutputStream(out);
+    zip.setMethod(ZipOutputStream.DEFLATED);
+    zip.setLevel(Deflater.NO_COMPRESSION);
+    byte[] buffer = new byte[COPY_BUFFER_SIZE];
 
-      return fileName;
-    } catch (IOException ex) {
-      throw new FileStorageException(
-          "Could not store file " + originalFileName + ". Please try again!", ex);
-    }
-  }
+    for (Map.Entry<String, String> entry : entries.entrySet()) {
+      String fileName = entry.getValue();
+      InputStream in;
+      try {
+        in = fileStore.open(fileName, legacyStorageLocation);
+      } catch (IOException | FileStorageException e) {
+        log.warn("Skipping {} in ZIP export: {}", fileName, e.getMessage());
+        continue;
+      }
 
-  /** Delete a file by filename */
-  public void deleteFile(String fileName) {
-    try {
-      Path filePath = this.fileStorageLocation.resolve(fileName).normalize();
-      Files.deleteIfExists(filePath);
-    } catch (IOException ex) {
-      throw new FileStorageException("Could not delete file " + fileName, ex);
+      try (in) {
+        zip.putNextEntry(new ZipEntry(entry.getKey()));
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          zip.write(buffer, 0, read);
+        }
+        zip.closeEntry();
+      }
     }
+    zip.finish();
   }
 
-  /** Get the file storage location */
-  public Path getFileStorageLocation() {
-    return fileStorageLocation;
+  /** Directory of files uploaded before the content-addressed store */
+  public Path getLegacyStorageLocation() {
+    return legacyStorageLocation;
   }
 }
@@ -1,6 +1,7 @@
 package com.gege.activitypartner.service;
 
 import com.google.firebase.FirebaseApp;
+import com.google.firebase.IncomingHttpResponse;
 import com.google.firebase.messaging.*;
 import java.util.HashMap;
 import java.util.List;
@@ -12,17 +13,31 @@ import org.springframework.stereotype.Service;
 @Slf4j
 public class FirebaseMessagingService {
 
+  /** Outcome of a single-device send, used to prune tokens FCM no longer accepts */
+  public enum SendResult {
+    SENT, // Accepted by FCM
+    INVALID_TOKEN, // Token is unregistered or malformed and should be deleted
+    FAILED, // Transient or unknown failure, keep the token
+    SKIPPED // Firebase not initialized or empty token
+  }
+
   /** Send a notification to a single device */
   public boolean sendNotification(
       String fcmToken, String title, String body, Map<String, String> data) {
+    return sendToDevice(fcmToken, title, body, data) == SendResult.SENT;
+  }
+
+  /** Send a notification to a single device and classify the result */
+  public SendResult sendToDevice(
+      String fcmToken, String title, String body, Map<String, String> data) {
     if (FirebaseApp.getApps().isEmpty()) {
       log.warn("Firebase not initialized. Notification not sent: {}", title);
-      return false;
+      return SendResult.SKIPPED;
     }
 
     if (fcmToken == null || fcmToken.isEmpty()) {
       log.warn("FCM token is null or empty. Notification not sent: {}", title);
-      return false;
+      return SendResult.SKIPPED;
     }
 
     try {
@@ -44,15 +59,48 @@ public class FirebaseMessagingService {
           "Successfully sent notification to token: {}... Response: {}",
           fcmToken.substring(0, Math.min(10, fcmToken.length())),
           response);
-      return true;
+      return SendResult.SENT;
 
     } catch (FirebaseMessagingException e) {
+      SendResult result = classify(e);
       log.error(
-          "Failed to send notification to token: {}... Error: {}",
+          "Failed to send notification to token: {}... Error: {} ({})",
           fcmToken.substring(0, Math.min(10, fcmToken.length())),
-          e.getMessage());
+          e.getMessage(),
+          result);
+      return result;
+    }
+  }
+
+  /**
+   * Map an FCM error code to a send result. UNREGISTERED and SENDER_ID_MISMATCH mean the token
+   * will never work again. INVALID_ARGUMENT is also returned for payload problems (for example an
+   * oversized data map), so it only counts as a dead token when the error names the token field;
+   * otherwise pruning would wipe every valid device of the recipients.
+   */
+  private SendResult classify(FirebaseMessagingException e) {
+    MessagingErrorCode code = e.getMessagingErrorCode();
+    if (code == null) {
+      return SendResult.FAILED;
+    }
+    switch (code) {
+      case UNREGISTERED:
+      case SENDER_ID_MISMATCH:
+        return SendResult.INVALID_TOKEN;
+      case INVALID_ARGUMENT:
+        return namesTokenField(e) ? SendResult.INVALID_TOKEN : SendResult.FAILED;
+      default:
+        return SendResult.FAILED; // QUOTA_EXCEEDED, UNAVAILABLE, INTERNAL, ...
+    }
+  }
+
+  // BadRequest details carry fieldViolations with "field": "message.token" for a malformed token
+  private static boolean namesTokenField(FirebaseMessagingException e) {
+    IncomingHttpResponse response = e.getHttpResponse();
+    if (response == null || response.getContent() == null) {
       return false;
     }
+    return response.getContent().contains("\"message.token\"");
   }
 
   /** Send notification with default data (convenience method) */
@@ -0,0 +1,376 @@
+package com.gege.activitypartner.service;
+
+import com.gege.activitypartner.event.ImageStoredEvent;
+import com.gege.activitypartner.repository.ActivityPhotoRepository;
+import com.gege.activitypartner.repository.CoverImageRepository;
+import com.gege.activitypartner.repository.UserPhotoRepository;
+import jakarta.annotation.PreDestroy;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Generates fixed-size JPEG derivatives (thumb, medium, large) of uploaded images on a small
+ * bounded executor, stores them next to the original as {@code <name>_<size>.jpg} and records their
+ * URLs on the owning row. Until a derivative exists, requests for it fall back to the original.
+ * Derivatives known to exist are remembered for a while, so serving one does not cost a backend
+ * lookup (an S3 HEAD request) every time.
+ */
+@Service
+@Slf4j
+public class ImageDerivativeService {
+
+  /** Derivative sizes; the longest side is scaled down to {@link #maxDimension} */
+  public enum Size {
+    THUMB("thumb", 160),
+    MEDIUM("medium", 480),
+    LARGE("large", 1080);
+
+    private final String param;
+    private final int maxDimension;
+
+    Size(String param, int maxDimension) {
+      this.param = param;
+      this.maxDimension = maxDimension;
+    }
+
+    public String getParam() {
+      return param;
+    }
+
+    public int getMaxDimension() {
+      return maxDimension;
+    }
+
+    /** Parse the ?size= request parameter; empty for the original */
+    public static Optional<Size> fromParam(String param) {
+      if (param == null) {
+        return Optional.empty();
+      }
+      for (Size size : values()) {
+        if (size.param.equalsIgnoreCase(param)) {
+          return Optional.of(size);
+        }
+      }
+      return Optional.empty();
+    }
+  }
+
+  private final UserPhotoRepository userPhotoRepository;
+  private final ActivityPhotoRepository activityPhotoRepository;
+  private final CoverImageRepository coverImageRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final ContentAddressedFileStore fileStore;
+  private final ThreadPoolExecutor executor;
+  private final long existsTtlNanos;
+
+  // Derivative name -> System.nanoTime() it was last seen to exist, least recently used first
+  private final Map<String, Long> knownDerivatives;
+
+  /** File to serve for a request and whether the URL will always serve this exact content */
+  public record ResolvedImage(ContentAddressedFileStore.Location location, boolean isFinal) {}
+
+  @Value("${image.derivatives.jpeg-quality:0.82}")
+  private float jpegQuality;
+
+  // Uploads declaring more pixels than this are not decoded at all (decompression bombs)
+  @Value("${image.derivatives.max-source-pixels:150000000}")
+  private long maxSourcePixels;
+
+  public ImageDerivativeService(
+      UserPhotoRepository userPhotoRepository,
+      ActivityPhotoRepository activityPhotoRepository,
+      CoverImageRepository coverImageRepository,
+      TransactionTemplate transactionTemplate,
+      ContentAddressedFileStore fileStore,
+      @Value("${image.derivatives.threads:2}") int threads,
+      @Value("${image.derivatives.queue-capacity:200}") int queueCapacity,
+      @Value("${image.derivatives.exists-cache.max-entries:50000}") int maxKnownDerivatives,
+      @Value("${image.derivatives.exists-cache.ttl-seconds:600}") long existsTtlSeconds) {
+    this.userPhotoRepository = userPhotoRepository;
+    this.activityPhotoRepository = activityPhotoRepository;
+    this.coverImageRepository = coverImageRepository;
+    this.transactionTemplate = transactionTemplate;
+    this.fileStore = fileStore;
+    this.existsTtlNanos = TimeUnit.SECONDS.toNanos(existsTtlSeconds);
+    this.knownDerivatives =
+        Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxKnownDerivatives;
+              }
+            });
+
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "image-derivatives-" + threadNumber.incrementAndGet());
+              thread.setDaemon(true);
+              thread.setPriority(Thread.NORM_PRIORITY - 1);
+              return thread;
+            });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onImageStored(ImageStoredEvent event) {
+    try {
+      executor.execute(() -> generateDerivatives(event));
+    } catch (RejectedExecutionException e) {
+      // Serving falls back to the original, so a full queue only costs bandwidth
+      log.warn("Derivative queue full, skipping derivatives for {}", event.getFileName());
+    }
+  }
+
+  /** File name of a derivative, e.g. 3f2a...c1_thumb.jpg for 3f2a...c1.png */
+  public static String derivativeFileName(String fileName, Size size) {
+    int dot = fileName.lastIndexOf('.');
+    String base = dot > 0 ? fileName.substring(0, dot) : fileName;
+    return base + "_" + size.getParam() + ".jpg";
+  }
+
+  /** URL of a derivative, served by the same endpoint as the original */
+  public static String derivativeUrl(String originalUrl, Size size) {
+    return originalUrl + "?size=" + size.getParam();
+  }
+
+  /**
+   * Resolve the file to serve for a request: the derivative when a known size was asked for and
+   * has been generated, otherwise the original. The result is not final while the original stands
+   * in for a derivative, so clients re-request it soon instead of caching it under that URL.
+   */
+  public ResolvedImage resolve(String fileName, String sizeParam, Path legacyDirectory) {
+    Optional<Size> size = Size.fromParam(sizeParam);
+    if (size.isEmpty()) {
+      return new ResolvedImage(fileStore.locate(fileName, legacyDirectory), true);
+    }
+    String derivative = derivativeFileName(fileName, size.get());
+    if (derivativeExists(derivative, legacyDirectory)) {
+      return new ResolvedImage(fileStore.locate(derivative, legacyDirectory), true);
+    }
+    return new ResolvedImage(fileStore.locate(fileName, legacyDirectory), false);
+  }
+
+  /**
+   * Whether a derivative has been generated. Only hits are cached: a miss turns into a hit as soon
+   * as generation finishes. The TTL bounds how long a derivative deleted with its original (or on
+   * another node) can still be claimed to exist.
+   */
+  private boolean derivativeExists(String derivative, Path legacyDirectory) {
+    Long seenAt = knownDerivatives.get(derivative);
+    if (seenAt != null && System.nanoTime() - seenAt < existsTtlNanos) {
+      return true;
+    }
+    if (!fileStore.exists(derivative, legacyDirectory)) {
+      knownDerivatives.remove(derivative);
+      return false;
+    }
+    knownDerivatives.put(derivative, System.nanoTime());
+    return true;
+  }
+
+  private void generateDerivatives(ImageStoredEvent event) {
+    try {
+      BufferedImage image = decode(event.getFileName());
+      if (image == null) {
+        return;
+      }
+
+      for (Size size : Size.values()) {
+        BufferedImage scaled = scale(image, size.getMaxDimension());
+        Path temp = fileStore.createTempFile();
+        try {
+          writeJpeg(scaled, temp);
+          String derivative = derivativeFileName(event.getFileName(), size);
+          fileStore.putDerived(derivative, temp);
+          knownDerivatives.put(derivative, System.nanoTime());
+        } finally {
+          Files.deleteIfExists(temp);
+        }
+      }
+      recordUrls(event);
+      log.debug("Generated derivatives for {}", event.getFileName());
+    } catch (Exception e) {
+      log.error("Failed to generate derivatives for {}: {}", event.getFileName(), e.getMessage());
+    }
+  }
+
+  /**
+   * Decode an untrusted upload. The dimensions are read from the header before any pixel data, so
+   * a small file claiming a huge canvas (e.g. a 50k x 50k PNG) is refused instead of allocating
+   * gigabytes. Large sources are subsampled while decoding, so the raster held in memory is only
+   * about twice the largest derivative.
+   *
+   * @return null if the file is not a readable image or is over the pixel budget
+   */
+  private BufferedImage decode(String fileName) throws IOException {
+    try (InputStream in = fileStore.open(fileName);
+        ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+      Iterator<ImageReader> readers = stream != null ? ImageIO.getImageReaders(stream) : null;
+      if (readers == null || !readers.hasNext()) {
+        log.info("No ImageIO reader for {}, serving original only", fileName);
+        return null;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(stream, true, true);
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        if (width <= 0 || height <= 0 || (long) width * height > maxSourcePixels) {
+          log.warn(
+              "Image {} is {}x{}, over the {} pixel budget; serving original only",
+              fileName,
+              width,
+              height,
+              maxSourcePixels);
+          return null;
+        }
+
+        ImageReadParam param = reader.getDefaultReadParam();
+        int step = Math.max(1, Math.max(width, height) / (2 * Size.LARGE.getMaxDimension()));
+        if (step > 1) {
+          param.setSourceSubsampling(step, step, 0, 0);
+        }
+        return reader.read(0, param);
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  private void recordUrls(ImageStoredEvent event) {
+    if (event.getOwnerId() == null) {
+      return;
+    }
+    String thumb = derivativeUrl(event.getOriginalUrl(), Size.THUMB);
+    String medium = derivativeUrl(event.getOriginalUrl(), Size.MEDIUM);
+    String large = derivativeUrl(event.getOriginalUrl(), Size.LARGE);
+    Long id = event.getOwnerId();
+
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          switch (event.getOwner()) {
+            case USER_PHOTO:
+              userPhotoRepository.updateDerivativeUrls(id, thumb, medium, large);
+              break;
+            case ACTIVITY_PHOTO:
+              activityPhotoRepository.updateDerivativeUrls(id, thumb, medium, large);
+              break;
+            case COVER_IMAGE:
+              coverImageRepository.updateDerivativeUrls(id, thumb, medium, large);
+              break;
+            default:
+              break;
+          }
+        });
+  }
+
+  /**
+   * Scale so the longest side fits maxDimension (never upscaling), halving repeatedly first so
+   * bilinear filtering keeps detail on large reductions. Transparency is flattened onto white.
+   */
+  private BufferedImage scale(BufferedImage source, int maxDimension) {
+    int width = source.getWidth();
+    int height = source.getHeight();
+    double ratio = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+    int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+    int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+
+    // Halve towards the target; the last step (or the only one when not shrinking) is exact
+    BufferedImage current = source;
+    int currentWidth = width;
+    int currentHeight = height;
+    do {
+      currentWidth = Math.max(targetWidth, currentWidth / 2);
+      currentHeight = Math.max(targetHeight, currentHeight / 2);
+      current = draw(current, currentWidth, currentHeight);
+    } while (currentWidth > targetWidth || currentHeight > targetHeight);
+    return current;
+  }
+
+  private BufferedImage draw(BufferedImage source, int width, int height) {
+    BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = target.createGraphics();
+    try {
+      g.setRenderingHint(
+          RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      g.setColor(Color.WHITE);
+      g.fillRect(0, 0, width, height);
+      g.drawImage(source, 0, 0, width, height, null);
+    } finally {
+      g.dispose();
+    }
+    return target;
+  }
+
+  private void writeJpeg(BufferedImage image, Path target) throws IOException {
+    Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+    if (!writers.hasNext()) {
+      throw new IOException("No JPEG writer available");
+    }
+    ImageWriter writer = writers.next();
+    try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(jpegQuality);
+      param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+      writer.setOutput(out);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+  }
+
+  /** Delete all derivatives of a legacy file, ignoring ones that were never generated */
+  public static void deleteDerivatives(Path directory, String fileName) {
+    for (Size size : Size.values()) {
+      try {
+        Files.deleteIfExists(directory.resolve(derivativeFileName(fileName, size)));
+      } catch (IOException e) {
+        log.warn("Could not delete {} derivative of {}: {}", size, fileName, e.getMessage());
+      }
+    }
+  }
+}
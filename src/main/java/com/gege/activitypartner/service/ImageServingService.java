@@ -0,0 +1,361 @@
+package com.gege.activitypartner.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+/**
+ * Serves stored image files with long-lived caching headers, conditional GET (ETag and
+ * Last-Modified) and single byte-range support. Small hot files are kept in a size-bounded LRU;
+ * larger ones are streamed with sendfile when the container supports it and FileChannel transfer
+ * otherwise, so the bytes never pass through a heap buffer of their full size.
+ */
+@Service
+@Slf4j
+public class ImageServingService {
+
+  // Stored file names are content hashes or random UUIDs, so a URL never changes content
+  private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+  // Used when a derivative was requested but the original is served in its place for now
+  private static final String FALLBACK_CACHE_CONTROL = "public, max-age=60";
+
+  // Tomcat NIO sendfile request attributes
+  private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+  // bytes=<first>-[<last>] or bytes=-<suffix>; anything else, including lists, is ignored
+  private static final Pattern SINGLE_BYTE_RANGE =
+      Pattern.compile("bytes=(\\d*)-(\\d*)", Pattern.CASE_INSENSITIVE);
+
+  private final long maxCachedFileBytes;
+  private final long maxCacheBytes;
+  private final Counter cacheHits;
+  private final Counter cacheMisses;
+
+  // Access-ordered so iteration starts at the least recently served file
+  private final LinkedHashMap<Path, CachedFile> cache = new LinkedHashMap<>(64, 0.75f, true);
+  private long cachedBytes;
+
+  public ImageServingService(
+      MeterRegistry meterRegistry,
+      @Value("${image.serving.cache.max-file-bytes:65536}") long maxCachedFileBytes,
+      @Value("${image.serving.cache.max-bytes:33554432}") long maxCacheBytes) {
+    this.maxCachedFileBytes = maxCachedFileBytes;
+    this.maxCacheBytes = maxCacheBytes;
+    this.cacheHits =
+        Counter.builder("images.memory.cache")
+            .tag("result", "hit")
+            .description("Image requests answered from the in-memory cache")
+            .register(meterRegistry);
+    this.cacheMisses =
+        Counter.builder("images.memory.cache")
+            .tag("result", "miss")
+            .description("Cacheable image requests that had to read the file")
+            .register(meterRegistry);
+    Gauge.builder("images.memory.cache.bytes", this, ImageServingService::getCachedBytes)
+        .description("Bytes held by the in-memory image cache")
+        .register(meterRegistry);
+  }
+
+  private record CachedFile(long size, long lastModified, byte[] content) {}
+
+  /** Byte range of a partial response, both ends inclusive */
+  private record ByteRange(long start, long end) {
+
+    long length() {
+      return end - start + 1;
+    }
+  }
+
+  /** Marker from {@link #parseRange} for a well-formed range that selects no bytes (416) */
+  private static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+  /**
+   * Serve a resolved image: redirect to the storage backend when it hands out direct URLs,
+   * otherwise write the local file.
+   */
+  public void serve(
+      ImageDerivativeService.ResolvedImage image,
+      HttpServletRequest request,
+      HttpServletResponse response)
+      throws IOException {
+    ContentAddressedFileStore.Location location = image.location();
+    if (location.remoteUrl() != null) {
+      // Presigned URLs expire, so only the redirect itself is cached, briefly
+      response.setStatus(HttpServletResponse.SC_FOUND);
+      response.setHeader(HttpHeaders.LOCATION, location.remoteUrl().toString());
+      response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=60");
+      return;
+    }
+    serve(location.localPath(), image.isFinal(), request, response);
+  }
+
+  /**
+   * Write the file to the response, answering 304, 206 and 416 where the request headers ask
+   * for it.
+   *
+   * @param immutable false when the file stands in for a derivative that does not exist yet, so
+   *     the client re-requests it soon instead of caching the original under the derivative URL
+   */
+  public void serve(
+      Path file, boolean immutable, HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    } catch (NoSuchFileException e) {
+      evict(file);
+      response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+    if (!attributes.isRegularFile()) {
+      response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+
+    long size = attributes.size();
+    long lastModified = attributes.lastModifiedTime().toMillis();
+    String eTag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+    String fileName = file.getFileName().toString();
+
+    response.setHeader(
+        HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE_CACHE_CONTROL : FALLBACK_CACHE_CONTROL);
+    response.setHeader(HttpHeaders.ETAG, eTag);
+    response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+    response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+    if (isNotModified(request, eTag, lastModified)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    response.setContentType(contentTypeFor(fileName));
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"");
+
+    ByteRange range = null;
+    String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+    if (rangeHeader != null && isIfRangeSatisfied(request, eTag, lastModified)) {
+      range = parseRange(rangeHeader, size);
+      if (range == UNSATISFIABLE) {
+        response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+        return;
+      }
+    }
+
+    long start = 0;
+    long length = size;
+    if (range != null) {
+      start = range.start();
+      length = range.length();
+      response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+      response.setHeader(
+          HttpHeaders.CONTENT_RANGE, "bytes " + range.start() + "-" + range.end() + "/" + size);
+    } else {
+      response.setStatus(HttpServletResponse.SC_OK);
+    }
+    response.setContentLengthLong(length);
+
+    if ("HEAD".equals(request.getMethod())) {
+      return;
+    }
+
+    if (size <= maxCachedFileBytes) {
+      byte[] content = cachedContent(file, size, lastModified);
+      response.getOutputStream().write(content, (int) start, (int) length);
+      return;
+    }
+
+    if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+      // The container writes the file straight from the page cache after this request returns
+      request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+      request.setAttribute(SENDFILE_START, start);
+      request.setAttribute(SENDFILE_END, start + length);
+      return;
+    }
+
+    transfer(file, start, length, response.getOutputStream());
+  }
+
+  /** Content type of a stored image, derived from its extension */
+  public static String contentTypeFor(String fileName) {
+    String lowerName = fileName.toLowerCase(Locale.ROOT);
+    if (lowerName.endsWith(".png")) {
+      return "image/png";
+    } else if (lowerName.endsWith(".jpg") || lowerName.endsWith(".jpeg")) {
+      return "image/jpeg";
+    } else if (lowerName.endsWith(".gif")) {
+      return "image/gif";
+    } else if (lowerName.endsWith(".webp")) {
+      return "image/webp";
+    }
+    return "application/octet-stream";
+  }
+
+  /** Drop a file from the memory cache, e.g. after it was deleted from disk */
+  public void evict(Path file) {
+    synchronized (cache) {
+      CachedFile removed = cache.remove(file);
+      if (removed != null) {
+        cachedBytes -= removed.content().length;
+      }
+    }
+  }
+
+  long getCachedBytes() {
+    synchronized (cache) {
+      return cachedBytes;
+    }
+  }
+
+  private byte[] cachedContent(Path file, long size, long lastModified) throws IOException {
+    synchronized (cache) {
+      CachedFile cached = cache.get(file);
+      if (cached != null && cached.size() == size && cached.lastModified() == lastModified) {
+        cacheHits.increment();
+        return cached.content();
+      }
+    }
+    cacheMisses.increment();
+
+    // Read outside the lock; two concurrent misses for the same file just both read it
+    byte[] content = Files.readAllBytes(file);
+    if (content.length != size) {
+      return content; // Changed between stat and read, serve it but don't cache a torn view
+    }
+    synchronized (cache) {
+      CachedFile previous = cache.put(file, new CachedFile(size, lastModified, content));
+      if (previous != null) {
+        cachedBytes -= previous.content().length;
+      }
+      cachedBytes += content.length;
+      Iterator<Map.Entry<Path, CachedFile>> eldest = cache.entrySet().iterator();
+      while (cachedBytes > maxCacheBytes && eldest.hasNext()) {
+        cachedBytes -= eldest.next().getValue().content().length;
+        eldest.remove();
+      }
+    }
+    return content;
+  }
+
+  private void transfer(Path file, long start, long length, ServletOutputStream out)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      WritableByteChannel target = Channels.newChannel(out);
+      long position = start;
+      long remaining = length;
+      while (remaining > 0) {
+        long written = channel.transferTo(position, remaining, target);
+        if (written <= 0) {
+          break; // File shrank underneath us
+        }
+        position += written;
+        remaining -= written;
+      }
+    }
+  }
+
+  private boolean isNotModified(HttpServletRequest request, String eTag, long lastModified) {
+    String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+    if (ifNoneMatch != null) {
+      // If-None-Match takes precedence over If-Modified-Since
+      return matchesETag(ifNoneMatch, eTag);
+    }
+    long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+    // HTTP dates have second precision
+    return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+  }
+
+  private boolean isIfRangeSatisfied(HttpServletRequest request, String eTag, long lastModified) {
+    String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+    if (ifRange == null) {
+      return true;
+    }
+    if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+      return ifRange.equals(eTag);
+    }
+    long ifRangeDate = dateHeader(request, HttpHeaders.IF_RANGE);
+    return ifRangeDate >= 0 && lastModified / 1000 == ifRangeDate / 1000;
+  }
+
+  private static boolean matchesETag(String header, String eTag) {
+    for (String candidate : header.split(",")) {
+      String value = candidate.trim();
+      if (value.startsWith("W/")) {
+        value = value.substring(2); // Weak comparison is fine for conditional GET
+      }
+      if (value.equals("*") || value.equals(eTag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static long dateHeader(HttpServletRequest request, String name) {
+    try {
+      return request.getDateHeader(name);
+    } catch (IllegalArgumentException e) {
+      return -1; // Unparseable dates are ignored as if absent
+    }
+  }
+
+  /**
+   * Parse a single "bytes=" range. Returns null when the header is to be ignored and the full
+   * file served: multi-range requests (which the spec allows answering in full) and syntactically
+   * invalid ranges such as {@code bytes=abc} or {@code bytes=5-3}. Returns {@link #UNSATISFIABLE}
+   * only for a well-formed range that selects nothing, i.e. one starting at or past the end.
+   */
+  private static ByteRange parseRange(String header, long size) {
+    Matcher matcher = SINGLE_BYTE_RANGE.matcher(header.trim());
+    if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+      return null;
+    }
+    try {
+      String first = matcher.group(1);
+      String last = matcher.group(2);
+      if (first.isEmpty()) {
+        // Suffix range: the final N bytes
+        long suffix = Long.parseLong(last);
+        if (suffix == 0 || size == 0) {
+          return UNSATISFIABLE;
+        }
+        return new ByteRange(Math.max(0, size - suffix), size - 1);
+      }
+      long start = Long.parseLong(first);
+      if (!last.isEmpty() && Long.parseLong(last) < start) {
+        return null;
+      }
+      if (start >= size) {
+        return UNSATISFIABLE;
+      }
+      long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+      return new ByteRange(start, end);
+    } catch (NumberFormatException e) {
+      return null; // Too many digits for a long
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package com.gege.activitypartner.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Copies pre-store (UUID-named) uploads from this node's legacy directories into the blob storage
+ * backend, so replicas without the upload volume can serve them. Runs once per startup on a
+ * background thread when {@code storage.legacy.in-backend} is on. Files the backend already has
+ * are skipped, so on nodes without the volume, or after the first complete run, it does next to
+ * nothing.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.legacy.in-backend", havingValue = "true")
+@Slf4j
+public class LegacyUploadCopier {
+
+  private final ContentAddressedFileStore fileStore;
+  private final List<Path> legacyDirectories;
+
+  public LegacyUploadCopier(
+      ContentAddressedFileStore fileStore,
+      FileStorageService fileStorageService,
+      CoverImageStorageService coverImageStorageService) {
+    this.fileStore = fileStore;
+    this.legacyDirectories =
+        List.of(
+            fileStorageService.getLegacyStorageLocation(),
+            coverImageStorageService.getLegacyStorageLocation());
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void copyInBackground() {
+    Thread thread = new Thread(this::copyAll, "legacy-upload-copy");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** Copy every legacy file not yet in the backend; a file that fails is retried next startup */
+  public void copyAll() {
+    int copied = 0;
+    int failed = 0;
+    for (Path directory : legacyDirectories) {
+      try (Stream<Path> files = Files.list(directory)) {
+        for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+          try {
+            if (fileStore.copyLegacyFile(file)) {
+              copied++;
+            }
+          } catch (IOException | RuntimeException e) {
+            failed++;
+            log.warn("Could not copy legacy file {} to the backend: {}", file, e.getMessage());
+          }
+        }
+      } catch (IOException e) {
+        log.error("Could not list legacy directory {}", directory, e);
+      }
+    }
+    log.info("Legacy upload copy finished: {} copied, {} failed", copied, failed);
+  }
+}
@@ -0,0 +1,79 @@
+package com.gege.activitypartner.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/** Stores blobs under {@code file.store.dir}; the default backend, tied to a single volume */
+@Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local", matchIfMissing = true)
+public class LocalBlobStorageBackend implements BlobStorageBackend {
+
+  private final Path root;
+
+  public LocalBlobStorageBackend(@Value("${file.store.dir:uploads/blobs}") String rootDir) {
+    this.root = Paths.get(rootDir).toAbsolutePath().normalize();
+  }
+
+  @Override
+  public void put(String key, Path source, String contentType) throws IOException {
+    Path target = resolve(key);
+    Files.createDirectories(target.getParent());
+    try {
+      // Rename within the volume, so readers never see a partial file
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (FileAlreadyExistsException e) {
+      // Identical content stored concurrently, keep that copy
+    }
+  }
+
+  @Override
+  public boolean exists(String key) {
+    return Files.exists(resolve(key));
+  }
+
+  @Override
+  public void touch(String key) throws IOException {
+    try {
+      Files.setLastModifiedTime(resolve(key), FileTime.from(Instant.now()));
+    } catch (NoSuchFileException e) {
+      // Deleted concurrently; nothing to protect
+    }
+  }
+
+  @Override
+  public InputStream open(String key) throws IOException {
+    return Files.newInputStream(resolve(key));
+  }
+
+  @Override
+  public void delete(String key) throws IOException {
+    Files.deleteIfExists(resolve(key));
+  }
+
+  @Override
+  public Optional<Path> localPath(String key) {
+    return Optional.of(resolve(key));
+  }
+
+  @Override
+  public Optional<URI> presignedUrl(String key) {
+    return Optional.empty();
+  }
+
+  private Path resolve(String key) {
+    return root.resolve(key).normalize();
+  }
+}
@@ -0,0 +1,134 @@
+package com.gege.activitypartner.service;
+
+import com.gege.activitypartner.exception.TooManyRequestsException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Fixed-window limits on password attempts, checked before any hashing is done. Every attempt
+ * counts against the client IP, registrations included; only failed logins count against the
+ * account, and a successful login clears them. Counters live in memory and the least recently used keys are evicted first.
+ * IP and account windows are kept in separate maps, so a flood from many addresses cannot evict
+ * the failure count of the account it is guessing passwords for.
+ */
+@Service
+@Slf4j
+public class LoginAttemptThrottle {
+
+  private static final class Window {
+    long startMillis;
+    int count;
+  }
+
+  private final int maxAttemptsPerIp;
+  private final long ipWindowMillis;
+  private final int maxFailuresPerAccount;
+  private final long accountWindowMillis;
+  private final Map<String, Window> ipWindows;
+  private final Map<String, Window> accountWindows;
+
+  public LoginAttemptThrottle(
+      @Value("${auth.throttle.ip.max-attempts:20}") int maxAttemptsPerIp,
+      @Value("${auth.throttle.ip.window-seconds:60}") long ipWindowSeconds,
+      @Value("${auth.throttle.account.max-failures:5}") int maxFailuresPerAccount,
+      @Value("${auth.throttle.account.window-seconds:900}") long accountWindowSeconds,
+      @Value("${auth.throttle.ip.max-keys:100000}") int maxIpKeys,
+      @Value("${auth.throttle.account.max-keys:100000}") int maxAccountKeys) {
+    this.maxAttemptsPerIp = maxAttemptsPerIp;
+    this.ipWindowMillis = ipWindowSeconds * 1000;
+    this.maxFailuresPerAccount = maxFailuresPerAccount;
+    this.accountWindowMillis = accountWindowSeconds * 1000;
+    this.ipWindows = lruMap(maxIpKeys);
+    this.accountWindows = lruMap(maxAccountKeys);
+  }
+
+  private static Map<String, Window> lruMap(int maxKeys) {
+    return Collections.synchronizedMap(
+        new LinkedHashMap<>(256, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Window> eldest) {
+            return size() > maxKeys;
+          }
+        });
+  }
+
+  /**
+   * Count an attempt from the IP and make sure neither the IP nor the account is over its limit
+   *
+   * @param scope separates account namespaces, e.g. "user" or "admin"
+   * @throws TooManyRequestsException if the attempt must not be processed
+   */
+  public void checkAttempt(String scope, String clientIp, String account) {
+    long now = System.currentTimeMillis();
+    synchronized (accountWindows) {
+      Window accountWindow =
+          current(accountWindows, accountKey(scope, account), accountWindowMillis, now);
+      if (accountWindow.count >= maxFailuresPerAccount) {
+        log.warn("Login throttled for {} account after {} failures", scope, accountWindow.count);
+        throw limited(accountWindow, accountWindowMillis, now);
+      }
+    }
+
+    checkIpAttempt(clientIp, now);
+  }
+
+  /**
+   * Count an attempt from the IP alone, for endpoints that hash a password without an account to
+   * throttle, such as registration
+   *
+   * @throws TooManyRequestsException if the attempt must not be processed
+   */
+  public void checkIpAttempt(String clientIp) {
+    checkIpAttempt(clientIp, System.currentTimeMillis());
+  }
+
+  private void checkIpAttempt(String clientIp, long now) {
+    synchronized (ipWindows) {
+      Window ipWindow = current(ipWindows, clientIp, ipWindowMillis, now);
+      if (ipWindow.count >= maxAttemptsPerIp) {
+        log.warn("Password attempts throttled for IP {}", clientIp);
+        throw limited(ipWindow, ipWindowMillis, now);
+      }
+      ipWindow.count++;
+    }
+  }
+
+  /** Count a wrong password or unknown account */
+  public void recordFailure(String scope, String account) {
+    long now = System.currentTimeMillis();
+    synchronized (accountWindows) {
+      current(accountWindows, accountKey(scope, account), accountWindowMillis, now).count++;
+    }
+  }
+
+  /** Forget the account's failures after a successful login */
+  public void recordSuccess(String scope, String account) {
+    accountWindows.remove(accountKey(scope, account));
+  }
+
+  private static Window current(
+      Map<String, Window> windows, String key, long windowMillis, long now) {
+    Window window = windows.computeIfAbsent(key, k -> new Window());
+    if (now - window.startMillis >= windowMillis) {
+      window.startMillis = now;
+      window.count = 0;
+    }
+    return window;
+  }
+
+  private static String accountKey(String scope, String account) {
+    return scope + ":" + (account == null ? "" : account.trim().toLowerCase(Locale.ROOT));
+  }
+
+  private static TooManyRequestsException limited(Window window, long windowMillis, long now) {
+    long retryAfterMillis = window.startMillis + windowMillis - now;
+    return new TooManyRequestsException(
+        "Too many attempts, please try again later",
+        Math.max(1, (retryAfterMillis + 999) / 1000));
+  }
+}
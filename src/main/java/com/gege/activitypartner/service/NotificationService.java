@@ -9,6 +9,7 @@ import com.gege.activitypartner.repository.NotificationRepository;
 import com.gege.activitypartner.repository.UserRepository;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +27,7 @@ public class NotificationService {
   private final NotificationRepository notificationRepository;
   private final UserRepository userRepository;
   private final FirebaseMessagingService firebaseMessagingService;
+  private final DeviceTokenService deviceTokenService;
   private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
   /** Create and send a notification to a user */
@@ -52,13 +54,10 @@ public class NotificationService {
 
     notification = notificationRepository.save(notification);
 
-    // Send push notification if user has the relevant preference enabled and has an FCM token
-    if (user.getFcmToken() != null
-        && !user.getFcmToken().isEmpty()
-        && isNotificationAllowed(user, type)) {
+    // Send push notification to all of the user's devices if the preference is enabled
+    if (isNotificationAllowed(user, type)) {
       Map<String, String> data = buildNotificationData(type, activityId, participantId, reviewId);
-      boolean sent =
-          firebaseMessagingService.sendNotification(user.getFcmToken(), title, message, data);
+      boolean sent = sendToAllDevices(user, title, message, data);
       notification.setIsSent(sent);
       notificationRepository.save(notification);
     }
@@ -66,6 +65,41 @@ public class NotificationService {
     return notification;
   }
 
+  /**
+   * Fan a push out to every registered device of the user. Tokens that FCM reports as invalid are
+   * pruned so they are not retried on the next notification.
+   *
+   * @return true if at least one device accepted the push
+   */
+  private boolean sendToAllDevices(
+      User user, String title, String message, Map<String, String> data) {
+    List<String> tokens = new ArrayList<>(deviceTokenService.getTokensForUser(user.getId()));
+    String legacyToken = user.getFcmToken();
+    boolean hasLegacyToken =
+        legacyToken != null && !legacyToken.isEmpty() && !tokens.contains(legacyToken);
+    if (hasLegacyToken) {
+      tokens.add(legacyToken);
+    }
+
+    boolean sent = false;
+    List<String> invalidTokens = new ArrayList<>();
+    for (String token : tokens) {
+      FirebaseMessagingService.SendResult result =
+          firebaseMessagingService.sendToDevice(token, title, message, data);
+      if (result == FirebaseMessagingService.SendResult.SENT) {
+        sent = true;
+      } else if (result == FirebaseMessagingService.SendResult.INVALID_TOKEN) {
+        invalidTokens.add(token);
+      }
+    }
+
+    if (hasLegacyToken && invalidTokens.remove(legacyToken)) {
+      userRepository.clearFcmToken(user.getId());
+    }
+    deviceTokenService.removeInvalidTokens(invalidTokens);
+    return sent;
+  }
+
   /** Check whether a notification type is allowed by the user's preferences */
   private boolean isNotificationAllowed(User user, NotificationType type) {
     if (!Boolean.TRUE.equals(user.getNotificationsEnabled())) {
@@ -187,17 +221,10 @@ public class NotificationService {
     notificationRepository.delete(notification);
   }
 
-  /** Update user FCM token */
-  @Transactional
-  public void updateFcmToken(Long userId, String fcmToken) {
-    User user =
-        userRepository
-            .findById(userId)
-            .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
-    user.setFcmToken(fcmToken);
-    userRepository.save(user);
-    log.info("Updated FCM token for user: {}", userId);
+  /** Register an FCM token for one of the user's devices */
+  public void updateFcmToken(Long userId, String fcmToken, String platform) {
+    deviceTokenService.registerToken(userId, fcmToken, platform);
+    log.info("Registered FCM device token for user: {}", userId);
   }
 
   /** Update notification preferences */
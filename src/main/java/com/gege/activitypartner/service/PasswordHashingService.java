@@ -0,0 +1,117 @@
+package com.gege.activitypartner.service;
+
+import com.gege.activitypartner.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs BCrypt hashing and verification on a small dedicated pool. Each hash costs tens of
+ * milliseconds of CPU, so a login flood on request threads would starve the rest of the API; here
+ * at most {@code threads} hashes run at once, a bounded queue absorbs short bursts and anything
+ * beyond that is refused straight away with 429.
+ */
+@Service
+@Slf4j
+public class PasswordHashingService {
+
+  private final PasswordEncoder passwordEncoder;
+  private final ThreadPoolExecutor executor;
+  private final long timeoutMillis;
+  private final Counter rejected;
+
+  public PasswordHashingService(
+      PasswordEncoder passwordEncoder,
+      MeterRegistry meterRegistry,
+      @Value("${auth.hashing.threads:2}") int threads,
+      @Value("${auth.hashing.queue-capacity:32}") int queueCapacity,
+      @Value("${auth.hashing.timeout-ms:5000}") long timeoutMillis) {
+    this.passwordEncoder = passwordEncoder;
+    this.timeoutMillis = timeoutMillis;
+
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    this.rejected =
+        Counter.builder("auth.hashing.rejected")
+            .description("Password hashes refused because the hashing pool was saturated")
+            .register(meterRegistry);
+    Gauge.builder("auth.hashing.queue.size", executor, e -> e.getQueue().size())
+        .description("Password hashes waiting for a hashing thread")
+        .register(meterRegistry);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  /** Hash a new password */
+  public String encode(CharSequence rawPassword) {
+    return run(() -> passwordEncoder.encode(rawPassword));
+  }
+
+  /** Check a password against its stored hash */
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    return run(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+  }
+
+  private <T> T run(Callable<T> task) {
+    Future<T> future;
+    try {
+      future = executor.submit(task);
+    } catch (RejectedExecutionException e) {
+      rejected.increment();
+      log.warn("Password hashing pool saturated, refusing request");
+      throw busy();
+    }
+
+    try {
+      return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      // Waited in the queue too long; the client retries instead of holding the request thread
+      future.cancel(true);
+      rejected.increment();
+      throw busy();
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while hashing password", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new IllegalStateException("Password hashing failed", e.getCause());
+    }
+  }
+
+  private static TooManyRequestsException busy() {
+    return new TooManyRequestsException("Server is busy, please try again shortly", 1);
+  }
+}
@@ -5,24 +5,44 @@ import com.gege.activitypartner.entity.RefreshToken;
 import com.gege.activitypartner.entity.User;
 import com.gege.activitypartner.exception.ResourceNotFoundException;
 import com.gege.activitypartner.repository.RefreshTokenRepository;
+import com.gege.activitypartner.util.ClientIpResolver;
+import com.gege.activitypartner.util.TokenDigest;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class RefreshTokenService {
 
   private final RefreshTokenRepository refreshTokenRepository;
   private final JwtUtil jwtUtil;
+  private final TransactionTemplate transactionTemplate;
+
+  // Last-used times waiting to be written, by token id; a refresh only records a time here
+  private final Map<Long, LocalDateTime> pendingLastUsed = new ConcurrentHashMap<>();
 
   @Value("${jwt.refresh-expiration}")
   private Long refreshExpiration;
 
+  @Value("${refresh-token.last-used.interval-minutes:15}")
+  private long lastUsedIntervalMinutes;
+
+  @Value("${refresh-token.purge.chunk-size:1000}")
+  private int purgeChunkSize;
+
   // Create and save refresh token
   @Transactional
   public RefreshToken createRefreshToken(User user, HttpServletRequest request) {
@@ -32,6 +52,7 @@ public class RefreshTokenService {
     // Create refresh token entity
     RefreshToken refreshToken = new RefreshToken();
     refreshToken.setToken(tokenString);
+    refreshToken.setTokenHash(TokenDigest.sha256Hex(tokenString));
     refreshToken.setUser(user);
     refreshToken.setExpiryDate(LocalDateTime.now().plusSeconds(refreshExpiration / 1000));
     refreshToken.setIsActive(true);
@@ -47,15 +68,18 @@ public class RefreshTokenService {
 
   // Find refresh token by token string
   public RefreshToken findByToken(String token) {
-    return refreshTokenRepository
-        .findByToken(token)
-        .orElseThrow(() -> new ResourceNotFoundException("Refresh token not found"));
+    RefreshToken refreshToken =
+        refreshTokenRepository
+            .findByTokenHash(TokenDigest.sha256Hex(token))
+            .orElseThrow(() -> new ResourceNotFoundException("Refresh token not found"));
+    refreshToken.setToken(token);
+    return refreshToken;
   }
 
   // Verify if refresh token is valid
   public RefreshToken verifyExpiration(RefreshToken token) {
+    // Expired rows are removed by the purge job
     if (token.getExpiryDate().isBefore(LocalDateTime.now())) {
-      refreshTokenRepository.delete(token);
       throw new RuntimeException("Refresh token expired. Please login again.");
     }
 
@@ -63,9 +87,12 @@ public class RefreshTokenService {
       throw new RuntimeException("Refresh token is no longer active. Please login again.");
     }
 
-    // Update last used time
-    token.setLastUsedAt(LocalDateTime.now());
-    refreshTokenRepository.save(token);
+    // Record last used time, written behind at most once per interval per token
+    LocalDateTime now = LocalDateTime.now();
+    LocalDateTime lastUsed = token.getLastUsedAt();
+    if (lastUsed == null || lastUsed.plusMinutes(lastUsedIntervalMinutes).isBefore(now)) {
+      pendingLastUsed.put(token.getId(), now);
+    }
 
     return token;
   }
@@ -73,7 +100,7 @@ public class RefreshTokenService {
   // Deactivate specific refresh token (logout from one device)
   @Transactional
   public void deactivateToken(String token) {
-    refreshTokenRepository.deactivateToken(token);
+    refreshTokenRepository.deactivateToken(TokenDigest.sha256Hex(token));
   }
 
   // Deactivate all user tokens (logout from all devices)
@@ -87,10 +114,51 @@ public class RefreshTokenService {
     return refreshTokenRepository.findByUserAndIsActiveTrue(user);
   }
 
-  // Delete expired tokens (scheduled task)
-  @Transactional
+  /** Write the coalesced last-used times of refreshed tokens, every minute and on shutdown */
+  @Scheduled(fixedDelayString = "${refresh-token.last-used.flush-ms:60000}")
+  @PreDestroy
+  public void flushLastUsed() {
+    if (pendingLastUsed.isEmpty()) {
+      return;
+    }
+    try {
+      transactionTemplate.executeWithoutResult(
+          status -> {
+            for (Map.Entry<Long, LocalDateTime> entry : pendingLastUsed.entrySet()) {
+              refreshTokenRepository.updateLastUsedAt(entry.getKey(), entry.getValue());
+              // Keeps a newer time recorded while flushing for the next run
+              pendingLastUsed.remove(entry.getKey(), entry.getValue());
+            }
+          });
+    } catch (Exception e) {
+      log.error("Error in flushLastUsed scheduler", e);
+    }
+  }
+
+  /**
+   * Scheduled task that runs daily at 3:45 AM to delete expired and deactivated tokens. Rows are
+   * deleted in chunks, each in its own transaction, so the purge never holds long locks on the
+   * table the refresh endpoint reads.
+   */
+  @Scheduled(cron = "${refresh-token.purge.cron:0 45 3 * * ?}")
   public void deleteExpiredTokens() {
-    refreshTokenRepository.deleteExpiredTokens(LocalDateTime.now());
+    try {
+      LocalDateTime now = LocalDateTime.now();
+      int total = 0;
+      List<Long> ids;
+      do {
+        ids = refreshTokenRepository.findPurgeableIds(now, PageRequest.of(0, purgeChunkSize));
+        if (!ids.isEmpty()) {
+          List<Long> chunk = ids;
+          Integer deleted =
+              transactionTemplate.execute(status -> refreshTokenRepository.deleteByIdIn(chunk));
+          total += deleted != null ? deleted : 0;
+        }
+      } while (ids.size() == purgeChunkSize);
+      log.info("Purged {} expired or deactivated refresh token(s)", total);
+    } catch (Exception e) {
+      log.error("Error in deleteExpiredTokens scheduler", e);
+    }
   }
 
   // Extract device information from request
@@ -112,10 +180,6 @@ public class RefreshTokenService {
 
   // Extract IP address from request
   private String extractIpAddress(HttpServletRequest request) {
-    String ipAddress = request.getHeader("X-Forwarded-For");
-    if (ipAddress == null || ipAddress.isEmpty()) {
-      ipAddress = request.getRemoteAddr();
-    }
-    return ipAddress;
+    return ClientIpResolver.resolve(request);
   }
 }
@@ -0,0 +1,146 @@
+package com.gege.activitypartner.service;
+
+import com.gege.activitypartner.config.RateLimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Token buckets for the rate-limited routes, implemented as GCRA: each bucket is a single
+ * AtomicLong holding the time at which it would be full again, updated with compare-and-set. A
+ * check is therefore one lookup in a striped ConcurrentHashMap plus one CAS, with no locks. Buckets
+ * that have fully refilled carry no state worth keeping and are swept periodically.
+ *
+ * <p>Each route has its own bounded map: when it is still full after a sweep, callers without a
+ * bucket are refused (fail closed) rather than growing it, so a flood of new client keys cannot
+ * exhaust the heap. Because the maps are separate, a flood against one route (say /api/logs)
+ * only locks new clients out of that route, never out of login.
+ */
+@Service
+@Slf4j
+public class RequestRateLimiter {
+
+  /** A configured policy with its limits converted to nanoseconds, and its client buckets */
+  public static final class Route {
+    private final String name;
+    private final long intervalNanos; // Time to earn one request
+    private final long toleranceNanos; // How far ahead of schedule a burst may run
+    private final int maxKeys;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastEarlySweep = new AtomicLong(System.nanoTime());
+    private final Counter rejected;
+    private final Counter overflowRejected;
+
+    private Route(
+        String name,
+        RateLimitProperties.Policy policy,
+        int defaultMaxKeys,
+        MeterRegistry meterRegistry) {
+      this.name = name;
+      long periodNanos = policy.getPeriod().toNanos();
+      this.intervalNanos = Math.max(1, periodNanos / Math.max(1, policy.getLimit()));
+      this.toleranceNanos = intervalNanos * Math.max(0, policy.getBurst() - 1);
+      this.maxKeys = policy.getMaxKeys() != null ? policy.getMaxKeys() : defaultMaxKeys;
+      this.rejected =
+          Counter.builder("rate.limit.rejected")
+              .tag("policy", name)
+              .description("Requests refused with 429 by the rate limiter")
+              .register(meterRegistry);
+      this.overflowRejected =
+          Counter.builder("rate.limit.overflow")
+              .tag("policy", name)
+              .description("New clients refused because the policy's bucket map was full")
+              .register(meterRegistry);
+    }
+
+    public String getName() {
+      return name;
+    }
+  }
+
+  private final boolean enabled;
+  private final Map<String, Route> routesByPath = new HashMap<>();
+  private final List<Route> routes = new ArrayList<>();
+
+  public RequestRateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+    this.enabled = properties.isEnabled();
+    properties
+        .getPolicies()
+        .forEach(
+            (name, policy) -> {
+              Route route = new Route(name, policy, properties.getMaxKeys(), meterRegistry);
+              routes.add(route);
+              for (String path : policy.getPaths()) {
+                routesByPath.put(path, route);
+              }
+            });
+    log.info("Rate limiting {} for {}", enabled ? "enabled" : "disabled", routesByPath.keySet());
+  }
+
+  /** Policy that applies to a request path, or null if the path is not limited */
+  public Route routeFor(String path) {
+    return enabled ? routesByPath.get(path) : null;
+  }
+
+  /**
+   * Take one request from the client's bucket for a route
+   *
+   * @param clientKey identifies the caller, e.g. "user:42" or "ip:203.0.113.7"
+   * @return 0 if the request may proceed, otherwise nanoseconds until it would be allowed
+   */
+  public long tryAcquire(Route route, String clientKey) {
+    long now = System.nanoTime();
+    AtomicLong bucket = route.buckets.get(clientKey);
+    if (bucket == null) {
+      if (route.buckets.size() >= route.maxKeys) {
+        sweepEarly(route, now);
+        if (route.buckets.size() >= route.maxKeys) {
+          // Every tracked client is still mid-window; retry once a bucket could have refilled
+          route.overflowRejected.increment();
+          route.rejected.increment();
+          return route.intervalNanos;
+        }
+      }
+      bucket = route.buckets.computeIfAbsent(clientKey, k -> new AtomicLong(now));
+    }
+
+    while (true) {
+      long fullAt = bucket.get();
+      long wait = fullAt - route.toleranceNanos - now;
+      if (wait > 0) {
+        route.rejected.increment();
+        return wait;
+      }
+      if (bucket.compareAndSet(fullAt, Math.max(fullAt, now) + route.intervalNanos)) {
+        return 0;
+      }
+    }
+  }
+
+  // Sweep a route on the request path when its map is full, but at most once per second
+  private static void sweepEarly(Route route, long now) {
+    long last = route.lastEarlySweep.get();
+    if (now - last > 1_000_000_000L && route.lastEarlySweep.compareAndSet(last, now)) {
+      sweep(route);
+    }
+  }
+
+  /** Drop buckets that have fully refilled; a new bucket for the same client starts full anyway */
+  @Scheduled(fixedDelayString = "${rate-limit.sweep-ms:60000}")
+  public void sweep() {
+    routes.forEach(RequestRateLimiter::sweep);
+  }
+
+  private static void sweep(Route route) {
+    long now = System.nanoTime();
+    route.buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+  }
+}
@@ -0,0 +1,172 @@
+package com.gege.activitypartner.service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+/**
+ * Stores blobs in an S3-compatible bucket (AWS S3, MinIO, ...) so any number of replicas can
+ * serve uploads. Reads are handed to clients as presigned URLs, keeping image bytes off the app
+ * nodes. Set {@code storage.s3.endpoint} and {@code storage.s3.path-style-access=true} for MinIO.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3")
+@Slf4j
+public class S3BlobStorageBackend implements BlobStorageBackend {
+
+  // Keys are content hashes, so objects never change once written
+  private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+  private final S3Client s3Client;
+  private final S3Presigner presigner;
+  private final String bucket;
+  private final String prefix;
+  private final Duration presignTtl;
+
+  public S3BlobStorageBackend(
+      @Value("${storage.s3.bucket}") String bucket,
+      @Value("${storage.s3.prefix:}") String prefix,
+      @Value("${storage.s3.region:us-east-1}") String region,
+      @Value("${storage.s3.endpoint:}") String endpoint,
+      @Value("${storage.s3.path-style-access:false}") boolean pathStyleAccess,
+      @Value("${storage.s3.access-key:}") String accessKey,
+      @Value("${storage.s3.secret-key:}") String secretKey,
+      @Value("${storage.s3.presign-ttl:15m}") Duration presignTtl)
+      throws URISyntaxException {
+    this.bucket = bucket;
+    this.prefix = prefix.isEmpty() || prefix.endsWith("/") ? prefix : prefix + "/";
+    this.presignTtl = presignTtl;
+
+    AwsCredentialsProvider credentials =
+        accessKey.isEmpty()
+            ? DefaultCredentialsProvider.create()
+            : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+    S3Configuration serviceConfiguration =
+        S3Configuration.builder().pathStyleAccessEnabled(pathStyleAccess).build();
+
+    var clientBuilder =
+        S3Client.builder()
+            .region(Region.of(region))
+            .credentialsProvider(credentials)
+            .serviceConfiguration(serviceConfiguration);
+    var presignerBuilder =
+        S3Presigner.builder()
+            .region(Region.of(region))
+            .credentialsProvider(credentials)
+            .serviceConfiguration(serviceConfiguration);
+    if (!endpoint.isEmpty()) {
+      URI endpointUri = new URI(endpoint);
+      clientBuilder.endpointOverride(endpointUri);
+      presignerBuilder.endpointOverride(endpointUri);
+    }
+    this.s3Client = clientBuilder.build();
+    this.presigner = presignerBuilder.build();
+    log.info("Using S3 blob storage: bucket={}, endpoint={}", bucket, endpoint);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    presigner.close();
+    s3Client.close();
+  }
+
+  @Override
+  public void put(String key, Path source, String contentType) throws IOException {
+    try {
+      s3Client.putObject(
+          request ->
+              request
+                  .bucket(bucket)
+                  .key(prefix + key)
+                  .contentType(contentType)
+                  .cacheControl(IMMUTABLE_CACHE_CONTROL),
+          RequestBody.fromFile(source));
+    } catch (SdkException e) {
+      throw new IOException("Could not upload " + key, e);
+    } finally {
+      Files.deleteIfExists(source);
+    }
+  }
+
+  @Override
+  public boolean exists(String key) throws IOException {
+    try {
+      s3Client.headObject(request -> request.bucket(bucket).key(prefix + key));
+      return true;
+    } catch (S3Exception e) {
+      if (e.statusCode() == 404) {
+        return false;
+      }
+      throw new IOException("Could not check " + key, e);
+    } catch (SdkException e) {
+      throw new IOException("Could not check " + key, e);
+    }
+  }
+
+  @Override
+  public void touch(String key) {
+    // Remote buckets are not walked by the orphan collector
+  }
+
+  @Override
+  public InputStream open(String key) throws IOException {
+    try {
+      return s3Client.getObject(request -> request.bucket(bucket).key(prefix + key));
+    } catch (SdkException e) {
+      throw new IOException("Could not read " + key, e);
+    }
+  }
+
+  @Override
+  public void delete(String key) throws IOException {
+    try {
+      s3Client.deleteObject(request -> request.bucket(bucket).key(prefix + key));
+    } catch (SdkException e) {
+      throw new IOException("Could not delete " + key, e);
+    }
+  }
+
+  @Override
+  public Optional<Path> localPath(String key) {
+    return Optional.empty();
+  }
+
+  @Override
+  public Optional<URI> presignedUrl(String key) {
+    try {
+      return Optional.of(
+          presigner
+              .presignGetObject(
+                  request ->
+                      request
+                          .signatureDuration(presignTtl)
+                          .getObjectRequest(get -> get.bucket(bucket).key(prefix + key)))
+              .url()
+              .toURI());
+    } catch (URISyntaxException e) {
+      log.error("Presigned URL for {} is not a valid URI: {}", key, e.getMessage());
+      return Optional.empty();
+    }
+  }
+}
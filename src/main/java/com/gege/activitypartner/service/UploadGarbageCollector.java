@@ -0,0 +1,346 @@
+package com.gege.activitypartner.service;
+
+import com.gege.activitypartner.dto.FileReference;
+import com.gege.activitypartner.dto.UploadGcReport;
+import com.gege.activitypartner.entity.StoredBlob;
+import com.gege.activitypartner.repository.ActivityPhotoRepository;
+import com.gege.activitypartner.repository.ActivityRepository;
+import com.gege.activitypartner.repository.CoverImageRepository;
+import com.gege.activitypartner.repository.StoredBlobRepository;
+import com.gege.activitypartner.repository.UserPhotoRepository;
+import com.gege.activitypartner.repository.UserRepository;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Finds uploaded files that no database row references any more (replaced profile images,
+ * deleted users and activities, failed deletes) and quarantines or deletes them. Directories are
+ * walked as a stream and references are read in keyset pages, so memory grows with the number of
+ * referenced files rather than with the size of the upload volume. Files younger than the grace
+ * period are never touched, which covers uploads whose transaction has not committed yet.
+ *
+ * <p>Content-addressed blobs can be re-uploaded at any moment, so they are only removed under
+ * their {@code stored_blobs} row lock, after re-checking the count and the modification time
+ * (a duplicate upload touches the file after taking that lock).
+ */
+@Service
+@Slf4j
+public class UploadGarbageCollector {
+
+  public enum Mode {
+    REPORT, // Only count orphans
+    QUARANTINE, // Move orphans aside so they can be restored
+    DELETE
+  }
+
+  private static final int PAGE_SIZE = 1000;
+
+  // <base>_<size>.jpg derivatives belong to the original with the same base
+  private static final Pattern DERIVATIVE =
+      Pattern.compile("(.+)_(" + derivativeSizes() + ")\\.jpg");
+
+  private final UserRepository userRepository;
+  private final UserPhotoRepository userPhotoRepository;
+  private final ActivityPhotoRepository activityPhotoRepository;
+  private final ActivityRepository activityRepository;
+  private final CoverImageRepository coverImageRepository;
+  private final StoredBlobRepository storedBlobRepository;
+  private final TransactionTemplate blobTransaction;
+  private final List<Path> roots = new ArrayList<>();
+  private final Path quarantineDirectory;
+  private final AtomicBoolean running = new AtomicBoolean();
+
+  @Value("${uploads.gc.enabled:true}")
+  private boolean enabled;
+
+  @Value("${uploads.gc.mode:QUARANTINE}")
+  private Mode scheduledMode;
+
+  @Value("${uploads.gc.grace-hours:24}")
+  private int graceHours;
+
+  private volatile UploadGcReport lastReport;
+
+  public UploadGarbageCollector(
+      UserRepository userRepository,
+      UserPhotoRepository userPhotoRepository,
+      ActivityPhotoRepository activityPhotoRepository,
+      ActivityRepository activityRepository,
+      CoverImageRepository coverImageRepository,
+      StoredBlobRepository storedBlobRepository,
+      PlatformTransactionManager transactionManager,
+      FileStorageService fileStorageService,
+      CoverImageStorageService coverImageStorageService,
+      ContentAddressedFileStore fileStore,
+      @Value("${storage.backend:local}") String storageBackend,
+      @Value("${uploads.gc.quarantine-dir:uploads/quarantine}") String quarantineDir) {
+    this.userRepository = userRepository;
+    this.userPhotoRepository = userPhotoRepository;
+    this.activityPhotoRepository = activityPhotoRepository;
+    this.activityRepository = activityRepository;
+    this.coverImageRepository = coverImageRepository;
+    this.storedBlobRepository = storedBlobRepository;
+    this.blobTransaction = new TransactionTemplate(transactionManager);
+    this.blobTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.quarantineDirectory = Paths.get(quarantineDir).toAbsolutePath().normalize();
+
+    roots.add(fileStorageService.getLegacyStorageLocation());
+    roots.add(coverImageStorageService.getLegacyStorageLocation());
+    // Remote backends are not walked; only blobs kept on this node's disk are collected
+    if ("local".equals(storageBackend)) {
+      roots.add(fileStore.getRoot());
+    }
+  }
+
+  /** Scheduled task that runs daily at 4:15 AM */
+  @Scheduled(cron = "${uploads.gc.cron:0 15 4 * * ?}")
+  public void scheduledCollect() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      collect(scheduledMode);
+    } catch (Exception e) {
+      log.error("Error in upload garbage collector", e);
+    }
+  }
+
+  /** Last completed run, or null if none has finished since startup */
+  public UploadGcReport getLastReport() {
+    return lastReport;
+  }
+
+  /**
+   * Run one collection pass.
+   *
+   * @throws IllegalStateException if a pass is already running
+   */
+  public UploadGcReport collect(Mode mode) {
+    if (!running.compareAndSet(false, true)) {
+      throw new IllegalStateException("Upload garbage collection is already running");
+    }
+    try {
+      UploadGcReport report = new UploadGcReport();
+      report.setMode(mode.name());
+      report.setStartedAt(LocalDateTime.now());
+
+      // Anything modified after this instant may belong to a reference we have not loaded
+      Instant cutoff = Instant.now().minusSeconds(graceHours * 3600L);
+      Set<String> referenced = loadReferencedBases();
+      report.setReferencedFiles(referenced.size());
+
+      for (Path root : roots) {
+        if (Files.isDirectory(root)) {
+          collectRoot(root, referenced, cutoff, mode, report);
+        }
+      }
+
+      report.setFinishedAt(LocalDateTime.now());
+      lastReport = report;
+      log.info(
+          "Upload GC ({}): scanned {}, orphaned {}, reclaimed {} bytes, failed {}",
+          mode,
+          report.getScannedFiles(),
+          report.getOrphanedFiles(),
+          report.getReclaimedBytes(),
+          report.getFailedFiles());
+      return report;
+    } finally {
+      running.set(false);
+    }
+  }
+
+  private void collectRoot(
+      Path root, Set<String> referenced, Instant cutoff, Mode mode, UploadGcReport report) {
+    try (Stream<Path> files = Files.walk(root)) {
+      files
+          .filter(file -> !file.startsWith(quarantineDirectory))
+          .forEach(file -> inspect(root, file, referenced, cutoff, mode, report));
+    } catch (IOException | UncheckedIOException e) {
+      log.error("Upload GC could not walk {}: {}", root, e.getMessage());
+    }
+  }
+
+  private void inspect(
+      Path root,
+      Path file,
+      Set<String> referenced,
+      Instant cutoff,
+      Mode mode,
+      UploadGcReport report) {
+    BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    } catch (IOException e) {
+      return; // Deleted while walking
+    }
+    if (!attributes.isRegularFile()) {
+      return;
+    }
+    report.setScannedFiles(report.getScannedFiles() + 1);
+
+    if (attributes.lastModifiedTime().toInstant().isAfter(cutoff)) {
+      return;
+    }
+    String fileName = file.getFileName().toString();
+    // Leftover temp files are orphans by definition; everything else must be referenced
+    boolean tempFile = file.getParent().getFileName().toString().equals(".tmp");
+    if (!tempFile && referenced.contains(fileBase(fileName))) {
+      return;
+    }
+
+    report.setOrphanedFiles(report.getOrphanedFiles() + 1);
+    if (mode == Mode.REPORT) {
+      report.setReclaimedBytes(report.getReclaimedBytes() + attributes.size());
+      return;
+    }
+
+    try {
+      boolean removed =
+          !tempFile && isStoredBlob(fileName)
+              ? removeBlob(root, file, fileName, cutoff, mode)
+              : remove(root, file, mode);
+      if (removed) {
+        report.setReclaimedBytes(report.getReclaimedBytes() + attributes.size());
+      }
+    } catch (Exception e) {
+      report.setFailedFiles(report.getFailedFiles() + 1);
+      log.warn("Upload GC could not remove {}: {}", file, e.getMessage());
+    }
+  }
+
+  /** An original content-addressed blob, which has its own stored_blobs row */
+  private static boolean isStoredBlob(String fileName) {
+    return ContentAddressedFileStore.isBlobName(fileName)
+        && !DERIVATIVE.matcher(fileName).matches();
+  }
+
+  /**
+   * Remove an unreferenced blob while holding its row lock, so a concurrent upload of the same
+   * content either waits for the removal and writes the file again, or has already touched the
+   * file and is skipped here.
+   */
+  private boolean removeBlob(Path root, Path file, String fileName, Instant cutoff, Mode mode) {
+    return Boolean.TRUE.equals(
+        blobTransaction.execute(
+            status -> {
+              Optional<StoredBlob> blob = storedBlobRepository.findLockedByFileName(fileName);
+              if (blob.isPresent() && blob.get().getRefCount() > 0) {
+                log.warn(
+                    "Upload GC kept {}: no row points at it but its count is {}",
+                    fileName,
+                    blob.get().getRefCount());
+                return false;
+              }
+              try {
+                if (!Files.exists(file)
+                    || Files.getLastModifiedTime(file).toInstant().isAfter(cutoff)) {
+                  return false;
+                }
+                remove(root, file, mode);
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+              storedBlobRepository.deleteIfUnreferenced(fileName);
+              return true;
+            }));
+  }
+
+  private boolean remove(Path root, Path file, Mode mode) throws IOException {
+    if (mode == Mode.QUARANTINE) {
+      Path target = quarantineDirectory.resolve(root.getFileName()).resolve(root.relativize(file));
+      Files.createDirectories(target.getParent());
+      Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+      return true;
+    }
+    return Files.deleteIfExists(file);
+  }
+
+  /** File name bases referenced by any row, read table by table in keyset pages */
+  private Set<String> loadReferencedBases() {
+    Set<String> bases = new HashSet<>();
+    addReferences(bases, userRepository::findFileReferencesAfter);
+    addReferences(bases, userPhotoRepository::findFileReferencesAfter);
+    addReferences(bases, activityPhotoRepository::findFileReferencesAfter);
+    addReferences(bases, activityRepository::findFileReferencesAfter);
+    addReferences(bases, coverImageRepository::findFileReferencesAfter);
+    return bases;
+  }
+
+  private void addReferences(
+      Set<String> bases, BiFunction<Long, Pageable, List<FileReference>> pageQuery) {
+    long afterId = 0;
+    Pageable page = PageRequest.of(0, PAGE_SIZE);
+    while (true) {
+      List<FileReference> references = pageQuery.apply(afterId, page);
+      for (FileReference reference : references) {
+        bases.add(urlBase(reference.getUrl()));
+      }
+      if (references.size() < PAGE_SIZE) {
+        return;
+      }
+      afterId = references.get(references.size() - 1).getId();
+    }
+  }
+
+  /** Base name of the file a URL points at: /api/users/images/abc.png?size=thumb -> abc */
+  private static String urlBase(String url) {
+    String path = url;
+    int query = path.indexOf('?');
+    if (query >= 0) {
+      path = path.substring(0, query);
+    }
+    return stripExtension(path.substring(path.lastIndexOf('/') + 1));
+  }
+
+  /** Base name of a stored file, mapping derivatives to their original */
+  private static String fileBase(String fileName) {
+    Matcher derivative = DERIVATIVE.matcher(fileName);
+    if (derivative.matches()) {
+      return derivative.group(1);
+    }
+    return stripExtension(fileName);
+  }
+
+  private static String stripExtension(String fileName) {
+    int dot = fileName.lastIndexOf('.');
+    return dot > 0 ? fileName.substring(0, dot) : fileName;
+  }
+
+  private static String derivativeSizes() {
+    StringBuilder sizes = new StringBuilder();
+    for (ImageDerivativeService.Size size : ImageDerivativeService.Size.values()) {
+      if (sizes.length() > 0) {
+        sizes.append('|');
+      }
+      sizes.append(size.getParam());
+    }
+    return sizes.toString();
+  }
+}
@@ -0,0 +1,79 @@
+package com.gege.activitypartner.service;
+
+import com.gege.activitypartner.entity.UserAccessChange;
+import com.gege.activitypartner.event.UserAccessChangedEvent;
+import com.gege.activitypartner.repository.UserAccessChangeRepository;
+import java.time.LocalDateTime;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Carries UserAccessChangedEvent to every application instance. The event is recorded in {@code
+ * user_access_changes} inside the transaction that made the change, and each instance polls the
+ * table and evicts the users it finds from its UserStatusCache. A revoked token is therefore
+ * refused everywhere within one poll interval instead of after the cache TTL.
+ *
+ * <p>Each poll looks back a little further than the previous one, so a change whose transaction
+ * committed after its timestamp was taken (or on a node with a slightly different clock) is still
+ * seen; evicting a user twice only costs one extra lookup.
+ */
+@Service
+@Slf4j
+public class UserAccessChangeFeed {
+
+  private final UserAccessChangeRepository changeRepository;
+  private final UserStatusCache userStatusCache;
+  private final long overlapSeconds;
+  private final long retentionMinutes;
+
+  private LocalDateTime lastPollAt = LocalDateTime.now();
+
+  public UserAccessChangeFeed(
+      UserAccessChangeRepository changeRepository,
+      UserStatusCache userStatusCache,
+      @Value("${user.access-changes.poll-overlap-seconds:10}") long overlapSeconds,
+      @Value("${user.access-changes.retention-minutes:60}") long retentionMinutes) {
+    this.changeRepository = changeRepository;
+    this.userStatusCache = userStatusCache;
+    this.overlapSeconds = overlapSeconds;
+    this.retentionMinutes = retentionMinutes;
+  }
+
+  // Synchronous, so the row commits or rolls back together with the change itself
+  @EventListener
+  public void onUserAccessChanged(UserAccessChangedEvent event) {
+    changeRepository.save(new UserAccessChange(event.getUserId()));
+  }
+
+  /** Evict users whose access changed on any instance since the previous poll */
+  @Scheduled(fixedDelayString = "${user.access-changes.poll-ms:2000}")
+  public synchronized void poll() {
+    try {
+      LocalDateTime now = LocalDateTime.now();
+      List<Long> userIds =
+          changeRepository.findUserIdsChangedSince(lastPollAt.minusSeconds(overlapSeconds));
+      userIds.forEach(userStatusCache::evict);
+      lastPollAt = now;
+      if (!userIds.isEmpty()) {
+        log.debug("Evicted cached status of {} users changed on any instance", userIds.size());
+      }
+    } catch (Exception e) {
+      log.warn("Could not poll user access changes: {}", e.getMessage());
+    }
+  }
+
+  @Scheduled(cron = "${user.access-changes.purge.cron:0 50 * * * ?}")
+  @Transactional
+  public void purge() {
+    int deleted =
+        changeRepository.deleteChangedBefore(LocalDateTime.now().minusMinutes(retentionMinutes));
+    if (deleted > 0) {
+      log.info("Purged {} user access change records", deleted);
+    }
+  }
+}
@@ -3,6 +3,7 @@ package com.gege.activitypartner.service;
 import com.gege.activitypartner.dto.UserPhotoResponse;
 import com.gege.activitypartner.entity.User;
 import com.gege.activitypartner.entity.UserPhoto;
+import com.gege.activitypartner.event.ImageStoredEvent;
 import com.gege.activitypartner.exception.InvalidParticipantActionException;
 import com.gege.activitypartner.exception.ResourceNotFoundException;
 import com.gege.activitypartner.repository.UserPhotoRepository;
@@ -10,6 +11,7 @@ import com.gege.activitypartner.repository.UserRepository;
 import java.util.List;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -22,6 +24,7 @@ public class UserPhotoService {
   private final UserPhotoRepository userPhotoRepository;
   private final UserRepository userRepository;
   private final FileStorageService fileStorageService;
+  private final ApplicationEventPublisher eventPublisher;
 
   /**
    * Upload a new photo for a user
@@ -56,6 +59,12 @@ public class UserPhotoService {
     photo.setIsProfilePicture(isFirstPhoto); // First photo is automatically the profile picture
 
     UserPhoto savedPhoto = userPhotoRepository.save(photo);
+    eventPublisher.publishEvent(
+        new ImageStoredEvent(
+            ImageStoredEvent.Owner.USER_PHOTO,
+            savedPhoto.getId(),
+            fileName,
+            photoUrl));
 
     // If this is the first photo, also set it as the user's profile image
     if (isFirstPhoto) {
@@ -216,6 +225,9 @@ public class UserPhotoService {
     UserPhotoResponse response = new UserPhotoResponse();
     response.setId(photo.getId());
     response.setPhotoUrl(photo.getPhotoUrl());
+    response.setThumbnailUrl(photo.getThumbnailUrl());
+    response.setMediumUrl(photo.getMediumUrl());
+    response.setLargeUrl(photo.getLargeUrl());
     response.setIsProfilePicture(photo.getIsProfilePicture());
     response.setDisplayOrder(photo.getDisplayOrder());
     response.setUploadedAt(photo.getUploadedAt());
@@ -13,11 +13,14 @@ import com.gege.activitypartner.entity.AccountDeletionRequest;
 import com.gege.activitypartner.entity.PasswordResetToken;
 import com.gege.activitypartner.entity.RefreshToken;
 import com.gege.activitypartner.entity.User;
+import com.gege.activitypartner.event.ImageStoredEvent;
+import com.gege.activitypartner.event.UserAccessChangedEvent;
 import com.gege.activitypartner.exception.DuplicateResourceException;
 import com.gege.activitypartner.exception.ResourceNotFoundException;
 import com.gege.activitypartner.repository.AccountDeletionRequestRepository;
 import com.gege.activitypartner.repository.PasswordResetTokenRepository;
 import com.gege.activitypartner.repository.UserRepository;
+import com.gege.activitypartner.util.ClientIpResolver;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import jakarta.servlet.http.HttpServletRequest;
@@ -35,12 +38,13 @@ import java.util.UUID;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
@@ -52,12 +56,15 @@ public class UserService {
   private final UserRepository userRepository;
   private final AccountDeletionRequestRepository accountDeletionRequestRepository;
   private final PasswordResetTokenRepository passwordResetTokenRepository;
-  private final PasswordEncoder passwordEncoder;
+  private final PasswordHashingService passwordHashingService;
+  private final LoginAttemptThrottle loginAttemptThrottle;
   private final JwtUtil jwtUtil;
   private final RefreshTokenService refreshTokenService;
   private final FileStorageService fileStorageService;
   private final JavaMailSender mailSender;
   private final TemplateEngine templateEngine;
+  private final ApplicationEventPublisher eventPublisher;
+  private final TransactionTemplate transactionTemplate;
 
   @Value("${app.base-url}")
   private String baseUrl;
@@ -70,14 +77,20 @@ public class UserService {
 
   private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
-  // Login user
-  @Transactional
+  // Login user. Deliberately not @Transactional: the password check can wait seconds for a
+  // hashing slot, so the lookup and the refresh token insert each run in their own short
+  // transaction and no pooled connection is held while hashing
   public LoginResponse loginUser(LoginRequest request, HttpServletRequest httpRequest) {
+    // Refuse throttled IPs and accounts before any lookup or hashing
+    loginAttemptThrottle.checkAttempt(
+        "user", ClientIpResolver.resolve(httpRequest), request.getEmail());
+
     // Find user by email
-    User user =
-        userRepository
-            .findByEmail(request.getEmail())
-            .orElseThrow(() -> new BadCredentialsException("Invalid email or password"));
+    User user = userRepository.findByEmail(request.getEmail()).orElse(null);
+    if (user == null) {
+      loginAttemptThrottle.recordFailure("user", request.getEmail());
+      throw new BadCredentialsException("Invalid email or password");
+    }
 
     // Check if user is active
     if (!user.getIsActive()) {
@@ -85,12 +98,14 @@ public class UserService {
     }
 
     // Verify password
-    if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
+    if (!passwordHashingService.matches(request.getPassword(), user.getPassword())) {
+      loginAttemptThrottle.recordFailure("user", request.getEmail());
       throw new BadCredentialsException("Invalid email or password");
     }
+    loginAttemptThrottle.recordSuccess("user", request.getEmail());
 
     // Generate access token
-    String accessToken = jwtUtil.generateToken(user.getEmail(), user.getId());
+    String accessToken = jwtUtil.generateToken(user.getEmail(), user.getId(), user.getTokenEpoch());
 
     // Generate and save refresh token
     RefreshToken refreshToken = refreshTokenService.createRefreshToken(user, httpRequest);
@@ -117,7 +132,8 @@ public class UserService {
     User user = refreshToken.getUser();
 
     // Generate new access token
-    String newAccessToken = jwtUtil.generateToken(user.getEmail(), user.getId());
+    String newAccessToken =
+        jwtUtil.generateToken(user.getEmail(), user.getId(), user.getTokenEpoch());
 
     // Return response with new access token and same refresh token
     return new LoginResponse(
@@ -141,12 +157,17 @@ public class UserService {
   @Transactional
   public void logoutAll(Long userId) {
     refreshTokenService.deactivateAllUserTokens(userId);
+    userRepository.incrementTokenEpoch(userId);
+    eventPublisher.publishEvent(new UserAccessChangedEvent(userId));
   }
 
-  // Register new user
-  @Transactional
+  // Register new user. Not @Transactional for the same reason as loginUser: the password is
+  // hashed before the user and refresh token are inserted in one short transaction
   public LoginResponse registerUser(
       UserRegistrationRequest request, HttpServletRequest httpRequest) {
+    // Registrations hash a password too, so they count against the same per-IP limit as logins
+    loginAttemptThrottle.checkIpAttempt(ClientIpResolver.resolve(httpRequest));
+
     // Check if email already exists
     if (userRepository.existsByEmail(request.getEmail())) {
       throw new DuplicateResourceException("Email already registered");
@@ -161,19 +182,22 @@ public class UserService {
     User user = new User();
     user.setFullName(request.getFullName());
     user.setEmail(request.getEmail());
-    user.setPassword(passwordEncoder.encode(request.getPassword()));
+    user.setPassword(passwordHashingService.encode(request.getPassword()));
     user.setBirthDate(request.getBirthDate());
     user.setRating(0.0);
     user.setCompletedActivities(0);
     user.setIsActive(true);
 
-    User savedUser = userRepository.save(user);
+    // Save the user and generate its refresh token together
+    RefreshToken refreshToken =
+        transactionTemplate.execute(
+            status ->
+                refreshTokenService.createRefreshToken(userRepository.save(user), httpRequest));
+    User savedUser = refreshToken.getUser();
 
     // Generate access token
-    String accessToken = jwtUtil.generateToken(savedUser.getEmail(), savedUser.getId());
-
-    // Generate and save refresh token
-    RefreshToken refreshToken = refreshTokenService.createRefreshToken(savedUser, httpRequest);
+    String accessToken =
+        jwtUtil.generateToken(savedUser.getEmail(), savedUser.getId(), savedUser.getTokenEpoch());
 
     // Return login response with tokens and user info
     return new LoginResponse(
@@ -187,7 +211,6 @@ public class UserService {
         savedUser.getBadge());
   }
 
-  // Get user by ID
   public UserResponse getUserById(Long id) {
     User user =
         userRepository
@@ -331,6 +354,8 @@ public class UserService {
             .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
     user.setIsActive(false);
     userRepository.save(user);
+    userRepository.incrementTokenEpoch(id);
+    eventPublisher.publishEvent(new UserAccessChangedEvent(id));
   }
 
   // Request account deletion by email (for Google Play compliance)
@@ -375,8 +400,8 @@ public class UserService {
             });
   }
 
-  // Reset password using token
-  @Transactional
+  // Reset password using token. Not @Transactional: the CAPTCHA check and the hashing run
+  // before the short transaction that stores the password and consumes the token
   public void resetPassword(String token, String newPassword, String recaptchaToken) {
     // Verify reCAPTCHA if secret key is configured
     if (recaptchaSecretKey != null && !recaptchaSecretKey.isBlank()) {
@@ -385,6 +410,7 @@ public class UserService {
       }
     }
 
+    // Refuse unknown and expired links before spending a hash on them
     PasswordResetToken resetToken =
         passwordResetTokenRepository
             .findByToken(token)
@@ -395,13 +421,27 @@ public class UserService {
       throw new IllegalArgumentException("This reset link has expired. Please request a new one.");
     }
 
-    User user = resetToken.getUser();
-    user.setPassword(passwordEncoder.encode(newPassword));
-    userRepository.save(user);
-
-    // Invalidate the token and all sessions
-    passwordResetTokenRepository.delete(resetToken);
-    refreshTokenService.deactivateAllUserTokens(user.getId());
+    String passwordHash = passwordHashingService.encode(newPassword);
+
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          // Looked up again so a link used concurrently is only consumed once
+          PasswordResetToken current =
+              passwordResetTokenRepository
+                  .findByToken(token)
+                  .orElseThrow(
+                      () -> new IllegalArgumentException("Invalid or expired reset link."));
+
+          User user = current.getUser();
+          user.setPassword(passwordHash);
+          userRepository.save(user);
+          userRepository.incrementTokenEpoch(user.getId());
+
+          // Invalidate the token and all sessions
+          passwordResetTokenRepository.delete(current);
+          refreshTokenService.deactivateAllUserTokens(user.getId());
+          eventPublisher.publishEvent(new UserAccessChangedEvent(user.getId()));
+        });
   }
 
   private boolean verifyRecaptcha(String token) {
@@ -467,6 +507,8 @@ public class UserService {
     // Update user's profile image URL
     user.setProfileImageUrl(fileUrl);
     userRepository.save(user);
+    eventPublisher.publishEvent(
+        new ImageStoredEvent(ImageStoredEvent.Owner.PROFILE_IMAGE, null, fileName, fileUrl));
 
     // Return only the URL string
     return fileUrl;
@@ -498,6 +540,9 @@ public class UserService {
                     UserPhotoResponse photoResponse = new UserPhotoResponse();
                     photoResponse.setId(photo.getId());
                     photoResponse.setPhotoUrl(photo.getPhotoUrl());
+                    photoResponse.setThumbnailUrl(photo.getThumbnailUrl());
+                    photoResponse.setMediumUrl(photo.getMediumUrl());
+                    photoResponse.setLargeUrl(photo.getLargeUrl());
                     photoResponse.setIsProfilePicture(photo.getIsProfilePicture());
                     photoResponse.setDisplayOrder(photo.getDisplayOrder());
                     photoResponse.setUploadedAt(photo.getUploadedAt());
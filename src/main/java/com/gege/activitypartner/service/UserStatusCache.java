@@ -0,0 +1,102 @@
+package com.gege.activitypartner.service;
+
+import com.gege.activitypartner.dto.UserStatus;
+import com.gege.activitypartner.event.UserAccessChangedEvent;
+import com.gege.activitypartner.repository.UserRepository;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Short-lived in-memory copy of each user's authorization state, so authenticated requests do not
+ * load the user row. Entries are dropped as soon as UserService commits a deactivation, password
+ * reset or logout from all devices. Other application instances learn of the change through
+ * UserAccessChangeFeed within one poll interval; the short TTL only bounds staleness if that
+ * polling fails.
+ */
+@Service
+@Slf4j
+public class UserStatusCache {
+
+  private record Entry(UserStatus status, long loadedAtMillis) {}
+
+  private final UserRepository userRepository;
+  private final long ttlMillis;
+  private final Map<Long, Entry> entries;
+
+  // Bumped on every eviction so a load that raced with a change is not cached
+  private final AtomicLong version = new AtomicLong();
+
+  public UserStatusCache(
+      UserRepository userRepository,
+      @Value("${user.status-cache.ttl-seconds:30}") long ttlSeconds,
+      @Value("${user.status-cache.max-entries:50000}") int maxEntries) {
+    this.userRepository = userRepository;
+    this.ttlMillis = ttlSeconds * 1000;
+    this.entries =
+        Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxEntries;
+              }
+            });
+  }
+
+  /**
+   * Current status of a user
+   *
+   * @return empty if the user does not exist
+   */
+  public Optional<UserStatus> getStatus(Long userId) {
+    long now = System.currentTimeMillis();
+    Entry entry = entries.get(userId);
+    if (entry != null && now - entry.loadedAtMillis() < ttlMillis) {
+      return Optional.ofNullable(entry.status());
+    }
+
+    long loadVersion = version.get();
+    UserStatus status = userRepository.findStatusById(userId).orElse(null);
+
+    synchronized (entries) {
+      if (version.get() == loadVersion) {
+        entries.put(userId, new Entry(status, now));
+      }
+    }
+    return Optional.ofNullable(status);
+  }
+
+  /**
+   * Whether an access token issued to the user at the given token epoch is still accepted: the
+   * user exists, is active and has not bumped the epoch since. A newer epoch than the cached one
+   * is accepted, since the cache may not have seen the bump yet.
+   */
+  public boolean acceptsToken(Long userId, long tokenEpoch) {
+    return getStatus(userId)
+        .map(
+            status ->
+                Boolean.TRUE.equals(status.getIsActive()) && tokenEpoch >= status.getTokenEpoch())
+        .orElse(false);
+  }
+
+  /** Forget a user's status so the next request reloads it */
+  public void evict(Long userId) {
+    synchronized (entries) {
+      version.incrementAndGet();
+      entries.remove(userId);
+    }
+  }
+
+  @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+  public void onUserAccessChanged(UserAccessChangedEvent event) {
+    evict(event.getUserId());
+    log.debug("Evicted cached status of user {}", event.getUserId());
+  }
+}
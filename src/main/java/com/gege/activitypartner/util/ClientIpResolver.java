@@ -0,0 +1,18 @@
+package com.gege.activitypartner.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/** Utility class for finding the address of the client behind the reverse proxy */
+public class ClientIpResolver {
+
+  /**
+   * Address of the client that sent a request. With {@code server.forward-headers-strategy=native}
+   * Tomcat's RemoteIpValve has already replaced the socket address with the right-most
+   * X-Forwarded-For hop that is not one of {@code server.tomcat.remoteip.internal-proxies}, and
+   * only when the request came through such a proxy. The header itself is never read here: its
+   * left-most entries are whatever the client chose to send.
+   */
+  public static String resolve(HttpServletRequest request) {
+    return request.getRemoteAddr();
+  }
+}
@@ -0,0 +1,65 @@
+package com.gege.activitypartner.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Utility class for identifying uploaded images by their leading magic bytes instead of trusting
+ * the client supplied Content-Type or file name.
+ */
+public class ImageTypeDetector {
+
+  /** Number of leading bytes needed to recognise every supported format */
+  public static final int HEADER_LENGTH = 12;
+
+  /**
+   * Detect the image format of a stream.
+   *
+   * @param in stream positioned at the start of the file; up to {@link #HEADER_LENGTH} bytes are
+   *     consumed
+   * @return the canonical file extension including the dot (".jpg", ".png", ".gif", ".webp"), or
+   *     null if the content is not a supported image
+   */
+  public static String detectExtension(InputStream in) throws IOException {
+    byte[] header = in.readNBytes(HEADER_LENGTH);
+    return detectExtension(header, header.length);
+  }
+
+  /** Detect the image format from the first {@code length} bytes of a file */
+  public static String detectExtension(byte[] header, int length) {
+    if (startsWith(header, length, 0xFF, 0xD8, 0xFF)) {
+      return ".jpg";
+    }
+    if (startsWith(header, length, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+      return ".png";
+    }
+    if (startsWith(header, length, 'G', 'I', 'F', '8')
+        && length >= 6
+        && (header[4] == '7' || header[4] == '9')
+        && header[5] == 'a') {
+      return ".gif";
+    }
+    // RIFF <4 byte size> WEBP
+    if (startsWith(header, length, 'R', 'I', 'F', 'F')
+        && length >= 12
+        && header[8] == 'W'
+        && header[9] == 'E'
+        && header[10] == 'B'
+        && header[11] == 'P') {
+      return ".webp";
+    }
+    return null;
+  }
+
+  private static boolean startsWith(byte[] header, int length, int... magic) {
+    if (length < magic.length) {
+      return false;
+    }
+    for (int i = 0; i < magic.length; i++) {
+      if ((header[i] & 0xFF) != magic[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,23 @@
+package com.gege.activitypartner.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/** Utility class for the fixed-length digests under which tokens are stored and looked up */
+public class TokenDigest {
+
+  /** Length of {@link #sha256Hex} output */
+  public static final int HEX_LENGTH = 64;
+
+  /** Lowercase hex SHA-256 of a token's UTF-8 bytes */
+  public static String sha256Hex(String token) {
+    try {
+      MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package com.gege.activitypartner.fcm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the FCM HTTP v1 send endpoint. Point the app at it with {@code
+ * firebase.emulator-url}. Latency and failures are configurable so fan-out code can be exercised
+ * without talking to Google.
+ *
+ * <p>Tokens starting with {@link #UNREGISTERED_PREFIX} are always rejected as UNREGISTERED, the
+ * same way FCM rejects uninstalled apps. {@link #setErrorRate(double)} randomly answers 503
+ * UNAVAILABLE for other tokens.
+ */
+public class FakeFcmServer implements AutoCloseable {
+
+  public static final String UNREGISTERED_PREFIX = "unregistered-";
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private volatile long latencyMillis;
+  private volatile double errorRate;
+
+  private final AtomicLong accepted = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final Map<String, Long> deliveredAtNanos = new ConcurrentHashMap<>();
+
+  public FakeFcmServer(int threads) throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    executor = Executors.newFixedThreadPool(threads);
+    server.setExecutor(executor);
+    server.createContext("/v1/projects/", this::handleSend);
+  }
+
+  public FakeFcmServer start() {
+    server.start();
+    return this;
+  }
+
+  public String getUrl() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  /** Fixed delay applied to every send, simulating the FCM round trip */
+  public void setLatencyMillis(long latencyMillis) {
+    this.latencyMillis = latencyMillis;
+  }
+
+  /** Fraction (0..1) of sends to valid tokens that fail with a transient 503 */
+  public void setErrorRate(double errorRate) {
+    this.errorRate = errorRate;
+  }
+
+  public long getAcceptedCount() {
+    return accepted.get();
+  }
+
+  public long getRejectedCount() {
+    return rejected.get();
+  }
+
+  /** System.nanoTime() at which each token last received a push */
+  public Map<String, Long> getDeliveredAtNanos() {
+    return deliveredAtNanos;
+  }
+
+  public void reset() {
+    accepted.set(0);
+    rejected.set(0);
+    deliveredAtNanos.clear();
+  }
+
+  private void handleSend(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+      String token = body.path("message").path("token").asText(null);
+
+      if (latencyMillis > 0) {
+        Thread.sleep(latencyMillis);
+      }
+
+      if (token != null && token.startsWith(UNREGISTERED_PREFIX)) {
+        rejected.incrementAndGet();
+        respond(exchange, 404, errorBody(404, "NOT_FOUND", "UNREGISTERED"));
+        return;
+      }
+      if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+        rejected.incrementAndGet();
+        respond(exchange, 503, errorBody(503, "UNAVAILABLE", "UNAVAILABLE"));
+        return;
+      }
+
+      long id = accepted.incrementAndGet();
+      if (token != null) {
+        deliveredAtNanos.put(token, System.nanoTime());
+      }
+      String path = exchange.getRequestURI().getPath();
+      String project = path.substring("/v1/".length(), path.indexOf("/messages"));
+      respond(exchange, 200, "{\"name\":\"" + project + "/messages/" + id + "\"}");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private String errorBody(int code, String status, String fcmErrorCode) {
+    return "{\"error\":{\"code\":"
+        + code
+        + ",\"message\":\"Injected by FakeFcmServer\",\"status\":\""
+        + status
+        + "\",\"details\":[{\"@type\":\"type.googleapis.com/google.firebase.fcm.v1.FcmError\","
+        + "\"errorCode\":\""
+        + fcmErrorCode
+        + "\"}]}}";
+  }
+
+  private void respond(HttpExchange exchange, int status, String json) throws IOException {
+    byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
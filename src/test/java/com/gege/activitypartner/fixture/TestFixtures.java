@@ -0,0 +1,78 @@
+package com.gege.activitypartner.fixture;
+
+import com.gege.activitypartner.entity.Activity;
+import com.gege.activitypartner.entity.ActivityParticipant;
+import com.gege.activitypartner.entity.ActivityStatus;
+import com.gege.activitypartner.entity.ParticipantStatus;
+import com.gege.activitypartner.entity.User;
+import com.gege.activitypartner.repository.ActivityParticipantRepository;
+import com.gege.activitypartner.repository.ActivityRepository;
+import com.gege.activitypartner.repository.UserRepository;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.test.context.TestComponent;
+
+/**
+ * Users, activities and participants saved straight through the repositories, for tests that need
+ * a populated room without going through the services. Tests add it with {@code @Import}. Emails
+ * are made unique, so fixtures can be created repeatedly in one context.
+ */
+@TestComponent
+public class TestFixtures {
+
+  private final UserRepository userRepository;
+  private final ActivityRepository activityRepository;
+  private final ActivityParticipantRepository participantRepository;
+
+  public TestFixtures(
+      UserRepository userRepository,
+      ActivityRepository activityRepository,
+      ActivityParticipantRepository participantRepository) {
+    this.userRepository = userRepository;
+    this.activityRepository = activityRepository;
+    this.participantRepository = participantRepository;
+  }
+
+  /** User that cannot log in (the password is not a hash) */
+  public User createUser(String name) {
+    return createUser(name, "not-a-real-hash");
+  }
+
+  public User createUser(String name, String passwordHash) {
+    User user = new User();
+    user.setFullName(name);
+    user.setEmail(name + "-" + System.nanoTime() + "@fixture.test");
+    user.setPassword(passwordHash);
+    user.setBirthDate(LocalDate.of(1990, 1, 1));
+    return userRepository.save(user);
+  }
+
+  /** Open activity created by the given user */
+  public Activity createActivity(
+      User creator, String title, LocalDateTime activityDate, int totalSpots) {
+    Activity activity = new Activity();
+    activity.setTitle(title);
+    activity.setActivityDate(activityDate);
+    activity.setLocation("Budapest");
+    activity.setCategory("Hiking");
+    activity.setTotalSpots(totalSpots);
+    activity.setStatus(ActivityStatus.OPEN);
+    activity.setCreator(creator);
+    return activityRepository.save(activity);
+  }
+
+  /** Add the users as JOINED participants, in one batch */
+  public void join(Activity activity, List<User> users) {
+    List<ActivityParticipant> participants = new ArrayList<>(users.size());
+    for (User user : users) {
+      ActivityParticipant participant = new ActivityParticipant();
+      participant.setActivity(activity);
+      participant.setUser(user);
+      participant.setStatus(ParticipantStatus.JOINED);
+      participants.add(participant);
+    }
+    participantRepository.saveAll(participants);
+  }
+}
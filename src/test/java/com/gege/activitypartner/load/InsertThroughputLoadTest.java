@@ -0,0 +1,121 @@
+package com.gege.activitypartner.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gege.activitypartner.entity.AppLog;
+import com.gege.activitypartner.repository.AppLogRepository;
+import jakarta.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Insert throughput for the high-volume entities. Compares the old row-at-a-time path (one save
+ * and one transaction per row, as the log endpoint used to do) with the pooled-id, JDBC-batched
+ * path ({@code saveAll} in one transaction), and reports rows/sec plus the JDBC statements and
+ * sequence calls each needed.
+ *
+ * <p>Excluded from the default build; run with {@code ./gradlew loadTest}. The in-memory database
+ * hides network round trips, so the gap against MySQL is larger than what this prints. Tune with
+ * {@code -Dload.rounds}.
+ */
+@Tag("load")
+@SpringBootTest(
+    properties = {
+      "spring.jpa.properties.hibernate.generate_statistics=true",
+      "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+    })
+@ActiveProfiles("test")
+class InsertThroughputLoadTest {
+
+  private static final int ROUNDS = Integer.getInteger("load.rounds", 5);
+
+  @Autowired private AppLogRepository appLogRepository;
+  @Autowired private EntityManagerFactory entityManagerFactory;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @ParameterizedTest(name = "app logs, {0} rows")
+  @ValueSource(ints = {100, 1000, 5000})
+  void appLogInsertThroughput(int rows) {
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+    // Warm up both paths so the first measured round does not pay for class loading and JIT
+    insertRowByRow(transaction, appLogs(rows));
+    transaction.executeWithoutResult(status -> appLogRepository.saveAll(appLogs(rows)));
+
+    Measurement rowByRow = new Measurement();
+    Measurement batched = new Measurement();
+    for (int round = 0; round < ROUNDS; round++) {
+      List<AppLog> single = appLogs(rows);
+      rowByRow.run(statistics, () -> insertRowByRow(transaction, single));
+
+      List<AppLog> batch = appLogs(rows);
+      batched.run(
+          statistics, () -> transaction.executeWithoutResult(s -> appLogRepository.saveAll(batch)));
+    }
+
+    rowByRow.report("row-by-row", rows);
+    batched.report("batched", rows);
+    // One INSERT per row in the old path; batching must not add statements on top of that
+    assertThat(batched.statements).isLessThanOrEqualTo(rowByRow.statements);
+  }
+
+  private void insertRowByRow(TransactionTemplate transaction, List<AppLog> appLogs) {
+    for (AppLog appLog : appLogs) {
+      transaction.executeWithoutResult(status -> appLogRepository.save(appLog));
+    }
+  }
+
+  private static List<AppLog> appLogs(int rows) {
+    LocalDateTime now = LocalDateTime.now();
+    List<AppLog> appLogs = new ArrayList<>(rows);
+    for (int i = 0; i < rows; i++) {
+      AppLog appLog = new AppLog();
+      appLog.setLevel("INFO");
+      appLog.setTag("LOAD");
+      appLog.setMessage("Insert throughput row " + i);
+      appLog.setPlatform("android");
+      appLog.setLoggedAt(now);
+      appLog.setReceivedAt(now);
+      appLogs.add(appLog);
+    }
+    return appLogs;
+  }
+
+  /** Accumulated wall time and JDBC work of one insert path across all rounds */
+  private static class Measurement {
+    private long nanos;
+    private long statements;
+    private long transactions;
+
+    void run(Statistics statistics, Runnable insert) {
+      long statementsBefore = statistics.getPrepareStatementCount();
+      long transactionsBefore = statistics.getTransactionCount();
+      long start = System.nanoTime();
+      insert.run();
+      nanos += System.nanoTime() - start;
+      statements += statistics.getPrepareStatementCount() - statementsBefore;
+      transactions += statistics.getTransactionCount() - transactionsBefore;
+    }
+
+    void report(String path, int rowsPerRound) {
+      long rows = (long) rowsPerRound * ROUNDS;
+      double seconds = nanos / 1_000_000_000.0;
+      System.out.printf(
+          "[load] app-logs %-10s rows/round=%-5d rows/sec=%10.1f statements=%-6d "
+              + "transactions=%-6d%n",
+          path, rowsPerRound, rows / seconds, statements, transactions);
+    }
+  }
+}
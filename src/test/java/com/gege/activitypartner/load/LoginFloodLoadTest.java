@@ -0,0 +1,164 @@
+package com.gege.activitypartner.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gege.activitypartner.fixture.TestFixtures;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Floods the login endpoint with wrong passwords while timing a cheap public endpoint that needs
+ * a database connection ({@code GET /api/categories}). BCrypt runs on a small bounded pool and
+ * logins hold no pooled connection while they wait for or run a hash, so the flood should cost
+ * the rest of the API little beyond CPU: no 5xx, and latency far below the pool's connection
+ * timeout. Reports login outcomes by status and p50/p99 of the probe with and without the flood.
+ *
+ * <p>Throttling and rate limits are lifted so every attempt reaches the hashing pool. Excluded
+ * from the default build; run with {@code ./gradlew loadTest}. Tune with {@code
+ * -Dload.floodThreads} and {@code -Dload.floodSeconds}.
+ */
+@Tag("load")
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+      "spring.datasource.hikari.maximum-pool-size=4",
+      "spring.datasource.hikari.connection-timeout=2000",
+      "rate-limit.enabled=false",
+      "auth.throttle.ip.max-attempts=100000000",
+      "auth.throttle.account.max-failures=100000000"
+    })
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+class LoginFloodLoadTest {
+
+  private static final int FLOOD_THREADS = Integer.getInteger("load.floodThreads", 64);
+  private static final int FLOOD_SECONDS = Integer.getInteger("load.floodSeconds", 10);
+  private static final int PROBES = 200;
+
+  @LocalServerPort private int port;
+  @Autowired private TestFixtures fixtures;
+  @Autowired private PasswordEncoder passwordEncoder;
+
+  private final HttpClient client =
+      HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+  @Test
+  void publicEndpointStaysResponsiveDuringLoginFlood() throws Exception {
+    String email =
+        fixtures
+            .createUser("flood-target", passwordEncoder.encode("correct horse battery staple"))
+            .getEmail();
+
+    // Warm up, then take a baseline without the flood
+    probe(50);
+    List<Long> baseline = probe(PROBES);
+
+    AtomicBoolean flooding = new AtomicBoolean(true);
+    Map<Integer, AtomicInteger> loginStatuses = new ConcurrentHashMap<>();
+    ExecutorService flood = Executors.newFixedThreadPool(FLOOD_THREADS);
+    String body = "{\"email\":\"" + email + "\",\"password\":\"wrong password\"}";
+    for (int i = 0; i < FLOOD_THREADS; i++) {
+      flood.execute(
+          () -> {
+            while (flooding.get()) {
+              int status = send(post("/api/users/login", body));
+              loginStatuses.computeIfAbsent(status, s -> new AtomicInteger()).incrementAndGet();
+            }
+          });
+    }
+
+    List<Long> underFlood = new ArrayList<>();
+    List<Integer> probeFailures = new ArrayList<>();
+    long floodEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(FLOOD_SECONDS);
+    while (System.nanoTime() < floodEnd) {
+      long start = System.nanoTime();
+      int status = send(get("/api/categories"));
+      underFlood.add(System.nanoTime() - start);
+      if (status != 200) {
+        probeFailures.add(status);
+      }
+    }
+    flooding.set(false);
+    flood.shutdown();
+    assertThat(flood.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    report("baseline", baseline);
+    report("flood", underFlood);
+    System.out.printf(
+        "[load] login-flood threads=%d seconds=%d login statuses=%s%n",
+        FLOOD_THREADS, FLOOD_SECONDS, loginStatuses);
+
+    assertThat(probeFailures).isEmpty();
+    // Starving the connection pool would push probes towards the 2s connection timeout
+    assertThat(percentile(underFlood, 0.99)).isLessThan(TimeUnit.MILLISECONDS.toNanos(1000));
+    assertThat(loginStatuses).doesNotContainKey(500);
+  }
+
+  private List<Long> probe(int count) {
+    List<Long> latencies = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      long start = System.nanoTime();
+      assertThat(send(get("/api/categories"))).isEqualTo(200);
+      latencies.add(System.nanoTime() - start);
+    }
+    return latencies;
+  }
+
+  private HttpRequest get(String path) {
+    return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET().build();
+  }
+
+  private HttpRequest post(String path, String json) {
+    return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(json))
+        .build();
+  }
+
+  private int send(HttpRequest request) {
+    try {
+      return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return -1;
+    } catch (Exception e) {
+      return -1;
+    }
+  }
+
+  private static long percentile(List<Long> latencies, double percentile) {
+    List<Long> sorted = new ArrayList<>(latencies);
+    Collections.sort(sorted);
+    return sorted.get((int) Math.min(sorted.size() - 1, Math.floor(sorted.size() * percentile)));
+  }
+
+  private static void report(String phase, List<Long> latencies) {
+    System.out.printf(
+        "[load] categories %-8s requests=%-6d p50=%7.2fms p99=%7.2fms%n",
+        phase,
+        latencies.size(),
+        percentile(latencies, 0.5) / 1_000_000.0,
+        percentile(latencies, 0.99) / 1_000_000.0);
+  }
+}
@@ -0,0 +1,207 @@
+package com.gege.activitypartner.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gege.activitypartner.dto.ActivityMessageRequest;
+import com.gege.activitypartner.entity.Activity;
+import com.gege.activitypartner.entity.User;
+import com.gege.activitypartner.fcm.FakeFcmServer;
+import com.gege.activitypartner.fixture.TestFixtures;
+import com.gege.activitypartner.service.ActivityMessageService;
+import com.gege.activitypartner.service.ActivitySchedulerService;
+import com.gege.activitypartner.service.DeviceTokenService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Push fan-out load harness. Drives chat messages and activity reminders at realistic group sizes
+ * against {@link FakeFcmServer} and an in-memory database, then reports notifications/sec, p99
+ * enqueue-to-delivery latency and JDBC connection hold time.
+ *
+ * <p>Excluded from the default build; run with {@code ./gradlew loadTest}. Tune with {@code
+ * -Dload.latencyMillis}, {@code -Dload.errorRate} and {@code -Dload.rounds}.
+ */
+@Tag("load")
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+class PushThroughputLoadTest {
+
+  private static final FakeFcmServer FCM = startFakeFcm();
+
+  private static final int ROUNDS = Integer.getInteger("load.rounds", 5);
+
+  @Autowired private TestFixtures fixtures;
+  @Autowired private DeviceTokenService deviceTokenService;
+  @Autowired private ActivityMessageService activityMessageService;
+  @Autowired private ActivitySchedulerService activitySchedulerService;
+  @Autowired private MeterRegistry meterRegistry;
+
+  private static FakeFcmServer startFakeFcm() {
+    try {
+      FakeFcmServer server = new FakeFcmServer(32).start();
+      server.setLatencyMillis(Long.getLong("load.latencyMillis", 40));
+      server.setErrorRate(Double.parseDouble(System.getProperty("load.errorRate", "0.0")));
+      return server;
+    } catch (Exception e) {
+      throw new IllegalStateException("Could not start fake FCM server", e);
+    }
+  }
+
+  @DynamicPropertySource
+  static void fcmProperties(DynamicPropertyRegistry registry) {
+    registry.add("firebase.emulator-url", FCM::getUrl);
+  }
+
+  @AfterAll
+  static void stopFakeFcm() {
+    FCM.close();
+  }
+
+  @BeforeEach
+  void resetServer() {
+    FCM.reset();
+  }
+
+  @ParameterizedTest(name = "chat fan-out, group of {0}")
+  @ValueSource(ints = {10, 50, 200})
+  void chatMessageFanOut(int groupSize) {
+    Group group = createGroup("chat", groupSize, LocalDateTime.now().plusDays(3));
+    ActivityMessageRequest request = new ActivityMessageRequest();
+    request.setMessageText("Who is bringing the snacks?");
+
+    List<Long> latencies = new ArrayList<>();
+    HikariSnapshot before = HikariSnapshot.take(meterRegistry);
+    long start = System.nanoTime();
+    for (int round = 0; round < ROUNDS; round++) {
+      Map<String, Long> delivered = FCM.getDeliveredAtNanos();
+      delivered.clear();
+      long enqueuedAt = System.nanoTime();
+      activityMessageService.sendMessage(group.activityId, group.creatorId, request);
+      collectLatencies(group.tokens, enqueuedAt, delivered, latencies);
+    }
+    long elapsed = System.nanoTime() - start;
+
+    report("chat", groupSize, elapsed, latencies, before, HikariSnapshot.take(meterRegistry));
+    // The Admin SDK retries 503s, so injected errors can add requests but never remove them
+    assertThat(FCM.getAcceptedCount() + FCM.getRejectedCount())
+        .isGreaterThanOrEqualTo((long) groupSize * ROUNDS);
+  }
+
+  @ParameterizedTest(name = "activity reminders, group of {0}")
+  @ValueSource(ints = {10, 50, 200})
+  void activityReminderFanOut(int groupSize) {
+    // Starts within the next hour so the reminder job picks it up
+    Group group = createGroup("reminder", groupSize, LocalDateTime.now().plusMinutes(30));
+
+    List<Long> latencies = new ArrayList<>();
+    HikariSnapshot before = HikariSnapshot.take(meterRegistry);
+    long start = System.nanoTime();
+    activitySchedulerService.sendActivityReminders();
+    long elapsed = System.nanoTime() - start;
+    collectLatencies(group.tokens, start, FCM.getDeliveredAtNanos(), latencies);
+
+    report("reminder", groupSize, elapsed, latencies, before, HikariSnapshot.take(meterRegistry));
+    // Creator + every joined participant
+    assertThat(FCM.getAcceptedCount() + FCM.getRejectedCount())
+        .isGreaterThanOrEqualTo(groupSize + 1L);
+  }
+
+  private Group createGroup(String scenario, int size, LocalDateTime activityDate) {
+    String prefix = scenario + "-" + size + "-" + System.nanoTime();
+    User creator = fixtures.createUser(prefix + "-creator");
+    deviceTokenService.registerToken(creator.getId(), prefix + "-creator-token", "android");
+    Activity activity =
+        fixtures.createActivity(creator, "Load test " + prefix, activityDate, size + 1);
+
+    List<String> tokens = new ArrayList<>();
+    List<User> participants = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      User user = fixtures.createUser(prefix + "-" + i);
+      String token = prefix + "-token-" + i;
+      deviceTokenService.registerToken(user.getId(), token, "android");
+      tokens.add(token);
+      participants.add(user);
+    }
+    fixtures.join(activity, participants);
+
+    return new Group(activity.getId(), creator.getId(), tokens);
+  }
+
+  private void collectLatencies(
+      List<String> tokens, long enqueuedAt, Map<String, Long> delivered, List<Long> latencies) {
+    for (String token : tokens) {
+      Long deliveredAt = delivered.get(token);
+      if (deliveredAt != null) {
+        latencies.add(deliveredAt - enqueuedAt);
+      }
+    }
+  }
+
+  private void report(
+      String scenario,
+      int groupSize,
+      long elapsedNanos,
+      List<Long> latencies,
+      HikariSnapshot before,
+      HikariSnapshot after) {
+    long pushes = FCM.getAcceptedCount() + FCM.getRejectedCount();
+    double seconds = elapsedNanos / 1_000_000_000.0;
+    Collections.sort(latencies);
+    long p99 =
+        latencies.isEmpty()
+            ? 0
+            : latencies.get(Math.min(latencies.size() - 1, (int) (latencies.size() * 0.99)));
+    long checkouts = after.count - before.count;
+    double meanHoldMs =
+        checkouts == 0 ? 0 : (after.totalMillis - before.totalMillis) / (double) checkouts;
+
+    System.out.printf(
+        "[load] %-8s group=%-4d pushes=%-5d rejected=%-4d notifications/sec=%8.1f "
+            + "p99 enqueue-to-delivery=%6d ms  connection checkouts=%-5d mean hold=%8.1f ms "
+            + "max hold=%8.1f ms%n",
+        scenario,
+        groupSize,
+        pushes,
+        FCM.getRejectedCount(),
+        pushes / seconds,
+        TimeUnit.NANOSECONDS.toMillis(p99),
+        checkouts,
+        meanHoldMs,
+        after.maxMillis);
+  }
+
+  private record Group(Long activityId, Long creatorId, List<String> tokens) {}
+
+  /** Point-in-time view of the HikariCP connection usage timer (time a connection is held) */
+  private record HikariSnapshot(long count, double totalMillis, double maxMillis) {
+
+    static HikariSnapshot take(MeterRegistry registry) {
+      Timer timer = registry.find("hikaricp.connections.usage").timer();
+      if (timer == null) {
+        return new HikariSnapshot(0, 0, 0);
+      }
+      return new HikariSnapshot(
+          timer.count(),
+          timer.totalTime(TimeUnit.MILLISECONDS),
+          timer.max(TimeUnit.MILLISECONDS));
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package com.gege.activitypartner.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gege.activitypartner.config.RateLimitProperties;
+import com.gege.activitypartner.service.RequestRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Per-request overhead of the rate limiter: route lookup plus {@code tryAcquire} on a mix of
+ * existing client buckets, measured single-threaded and with every core contending on the same
+ * map. Reports ns/check and asserts the average stays under a microsecond. A plain timing loop
+ * with warm-up rather than JMH, so it runs with the other harnesses.
+ *
+ * <p>Excluded from the default build; run with {@code ./gradlew loadTest}. Tune with {@code
+ * -Dload.checks}.
+ */
+@Tag("load")
+class RateLimiterOverheadLoadTest {
+
+  private static final int CHECKS = Integer.getInteger("load.checks", 5_000_000);
+  private static final String PATH = "/api/logs";
+
+  @ParameterizedTest(name = "{0} client keys")
+  @ValueSource(ints = {100, 10_000, 100_000})
+  void checkOverhead(int clients) throws Exception {
+    RequestRateLimiter limiter = limiter(clients);
+    String[] keys = new String[clients];
+    for (int i = 0; i < clients; i++) {
+      keys[i] = "ip:10.0." + (i >> 8) + "." + (i & 0xff);
+    }
+
+    run(limiter, keys, 1, CHECKS); // Warm-up: JIT and bucket creation
+    double singleThread = run(limiter, keys, 1, CHECKS);
+    int threads = Runtime.getRuntime().availableProcessors();
+    double contended = run(limiter, keys, threads, CHECKS / threads);
+
+    System.out.printf(
+        "[load] rate-limit clients=%-6d ns/check single=%7.1f contended(%d threads)=%7.1f%n",
+        clients, singleThread, threads, contended);
+    assertThat(singleThread).isLessThan(1000.0);
+  }
+
+  /** Average nanoseconds per check, measured per thread */
+  private static double run(RequestRateLimiter limiter, String[] keys, int threads, int checks)
+      throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicLong allowed = new AtomicLong();
+    try {
+      List<Future<Long>> results =
+          IntStream.range(0, threads)
+              .mapToObj(
+                  t ->
+                      executor.submit(
+                          () -> {
+                            start.await();
+                            long ok = 0;
+                            long begin = System.nanoTime();
+                            for (int i = 0; i < checks; i++) {
+                              RequestRateLimiter.Route route = limiter.routeFor(PATH);
+                              if (limiter.tryAcquire(route, keys[(i + t * 7919) % keys.length])
+                                  == 0) {
+                                ok++;
+                              }
+                            }
+                            long elapsed = System.nanoTime() - begin;
+                            allowed.addAndGet(ok);
+                            return elapsed;
+                          }))
+              .toList();
+      start.countDown();
+      long totalNanos = 0;
+      for (Future<Long> result : results) {
+        totalNanos += result.get();
+      }
+      assertThat(allowed.get()).isPositive();
+      return (double) totalNanos / ((long) threads * checks);
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
+  // High limits so most checks take the allow path, which does the CAS
+  private static RequestRateLimiter limiter(int clients) {
+    RateLimitProperties.Policy policy = new RateLimitProperties.Policy();
+    policy.setPaths(List.of(PATH));
+    policy.setLimit(1_000_000);
+    policy.setPeriod(Duration.ofSeconds(1));
+    policy.setBurst(1000);
+
+    RateLimitProperties properties = new RateLimitProperties();
+    properties.setMaxKeys(clients * 2);
+    properties.getPolicies().put("load", policy);
+    return new RequestRateLimiter(properties, new SimpleMeterRegistry());
+  }
+}
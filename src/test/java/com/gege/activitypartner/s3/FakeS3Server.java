@@ -0,0 +1,179 @@
+package com.gege.activitypartner.s3;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process stand-in for a path-style S3 endpoint ({@code /<bucket>/<key>}), enough for PUT,
+ * HEAD, GET and DELETE of single objects. Point the app at it with {@code storage.s3.endpoint} and
+ * {@code storage.s3.path-style-access=true}. Signatures are not checked, so presigned URLs can be
+ * fetched as they are.
+ *
+ * <p>Uploads over plain HTTP arrive aws-chunked (signed chunks); the chunk framing is stripped so
+ * the stored bytes are exactly what the client sent.
+ */
+public class FakeS3Server implements AutoCloseable {
+
+  /** Stored object and the headers it was uploaded with */
+  public record StoredObject(byte[] content, String contentType, String cacheControl) {}
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+
+  public FakeS3Server() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    executor = Executors.newFixedThreadPool(4);
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+  }
+
+  public FakeS3Server start() {
+    server.start();
+    return this;
+  }
+
+  public String getUrl() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  /** Objects by path, e.g. {@code /bucket/ab/cd/abcd...ef.png} */
+  public Map<String, StoredObject> getObjects() {
+    return objects;
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      String path = exchange.getRequestURI().getPath();
+      switch (exchange.getRequestMethod()) {
+        case "PUT" -> put(exchange, path);
+        case "HEAD" -> head(exchange, objects.get(path));
+        case "GET" -> get(exchange, objects.get(path));
+        case "DELETE" -> {
+          objects.remove(path);
+          exchange.sendResponseHeaders(204, -1);
+        }
+        default -> exchange.sendResponseHeaders(405, -1);
+      }
+    }
+  }
+
+  private void put(HttpExchange exchange, String path) throws IOException {
+    String contentSha = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+    byte[] body = exchange.getRequestBody().readAllBytes();
+    if (contentSha != null && contentSha.startsWith("STREAMING-")) {
+      body = decodeChunked(body);
+    }
+    objects.put(
+        path,
+        new StoredObject(
+            body,
+            exchange.getRequestHeaders().getFirst("Content-Type"),
+            exchange.getRequestHeaders().getFirst("Cache-Control")));
+    exchange.getResponseHeaders().set("ETag", eTag(body));
+    exchange.sendResponseHeaders(200, -1);
+  }
+
+  private void head(HttpExchange exchange, StoredObject object) throws IOException {
+    if (object == null) {
+      exchange.sendResponseHeaders(404, -1);
+      return;
+    }
+    setObjectHeaders(exchange, object);
+    exchange.sendResponseHeaders(200, -1);
+  }
+
+  private void get(HttpExchange exchange, StoredObject object) throws IOException {
+    if (object == null) {
+      byte[] error =
+          "<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error><Code>NoSuchKey</Code>"
+              .concat("<Message>The specified key does not exist.</Message></Error>")
+              .getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", "application/xml");
+      exchange.sendResponseHeaders(404, error.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(error);
+      }
+      return;
+    }
+    setObjectHeaders(exchange, object);
+    exchange.sendResponseHeaders(200, object.content().length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(object.content());
+    }
+  }
+
+  private static void setObjectHeaders(HttpExchange exchange, StoredObject object) {
+    if (object.contentType() != null) {
+      exchange.getResponseHeaders().set("Content-Type", object.contentType());
+    }
+    exchange.getResponseHeaders().set("ETag", eTag(object.content()));
+  }
+
+  /** Strip aws-chunked framing: {@code <hex size>[;chunk-signature=...]\r\n<data>\r\n} ... */
+  private static byte[] decodeChunked(byte[] body) throws IOException {
+    ByteArrayOutputStream content = new ByteArrayOutputStream(body.length);
+    int position = 0;
+    while (position < body.length) {
+      int lineEnd = indexOfCrlf(body, position);
+      if (lineEnd < 0) {
+        throw new IOException("Malformed aws-chunked body");
+      }
+      String header = new String(body, position, lineEnd - position, StandardCharsets.US_ASCII);
+      int extension = header.indexOf(';');
+      int size = Integer.parseInt(extension >= 0 ? header.substring(0, extension) : header, 16);
+      if (size == 0) {
+        break; // Trailing headers, if any, are not needed
+      }
+      content.write(body, lineEnd + 2, size);
+      position = lineEnd + 2 + size + 2;
+    }
+    return content.toByteArray();
+  }
+
+  private static int indexOfCrlf(byte[] body, int from) {
+    for (int i = from; i + 1 < body.length; i++) {
+      if (body[i] == '\r' && body[i + 1] == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // Single-part uploads have the MD5 of the content as ETag; the SDK checks it after a PUT
+  private static String eTag(byte[] content) {
+    try {
+      byte[] md5 = MessageDigest.getInstance("MD5").digest(content);
+      return "\"" + HexFormat.of().formatHex(md5) + "\"";
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 not available", e);
+    }
+  }
+
+  /** Read a presigned or plain object URL back, as a browser following the redirect would */
+  public static byte[] fetch(URI url) throws IOException {
+    try (InputStream in = url.toURL().openStream()) {
+      return in.readAllBytes();
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,65 @@
+package com.gege.activitypartner.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gege.activitypartner.dto.ActivityMessageRequest;
+import com.gege.activitypartner.dto.ActivityMessageResponse;
+import com.gege.activitypartner.entity.Activity;
+import com.gege.activitypartner.entity.User;
+import com.gege.activitypartner.fixture.TestFixtures;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.async.DeferredResult;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(TestFixtures.class)
+class ChatLongPollServiceTest {
+
+  @Autowired private ChatLongPollService longPollService;
+  @Autowired private ActivityMessageService messageService;
+  @Autowired private ChatRecentMessageBuffer recentMessageBuffer;
+  @Autowired private TestFixtures fixtures;
+
+  @Test
+  void parkedPollCompletesAsSoonAsAMessageIsSent() {
+    User creator = fixtures.createUser("creator");
+    User participant = fixtures.createUser("participant");
+    Activity activity =
+        fixtures.createActivity(creator, "Long poll test", LocalDateTime.now().plusDays(3), 5);
+    fixtures.join(activity, List.of(participant));
+
+    // Prime the recent-message buffer so the room is served from memory, as hot rooms are
+    assertThat(recentMessageBuffer.getLatest(activity.getId(), 10, creator.getId())).isPresent();
+
+    DeferredResult<ResponseEntity<List<ActivityMessageResponse>>> poll =
+        longPollService.waitForMessages(
+            activity.getId(), creator.getId(), LocalDateTime.now().minusMinutes(1), 30);
+    assertThat(poll.hasResult()).isFalse();
+
+    ActivityMessageRequest request = new ActivityMessageRequest();
+    request.setMessageText("Meet at the north gate");
+    ActivityMessageResponse sent =
+        messageService.sendMessage(activity.getId(), participant.getId(), request);
+
+    // Completed by the after-commit event, not by the 30 second timeout
+    assertThat(poll.hasResult()).isTrue();
+    @SuppressWarnings("unchecked")
+    ResponseEntity<List<ActivityMessageResponse>> response =
+        (ResponseEntity<List<ActivityMessageResponse>>) poll.getResult();
+    assertThat(response.getBody())
+        .singleElement()
+        .satisfies(
+            message -> {
+              assertThat(message.getId()).isEqualTo(sent.getId());
+              assertThat(message.getMessageText()).isEqualTo("Meet at the north gate");
+              assertThat(message.getIsOwnMessage()).isFalse();
+            });
+  }
+}
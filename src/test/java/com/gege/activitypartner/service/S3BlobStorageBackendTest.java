@@ -0,0 +1,139 @@
+package com.gege.activitypartner.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.gege.activitypartner.s3.FakeS3Server;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+@SpringBootTest(
+    properties = {
+      "storage.backend=s3",
+      "storage.s3.bucket=test-bucket",
+      "storage.s3.path-style-access=true",
+      "storage.s3.access-key=test",
+      "storage.s3.secret-key=test",
+      "storage.legacy.in-backend=true"
+    })
+@ActiveProfiles("test")
+class S3BlobStorageBackendTest {
+
+  private static final FakeS3Server S3 = startFakeS3();
+
+  @Autowired private BlobStorageBackend backend;
+  @Autowired private ContentAddressedFileStore fileStore;
+  @Autowired private ImageDerivativeService imageDerivativeService;
+  @Autowired private ImageServingService imageServingService;
+  @Autowired private FileStorageService fileStorageService;
+  @Autowired private LegacyUploadCopier legacyUploadCopier;
+
+  private static FakeS3Server startFakeS3() {
+    try {
+      return new FakeS3Server().start();
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not start fake S3 server", e);
+    }
+  }
+
+  @DynamicPropertySource
+  static void s3Properties(DynamicPropertyRegistry registry) {
+    registry.add("storage.s3.endpoint", S3::getUrl);
+  }
+
+  @AfterAll
+  static void stopFakeS3() {
+    S3.close();
+  }
+
+  @Test
+  void putExistsOpenDelete() throws IOException {
+    assertThat(backend).isInstanceOf(S3BlobStorageBackend.class);
+    String key = "ab/cd/object.txt";
+    byte[] content = "hello blob".getBytes(StandardCharsets.UTF_8);
+    Path source = Files.createTempFile("s3-test-", ".tmp");
+    Files.write(source, content);
+
+    assertThat(backend.exists(key)).isFalse();
+    backend.put(key, source, "text/plain");
+
+    assertThat(source).doesNotExist(); // The backend consumes its source
+    assertThat(backend.exists(key)).isTrue();
+    try (InputStream in = backend.open(key)) {
+      assertThat(in.readAllBytes()).isEqualTo(content);
+    }
+    FakeS3Server.StoredObject stored = S3.getObjects().get("/test-bucket/" + key);
+    assertThat(stored.contentType()).isEqualTo("text/plain");
+    assertThat(stored.cacheControl()).contains("immutable");
+
+    backend.delete(key);
+    assertThat(backend.exists(key)).isFalse();
+    backend.delete(key); // Missing keys are ignored
+  }
+
+  @Test
+  void storedImageIsServedAsRedirectToPresignedUrl() throws IOException {
+    byte[] png = png();
+    String fileName =
+        fileStore.storeImage(new MockMultipartFile("file", "photo.png", "image/png", png));
+
+    ImageDerivativeService.ResolvedImage image =
+        imageDerivativeService.resolve(
+            fileName, null, fileStorageService.getLegacyStorageLocation());
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/" + fileName);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    imageServingService.serve(image, request, response);
+
+    assertThat(response.getStatus()).isEqualTo(302);
+    String location = response.getHeader(HttpHeaders.LOCATION);
+    assertThat(location)
+        .startsWith(S3.getUrl() + "/test-bucket/")
+        .contains(fileName)
+        .contains("X-Amz-Signature=");
+    assertThat(FakeS3Server.fetch(URI.create(location))).isEqualTo(png);
+  }
+
+  @Test
+  void legacyFileIsReadFromTheBackendOnceCopied() throws IOException {
+    Path legacyDirectory = fileStorageService.getLegacyStorageLocation();
+    String fileName = "legacy-" + System.nanoTime() + ".png";
+    byte[] png = png();
+    Files.write(legacyDirectory.resolve(fileName), png);
+
+    legacyUploadCopier.copyAll();
+    assertThat(S3.getObjects()).containsKey("/test-bucket/legacy/" + fileName);
+
+    // A node without the upload volume
+    Files.delete(legacyDirectory.resolve(fileName));
+    assertThat(fileStore.exists(fileName, legacyDirectory)).isTrue();
+    try (InputStream in = fileStore.open(fileName, legacyDirectory)) {
+      assertThat(in.readAllBytes()).isEqualTo(png);
+    }
+    assertThat(fileStore.locate(fileName, legacyDirectory).remoteUrl()).isNotNull();
+  }
+
+  private static byte[] png() throws IOException {
+    BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+    image.setRGB(1, 2, 0x3366cc);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", out);
+    return out.toByteArray();
+  }
+}